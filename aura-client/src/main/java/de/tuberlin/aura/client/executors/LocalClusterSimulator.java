@@ -162,6 +162,9 @@ public final class LocalClusterSimulator {
      *
      */
     public void shutdown() {
+        for (final TaskManager tm : tmList) {
+            tm.shutdown();
+        }
         for (final ProcessExecutor pe : peList) {
             pe.destroy();
         }
@@ -21,6 +21,11 @@ public class Event implements Serializable {
 
     private Object payload;
 
+    /**
+     * Interned id of the type, not serialized.
+     */
+    private transient int typeId;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -41,11 +46,24 @@ public class Event implements Serializable {
     }
 
     public Event(final String type, Object payload, boolean sticky) {
+        this(type, EventTypeRegistry.getTypeId(type), payload, sticky);
+    }
+
+    /**
+     * Used by events of a fixed type, which resolve the id of their type once in a static field.
+     * 
+     * @param type
+     * @param typeId The interned id of the type.
+     * @param payload
+     * @param sticky
+     */
+    protected Event(final String type, final int typeId, Object payload, boolean sticky) {
         // sanity check.
         // if (type == null)
         // throw new IllegalArgumentException("type == null");
 
         this.type = type;
+        this.typeId = typeId;
         setPayload(payload);
         this.sticky = sticky;
     }
@@ -64,6 +82,17 @@ public class Event implements Serializable {
         return this.payload;
     }
 
+    /**
+     * @return The interned id of the event type.
+     */
+    public int getTypeId() {
+        // only events created by a deserializer without running a constructor lack the id.
+        if (typeId == EventTypeRegistry.NO_TYPE_ID && type != null) {
+            typeId = EventTypeRegistry.getTypeId(type);
+        }
+        return typeId;
+    }
+
     /**
      * @return
      */
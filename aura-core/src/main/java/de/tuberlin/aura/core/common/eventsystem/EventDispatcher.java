@@ -1,23 +1,38 @@
 package de.tuberlin.aura.core.common.eventsystem;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import de.tuberlin.aura.core.iosystem.IOEvents;
 
 /**
  * The EventDispatcher is responsible for adding and removing listeners and for dispatching event to
  * this listeners.
  * 
+ * The listeners are kept in copy-on-write arrays indexed by the interned type id of the event (see
+ * {@link EventTypeRegistry}), so dispatching an event needs no map lookup.
+ * 
+ * Events are dispatched either in the calling thread, in a dedicated dispatch thread or from a
+ * mailbox that is drained by a shared executor. A mailbox is drained by at most one executor thread
+ * at a time, so the events of one dispatcher are handled one after another in dispatch order. A
+ * dispatcher without thread serializes the calling threads on its dispatch lock, so its handlers
+ * never run concurrently either.
+ * 
  * @author Tobias Herb
  */
 public class EventDispatcher implements IEventDispatcher {
@@ -31,7 +46,17 @@ public class EventDispatcher implements IEventDispatcher {
      */
     private static final Logger LOG = LoggerFactory.getLogger(EventDispatcher.class);
 
-    private final Map<String, List<IEventHandler>> listenerMap;
+    private static final IEventHandler[][] EMPTY_LISTENER_TABLE = new IEventHandler[0][];
+
+    /**
+     * Max. number of events the dispatch thread takes from the queue at once, respectively a mailbox
+     * handles before it yields the executor thread to other dispatchers.
+     */
+    private static final int DISPATCH_BATCH_SIZE = 64;
+
+    private static final String DISPATCH_POOL_SIZE_PROPERTY = "aura.eventdispatcher.poolsize";
+
+    private volatile IEventHandler[][] listenerTable;
 
     private final boolean useDispatchThread;
 
@@ -43,6 +68,22 @@ public class EventDispatcher implements IEventDispatcher {
 
     private final List<Event> stickyEvents;
 
+    private final Executor dispatchExecutor;
+
+    private final Queue<Event> mailbox;
+
+    private final AtomicBoolean isMailboxScheduled;
+
+    private final Runnable mailboxRunner;
+
+    private final EventDispatcherMetrics metrics;
+
+    /**
+     * Serializes the handling of events dispatched in the calling threads. Always taken before the
+     * lock of the listener registration.
+     */
+    private final Object dispatchLock = new Object();
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -66,10 +107,20 @@ public class EventDispatcher implements IEventDispatcher {
      */
     public EventDispatcher(boolean useDispatchThread, String name) {
 
-        this.listenerMap = new ConcurrentHashMap<>();
+        this.listenerTable = EMPTY_LISTENER_TABLE;
 
         this.useDispatchThread = useDispatchThread;
 
+        this.dispatchExecutor = null;
+
+        this.mailbox = null;
+
+        this.isMailboxScheduled = null;
+
+        this.mailboxRunner = null;
+
+        this.metrics = new EventDispatcherMetrics();
+
         this.isRunning = new AtomicBoolean(useDispatchThread);
 
         this.stickyEvents = new LinkedList<>();
@@ -81,24 +132,29 @@ public class EventDispatcher implements IEventDispatcher {
 
                 @Override
                 public void run() {
+                    final List<Event> batch = new ArrayList<>(DISPATCH_BATCH_SIZE);
                     while (isRunning.get() || eventQueue.size() != 0) {
                         try {
-                            final Event event = eventQueue.take();
-                            LOG.trace("Process event {} - events left in queue: {}", event.type, eventQueue.size());
-
-                            // Stop dispatching thread, if a poison pill was received.
-                            if (event.type != IOEvents.InternalEventType.POISON_PILL_TERMINATION) {
-                                if (!dispatch(event)) {
-                                    if (event.sticky) {
-                                        LOG.debug("Add sticky event {}", event);
-                                        EventDispatcher.this.stickyEvents.add(event);
-                                    }
+                            batch.add(eventQueue.take());
+                            eventQueue.drainTo(batch, DISPATCH_BATCH_SIZE - 1);
+                            if (LOG.isTraceEnabled()) {
+                                LOG.trace("Process {} events - events left in queue: {}", batch.size(), eventQueue.size());
+                            }
+
+                            metrics.recordBatch(batch.size());
+                            long start = System.nanoTime();
+                            for (final Event event : batch) {
+                                // Stop dispatching thread, if a poison pill was received.
+                                if (event.type != IOEvents.InternalEventType.POISON_PILL_TERMINATION) {
+                                    start = processEvent(event, start);
+                                } else {
+                                    LOG.trace("Poison pill received");
                                 }
-                            } else {
-                                LOG.trace("Poison pill received");
                             }
                         } catch (InterruptedException e) {
                             LOG.error(e.getLocalizedMessage(), e);
+                        } finally {
+                            batch.clear();
                         }
                     }
 
@@ -118,6 +174,60 @@ public class EventDispatcher implements IEventDispatcher {
         }
     }
 
+    /**
+     * Creates a dispatcher without own thread, its events are handled by the executor.
+     * 
+     * @param dispatchExecutor The executor that drains the mailbox of the dispatcher, e.g.
+     *        {@link #getSharedDispatchExecutor()}.
+     */
+    public EventDispatcher(final Executor dispatchExecutor) {
+        // sanity check.
+        if (dispatchExecutor == null)
+            throw new IllegalArgumentException("dispatchExecutor == null");
+
+        this.listenerTable = EMPTY_LISTENER_TABLE;
+
+        this.useDispatchThread = true;
+
+        this.isRunning = new AtomicBoolean(true);
+
+        this.stickyEvents = new LinkedList<>();
+
+        this.eventQueue = null;
+
+        this.dispatcherThread = null;
+
+        this.dispatchExecutor = dispatchExecutor;
+
+        this.mailbox = new ConcurrentLinkedQueue<>();
+
+        this.isMailboxScheduled = new AtomicBoolean(false);
+
+        this.metrics = new EventDispatcherMetrics();
+
+        this.mailboxRunner = new Runnable() {
+
+            @Override
+            public void run() {
+                drainMailbox();
+            }
+        };
+    }
+
+    // ---------------------------------------------------
+    // Public Static Methods.
+    // ---------------------------------------------------
+
+    /**
+     * The bounded executor shared by all mailbox dispatchers of the JVM. Its size is taken from the
+     * system property {@value #DISPATCH_POOL_SIZE_PROPERTY}, by default twice the number of cores.
+     * 
+     * @return The shared executor.
+     */
+    public static Executor getSharedDispatchExecutor() {
+        return SharedDispatchExecutorHolder.EXECUTOR;
+    }
+
     // ---------------------------------------------------
     // Public Methods.
     // ---------------------------------------------------
@@ -129,21 +239,14 @@ public class EventDispatcher implements IEventDispatcher {
      * @param listener The handler for this event.
      */
     @Override
-    public synchronized void addEventListener(final String type, final IEventHandler listener) {
+    public void addEventListener(final String type, final IEventHandler listener) {
         // sanity check.
         if (type == null)
             throw new IllegalArgumentException("type == null");
         if (listener == null)
             throw new IllegalArgumentException("listener == null");
 
-        List<IEventHandler> listeners = listenerMap.get(type);
-        if (listeners == null) {
-            listeners = new LinkedList<>();
-            listenerMap.put(type, listeners);
-        }
-
-        listeners.add(listener);
-        checkStickyEvents(type, listener);
+        addEventListeners(new String[] {type}, listener);
     }
 
     /**
@@ -151,19 +254,77 @@ public class EventDispatcher implements IEventDispatcher {
      * @param listener
      */
     @Override
-    public synchronized void addEventListener(final String[] types, final IEventHandler listener) {
+    public void addEventListener(final String[] types, final IEventHandler listener) {
         // sanity check.
         if (types == null)
             throw new IllegalArgumentException("types == null");
         if (listener == null)
             throw new IllegalArgumentException("listener == null");
+        for (final String type : types) {
+            if (type == null)
+                throw new IllegalArgumentException("type == null");
+        }
+
+        addEventListeners(types, listener);
+    }
+
+    /**
+     * Without dispatch thread the sticky events are handled by the registering thread, so it
+     * takes the dispatch lock before the lock of the registration.
+     * 
+     * @param types
+     * @param listener
+     */
+    private void addEventListeners(final String[] types, final IEventHandler listener) {
+        if (useDispatchThread) {
+            registerListeners(types, listener);
+        } else {
+            synchronized (dispatchLock) {
+                registerListeners(types, listener);
+            }
+        }
+    }
 
+    /**
+     * @param types
+     * @param listener
+     */
+    private synchronized void registerListeners(final String[] types, final IEventHandler listener) {
+        for (final String type : types) {
+            registerListener(type, listener);
+        }
         for (final String type : types) {
-            addEventListener(type, listener);
             checkStickyEvents(type, listener);
         }
     }
 
+    /**
+     * Adds the listener to a copy of the listener table and publishes the copy. Must hold the lock
+     * of the dispatcher.
+     * 
+     * @param type
+     * @param listener
+     */
+    private void registerListener(final String type, final IEventHandler listener) {
+        final int typeId = EventTypeRegistry.getTypeId(type);
+        final IEventHandler[][] table;
+        if (typeId < listenerTable.length) {
+            table = listenerTable.clone();
+        } else {
+            table = Arrays.copyOf(listenerTable, Math.max(typeId + 1, EventTypeRegistry.getTypeIdBound()));
+        }
+
+        final IEventHandler[] listeners = table[typeId];
+        if (listeners == null) {
+            table[typeId] = new IEventHandler[] {listener};
+        } else {
+            final IEventHandler[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+            newListeners[listeners.length] = listener;
+            table[typeId] = newListeners;
+        }
+        listenerTable = table;
+    }
+
     private void checkStickyEvents(final String type, final IEventHandler listener) {
         Iterator<Event> it = this.stickyEvents.iterator();
         while (it.hasNext()) {
@@ -173,7 +334,7 @@ public class EventDispatcher implements IEventDispatcher {
                 LOG.info("Process sticky event {}", event);
 
                 if (useDispatchThread) {
-                    eventQueue.add(event);
+                    enqueue(event);
                 } else {
                     listener.handleEvent(event);
                 }
@@ -198,17 +359,29 @@ public class EventDispatcher implements IEventDispatcher {
         if (listener == null)
             throw new IllegalArgumentException("listener == null");
 
-        final List<IEventHandler> listeners = listenerMap.get(type);
-        if (listeners != null) {
-            boolean isRemoved = listeners.remove(listener);
-            // if no more listeners registered, we remove the complete mapping.
-            if (isRemoved && listeners.size() == 0) {
-                listenerMap.remove(type);
-            }
-            return isRemoved;
-        } else {
+        final int typeId = EventTypeRegistry.getTypeId(type);
+        final IEventHandler[] listeners = getListeners(typeId);
+        if (listeners == null) {
             return false;
         }
+
+        final int index = Arrays.asList(listeners).indexOf(listener);
+        if (index < 0) {
+            return false;
+        }
+
+        final IEventHandler[][] table = listenerTable.clone();
+        // if no more listeners registered, we remove the complete mapping.
+        if (listeners.length == 1) {
+            table[typeId] = null;
+        } else {
+            final IEventHandler[] newListeners = new IEventHandler[listeners.length - 1];
+            System.arraycopy(listeners, 0, newListeners, 0, index);
+            System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+            table[typeId] = newListeners;
+        }
+        listenerTable = table;
+        return true;
     }
 
     /**
@@ -216,10 +389,7 @@ public class EventDispatcher implements IEventDispatcher {
      */
     @Override
     public synchronized void removeAllEventListener() {
-        for (final List<IEventHandler> listeners : listenerMap.values()) {
-            listeners.clear();
-        }
-        listenerMap.clear();
+        listenerTable = EMPTY_LISTENER_TABLE;
     }
 
     /**
@@ -234,7 +404,7 @@ public class EventDispatcher implements IEventDispatcher {
             throw new IllegalArgumentException("event == null");
 
         if (useDispatchThread) {
-            eventQueue.add(event);
+            enqueue(event);
 
             // Use this place for debugging if you not know where
             // in the code the event gets dispatched.
@@ -244,10 +414,15 @@ public class EventDispatcher implements IEventDispatcher {
             // }
 
         } else {
-            if (!dispatch(event)) {
-                if (event.sticky) {
-                    LOG.info("Add sticky event {}", event);
-                    EventDispatcher.this.stickyEvents.add(event);
+            // the handlers run in the calling threads, one at a time.
+            synchronized (dispatchLock) {
+                final long start = System.nanoTime();
+                try {
+                    if (!dispatch(event)) {
+                        dispatchOrStick(event);
+                    }
+                } finally {
+                    metrics.recordEvent(event.getTypeId(), System.nanoTime() - start);
                 }
             }
         }
@@ -265,7 +440,7 @@ public class EventDispatcher implements IEventDispatcher {
         if (type == null)
             throw new IllegalArgumentException("type == null");
 
-        return listenerMap.get(type) != null;
+        return getListeners(EventTypeRegistry.getTypeId(type)) != null;
     }
 
     /**
@@ -276,8 +451,26 @@ public class EventDispatcher implements IEventDispatcher {
         isRunning.set(false);
     }
 
+    /**
+     * @return The number of events waiting to be dispatched. Takes linear time for mailbox
+     *         dispatchers, intended for monitoring only.
+     */
+    public int getQueueDepth() {
+        if (mailbox != null) {
+            return mailbox.size();
+        }
+        return eventQueue != null ? eventQueue.size() : 0;
+    }
+
+    /**
+     * @return The dispatch counts and handler latencies of this dispatcher.
+     */
+    public EventDispatcherMetrics getMetrics() {
+        return metrics;
+    }
+
     public void setName(String name) {
-        if (useDispatchThread) {
+        if (dispatcherThread != null) {
             this.dispatcherThread.setName(name);
         }
     }
@@ -289,35 +482,127 @@ public class EventDispatcher implements IEventDispatcher {
     /**
      * @param event
      */
-    private synchronized boolean dispatch(final Event event) {
-        final List<IEventHandler> listeners = listenerMap.get(event.type);
-        if (listeners != null) {
-            for (final IEventHandler el : listeners) {
-                try {
-                    el.handleEvent(event);
-                } catch (Throwable t) {
-                    LOG.error(t.getLocalizedMessage(), t);
-                    throw t;
-                }
+    private void enqueue(final Event event) {
+        if (mailbox == null) {
+            eventQueue.add(event);
+        } else {
+            mailbox.add(event);
+            scheduleMailbox();
+        }
+    }
+
+    private void scheduleMailbox() {
+        if (isMailboxScheduled.compareAndSet(false, true)) {
+            dispatchExecutor.execute(mailboxRunner);
+        }
+    }
+
+    /**
+     * Handles a batch of events, then hands the mailbox back to the executor if events are left.
+     */
+    private void drainMailbox() {
+        int n = 0;
+        try {
+            Event event;
+            long start = System.nanoTime();
+            for (; n < DISPATCH_BATCH_SIZE && (event = mailbox.poll()) != null; ++n) {
+                start = processEvent(event, start);
             }
-        } else { // listeners == null
-            LOG.info("no listener registered for event " + event.type);
+        } finally {
+            metrics.recordBatch(n);
+            isMailboxScheduled.set(false);
+            // events added after the last poll found the mailbox still scheduled.
+            if (!mailbox.isEmpty()) {
+                scheduleMailbox();
+            }
+        }
+    }
 
-            if (event instanceof IOEvents.DataIOEvent) {
-                IOEvents.DataIOEvent e2 = (IOEvents.DataIOEvent) event;
-                LOG.info("type {} from {} to {}", e2.type, e2.srcTaskID, e2.dstTaskID);
+    /**
+     * Dispatches the event and records the time its handlers took.
+     * 
+     * @param event
+     * @param start The time the handling of the event started.
+     * @return The time the handling of the event ended.
+     */
+    private long processEvent(final Event event, final long start) {
+        try {
+            if (!dispatch(event)) {
+                dispatchOrStick(event);
             }
+        } catch (Throwable t) {
+            // already logged by dispatch, the following events must still be handled.
+        }
+        final long end = System.nanoTime();
+        metrics.recordEvent(event.getTypeId(), end - start);
+        return end;
+    }
 
-            // Event wasn't processed by any event handler.
+    /**
+     * @param typeId
+     * @return The listeners of the type or null if none are registered.
+     */
+    private IEventHandler[] getListeners(final int typeId) {
+        final IEventHandler[][] table = listenerTable;
+        return typeId < table.length ? table[typeId] : null;
+    }
+
+    /**
+     * @param event
+     * @return True if at least one listener handled the event, else false.
+     */
+    private boolean dispatch(final Event event) {
+        final IEventHandler[] listeners = getListeners(event.getTypeId());
+        if (listeners == null) {
             return false;
         }
 
+        for (final IEventHandler el : listeners) {
+            try {
+                el.handleEvent(event);
+            } catch (Throwable t) {
+                LOG.error(t.getLocalizedMessage(), t);
+                throw t;
+            }
+        }
         return true;
     }
 
+    /**
+     * Slow path for events without listener. Holds the lock of the listener registration, so a
+     * sticky event is either dispatched to a concurrently added listener or kept for it.
+     * 
+     * @param event
+     */
+    private synchronized void dispatchOrStick(final Event event) {
+        if (dispatch(event)) {
+            return;
+        }
+
+        LOG.info("no listener registered for event " + event.type);
+
+        if (event instanceof IOEvents.DataIOEvent) {
+            IOEvents.DataIOEvent e2 = (IOEvents.DataIOEvent) event;
+            LOG.info("type {} from {} to {}", e2.type, e2.srcTaskID, e2.dstTaskID);
+        }
+
+        // Event wasn't processed by any event handler.
+        if (event.sticky) {
+            LOG.debug("Add sticky event {}", event);
+            stickyEvents.add(event);
+        }
+    }
+
     @Override
     public void shutdown() {
-        if (useDispatchThread) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Event dispatcher metrics: {}", metrics);
+        }
+
+        if (mailbox != null) {
+            // the mailbox holds no thread, pending events are still handled.
+            isRunning.set(false);
+        } else if (useDispatchThread) {
             LOG.trace("Shutdown event dispatcher");
 
             isRunning.set(false);
@@ -326,4 +611,18 @@ public class EventDispatcher implements IEventDispatcher {
             eventQueue.add(new Event(IOEvents.InternalEventType.POISON_PILL_TERMINATION));
         }
     }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /**
+     * Creates the shared executor on first use.
+     */
+    private static final class SharedDispatchExecutorHolder {
+
+        private static final Executor EXECUTOR =
+                Executors.newFixedThreadPool(Integer.getInteger(DISPATCH_POOL_SIZE_PROPERTY, 2 * Runtime.getRuntime().availableProcessors()),
+                                             new ThreadFactoryBuilder().setNameFormat("EventDispatcher-%d").setDaemon(true).build());
+    }
 }
@@ -0,0 +1,142 @@
+package de.tuberlin.aura.core.common.eventsystem;
+
+import java.util.Arrays;
+
+/**
+ * Counts the dispatched events and the time spent in their handlers per event type. A dispatcher
+ * records from one thread at a time, so the values are written without synchronization and only
+ * growing the arrays holds a lock. Readers in other threads see approximate values.
+ */
+public final class EventDispatcherMetrics {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private volatile long[] eventCounts = new long[0];
+
+    private volatile long[] totalLatencies = new long[0];
+
+    private volatile long[] maxLatencies = new long[0];
+
+    private volatile long batchCount;
+
+    private volatile int maxBatchSize;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    EventDispatcherMetrics() {}
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param type The event type.
+     * @return The number of dispatched events of the type.
+     */
+    public long getEventCount(final String type) {
+        return get(eventCounts, EventTypeRegistry.getTypeId(type));
+    }
+
+    /**
+     * @param type The event type.
+     * @return The mean time in nanoseconds the handlers took for an event of the type.
+     */
+    public long getMeanLatency(final String type) {
+        final int typeId = EventTypeRegistry.getTypeId(type);
+        final long count = get(eventCounts, typeId);
+        return count > 0 ? get(totalLatencies, typeId) / count : 0;
+    }
+
+    /**
+     * @param type The event type.
+     * @return The max. time in nanoseconds the handlers took for an event of the type.
+     */
+    public long getMaxLatency(final String type) {
+        return get(maxLatencies, EventTypeRegistry.getTypeId(type));
+    }
+
+    /**
+     * @return The number of batches taken from the event queue.
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * @return The largest number of events taken from the event queue at once.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public String toString() {
+        final long[] counts = eventCounts;
+        final StringBuilder sb = new StringBuilder();
+        sb.append("batches = ").append(batchCount).append(", max batch size = ").append(maxBatchSize);
+        for (int typeId = 0; typeId < counts.length; ++typeId) {
+            if (counts[typeId] > 0) {
+                sb.append("\n").append(EventTypeRegistry.getTypeName(typeId));
+                sb.append(": count = ").append(counts[typeId]);
+                sb.append(", mean latency = ").append(get(totalLatencies, typeId) / counts[typeId]).append(" ns");
+                sb.append(", max latency = ").append(get(maxLatencies, typeId)).append(" ns");
+            }
+        }
+        return sb.toString();
+    }
+
+    // ---------------------------------------------------
+    // Package-Private Methods.
+    // ---------------------------------------------------
+
+    void recordBatch(final int size) {
+        ++batchCount;
+        if (size > maxBatchSize) {
+            maxBatchSize = size;
+        }
+    }
+
+    void recordEvent(final int typeId, final long latency) {
+        if (typeId >= eventCounts.length) {
+            grow(typeId);
+        }
+
+        ++eventCounts[typeId];
+        totalLatencies[typeId] += latency;
+        final long[] max = maxLatencies;
+        if (latency > max[typeId]) {
+            max[typeId] = latency;
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    /**
+     * The arrays only grow, so an index below the length of the counts is valid for all of them.
+     * 
+     * @param typeId
+     */
+    private synchronized void grow(final int typeId) {
+        if (typeId < eventCounts.length) {
+            return;
+        }
+        final int length = Math.max(typeId + 1, EventTypeRegistry.getTypeIdBound());
+        totalLatencies = Arrays.copyOf(totalLatencies, length);
+        maxLatencies = Arrays.copyOf(maxLatencies, length);
+        // publish the counts last, readers index the other arrays by its length.
+        eventCounts = Arrays.copyOf(eventCounts, length);
+    }
+
+    private static long get(final long[] values, final int index) {
+        return index < values.length ? values[index] : 0;
+    }
+}
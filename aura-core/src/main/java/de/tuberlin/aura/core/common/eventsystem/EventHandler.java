@@ -2,16 +2,24 @@ package de.tuberlin.aura.core.common.eventsystem;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-
+/**
+ * Base class for event handlers that declare their handler methods with {@link Handle}. The
+ * methods are resolved once per class into method handles; each instance binds them to itself, so
+ * handling an event is a direct call without reflection.
+ */
 public abstract class EventHandler implements IEventHandler {
 
     // ---------------------------------------------------
@@ -32,9 +40,13 @@ public abstract class EventHandler implements IEventHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(EventHandler.class);
 
-    private final Map<Class<?>, Method> eventHandlerMap;
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, EventHandler.class, Event.class);
+
+    private static final ConcurrentMap<Class<?>, HandlerTable> handlerTableCache = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, MethodHandle> eventHandlerMap;
 
-    private final Map<Class<?>, Map<String, Method>> multiTypeEventHandlerMap;
+    private final Map<Class<?>, MethodHandle[]> multiTypeEventHandlerMap;
 
     // ---------------------------------------------------
     // Constructors.
@@ -49,7 +61,7 @@ public abstract class EventHandler implements IEventHandler {
 
         this.multiTypeEventHandlerMap = new HashMap<>();
 
-        register(this.getClass());
+        bind(getHandlerTable(this.getClass()));
     }
 
     // ---------------------------------------------------
@@ -61,29 +73,24 @@ public abstract class EventHandler implements IEventHandler {
      */
     @Override
     public void handleEvent(final Event event) {
-        Method m = eventHandlerMap.get(event.getClass());
+        MethodHandle m = eventHandlerMap.get(event.getClass());
+        if (m == null) {
+            final MethodHandle[] handlerTable = multiTypeEventHandlerMap.get(event.getClass());
+            final int typeId = event.getTypeId();
+            m = (handlerTable != null && typeId < handlerTable.length) ? handlerTable[typeId] : null;
+        }
+
         if (m != null) {
-            m.setAccessible(true);
             try {
-                m.invoke(this, event);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                throw new IllegalStateException(e);
+                m.invokeExact(event);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                LOG.error(t.getLocalizedMessage(), t);
+                throw new IllegalStateException(t);
             }
         } else {
-            final Map<String, Method> handlerTable = multiTypeEventHandlerMap.get(event.getClass());
-
-            m = (handlerTable != null) ? handlerTable.get(event.type) : null;
-            if (m != null) {
-                m.setAccessible(true);
-                try {
-                    m.invoke(this, event);
-                } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                    LOG.error(e.getLocalizedMessage(), e);
-                    throw new IllegalStateException(e);
-                }
-            } else {
-                handleUnknownEvent(event);
-            }
+            handleUnknownEvent(event);
         }
     }
 
@@ -103,38 +110,105 @@ public abstract class EventHandler implements IEventHandler {
     // Private Methods.
     // ---------------------------------------------------
 
+    /**
+     * @param table
+     */
+    private void bind(final HandlerTable table) {
+        for (final Map.Entry<Class<?>, MethodHandle> entry : table.eventHandlers.entrySet()) {
+            eventHandlerMap.put(entry.getKey(), entry.getValue().bindTo(this));
+        }
+
+        for (final Map.Entry<Class<?>, Map<String, MethodHandle>> entry : table.multiTypeEventHandlers.entrySet()) {
+            MethodHandle[] handlers = new MethodHandle[0];
+            for (final Map.Entry<String, MethodHandle> typeEntry : entry.getValue().entrySet()) {
+                final int typeId = EventTypeRegistry.getTypeId(typeEntry.getKey());
+                if (typeId >= handlers.length) {
+                    handlers = Arrays.copyOf(handlers, typeId + 1);
+                }
+                handlers[typeId] = typeEntry.getValue().bindTo(this);
+            }
+            multiTypeEventHandlerMap.put(entry.getKey(), handlers);
+        }
+    }
+
     /**
      * @param clazz
+     * @return The unbound handler methods of the class, resolved on first use.
      */
-    private void register(final Class<?> clazz) {
+    private static HandlerTable getHandlerTable(final Class<?> clazz) {
+        HandlerTable table = handlerTableCache.get(clazz);
+        if (table == null) {
+            table = register(clazz);
+            final HandlerTable existingTable = handlerTableCache.putIfAbsent(clazz, table);
+            if (existingTable != null) {
+                table = existingTable;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param clazz
+     */
+    private static HandlerTable register(final Class<?> clazz) {
+        final HandlerTable table = new HandlerTable();
         for (final Method m : clazz.getDeclaredMethods()) {
             if (m.isAnnotationPresent(Handle.class)) {
                 final Class<?>[] argumentTypes = m.getParameterTypes();
                 if (argumentTypes.length == 1 && Event.class.isAssignableFrom(argumentTypes[0])) {
                     final Handle handle = m.getAnnotation(Handle.class);
+                    final MethodHandle handler = toHandler(m);
                     if ("".equals(handle.type())) {
 
                         // if (eventHandlerMap.containsKey(handle.type()))
                         // throw new IllegalStateException("event already registered");
 
-                        eventHandlerMap.put(handle.event(), m);
+                        table.eventHandlers.put(handle.event(), handler);
 
                     } else {
-                        Map<String, Method> handlerTable = multiTypeEventHandlerMap.get(handle.event());
+                        Map<String, MethodHandle> handlerTable = table.multiTypeEventHandlers.get(handle.event());
                         if (handlerTable == null) {
-                            handlerTable = new Hashtable<>();
-                            multiTypeEventHandlerMap.put(handle.event(), handlerTable);
+                            handlerTable = new HashMap<>();
+                            table.multiTypeEventHandlers.put(handle.event(), handlerTable);
                         }
 
                         if (handlerTable.containsKey(handle.type()))
                             throw new IllegalStateException("event already registered");
 
-                        handlerTable.put(handle.type(), m);
+                        handlerTable.put(handle.type(), handler);
                     }
                 } else {
                     throw new IllegalStateException(m + " is not a event handler method");
                 }
             }
         }
+        return table;
+    }
+
+    /**
+     * @param m
+     * @return A handle of type (EventHandler, Event)void for the handler method.
+     */
+    private static MethodHandle toHandler(final Method m) {
+        m.setAccessible(true);
+        try {
+            return MethodHandles.lookup().unreflect(m).asType(HANDLER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /**
+     * The unbound handler methods of one handler class.
+     */
+    private static final class HandlerTable {
+
+        final Map<Class<?>, MethodHandle> eventHandlers = new HashMap<>();
+
+        final Map<Class<?>, Map<String, MethodHandle>> multiTypeEventHandlers = new HashMap<>();
     }
 }
@@ -0,0 +1,73 @@
+package de.tuberlin.aura.core.common.eventsystem;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns event type strings into dense integer ids. The ids are only valid within one JVM, they
+ * are never serialized.
+ */
+public final class EventTypeRegistry {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    /**
+     * Id of events without type, no listener can be registered for it.
+     */
+    public static final int NO_TYPE_ID = 0;
+
+    private static final ConcurrentMap<String, Integer> typeIds = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<Integer, String> typeNames = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger nextTypeId = new AtomicInteger(NO_TYPE_ID + 1);
+
+    // Disallow Instantiation.
+    private EventTypeRegistry() {}
+
+    // ---------------------------------------------------
+    // Public Static Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param type The event type.
+     * @return The id of the type, a new id is assigned on the first call for a type.
+     */
+    public static int getTypeId(final String type) {
+        if (type == null) {
+            return NO_TYPE_ID;
+        }
+
+        final Integer typeId = typeIds.get(type);
+        if (typeId != null) {
+            return typeId;
+        }
+
+        // several threads may race for the same type, only the first id is kept.
+        final Integer newTypeId = nextTypeId.getAndIncrement();
+        final Integer existingTypeId = typeIds.putIfAbsent(type, newTypeId);
+        if (existingTypeId != null) {
+            return existingTypeId;
+        }
+        typeNames.put(newTypeId, type);
+        return newTypeId;
+    }
+
+    /**
+     * @param typeId The id of a type.
+     * @return The type of the id or null if the id is unknown.
+     */
+    public static String getTypeName(final int typeId) {
+        return typeNames.get(typeId);
+    }
+
+    /**
+     * @return The upper bound (exclusive) of all ids assigned so far.
+     */
+    public static int getTypeIdBound() {
+        return nextTypeId.get();
+    }
+}
@@ -459,11 +459,12 @@ public final class StateMachine {
                                   final Class<T> transitionClazz,
                                   final Map<T, FSMTransitionConstraint<S, T>> transitionConstraintMap) {
 
-            // The EventDispatcher must run a own dispatch thread, because of
+            // The EventDispatcher must not dispatch in the calling thread, because of
             // nested dispatch that can occur (e.g. in transition constraints).
             // Otherwise the calling thread of the dispatch method would
-            // encounter a deadlock.
-            super(true);
+            // encounter a deadlock. The mailbox on the shared executor keeps the
+            // transitions ordered without a thread per state machine.
+            super(EventDispatcher.getSharedDispatchExecutor());
 
             // sanity check.
             if (stateTransitionMtx == null)
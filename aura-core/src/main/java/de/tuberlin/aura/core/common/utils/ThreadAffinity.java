@@ -0,0 +1,162 @@
+package de.tuberlin.aura.core.common.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pins threads to cores without native code. The layout is read from procfs and sysfs and the
+ * affinity is set with taskset, so it only works on Linux. Restricting the process with taskset or
+ * numactl before the start restricts the cores used here.
+ *
+ * Pinning alone does not make the memory of a thread local. Heap arrays are placed on the node of
+ * the thread that touches their pages first, which needs -XX:+UseNUMA and no -XX:+AlwaysPreTouch,
+ * and a garbage collection may move them to another node later. See
+ * de.tuberlin.aura.demo.benchmarks.AffinityBenchmark.
+ */
+public final class ThreadAffinity {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final Logger LOG = LoggerFactory.getLogger(ThreadAffinity.class);
+
+    private static final String NODE_DIRECTORY = "/sys/devices/system/node";
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    private ThreadAffinity() {}
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @return The cores the process may run on, grouped by their NUMA node, or an empty list if the
+     *         layout is unknown.
+     */
+    public static List<Integer> getCoreLayout() {
+        final Set<Integer> allowedCores = parseCoreList(readStatusValue("Cpus_allowed_list"));
+        final List<Integer> layout = new ArrayList<>();
+
+        final File[] nodes = new File(NODE_DIRECTORY).listFiles();
+        if (nodes != null) {
+            final Set<Integer> nodeIDs = new TreeSet<>();
+            for (final File node : nodes) {
+                if (node.getName().matches("node\\d+"))
+                    nodeIDs.add(Integer.parseInt(node.getName().substring(4)));
+            }
+            for (final int nodeID : nodeIDs) {
+                for (final int core : parseCoreList(readLine(new File(NODE_DIRECTORY + "/node" + nodeID, "cpulist")))) {
+                    if (allowedCores.remove(core))
+                        layout.add(core);
+                }
+            }
+        }
+
+        // cores without a node, e.g. without sysfs.
+        layout.addAll(allowedCores);
+        return layout;
+    }
+
+    /**
+     * Pins the calling thread to the core.
+     *
+     * @param core
+     * @return True if the thread was pinned.
+     */
+    public static boolean pinCurrentThread(final int core) {
+        // sanity check.
+        if (core < 0)
+            throw new IllegalArgumentException("core < 0");
+
+        try {
+            final String threadID = new File("/proc/thread-self").getCanonicalFile().getName();
+
+            final ProcessBuilder builder = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(core), threadID);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(Redirect.PIPE);
+            final Process process = builder.start();
+            drain(process.getInputStream());
+
+            if (process.waitFor() == 0)
+                return true;
+
+            LOG.warn("taskset could not pin thread {} to core {}", threadID, core);
+        } catch (IOException e) {
+            LOG.warn("Could not pin thread to core " + core, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param coreList A list like "0-3,8,10-11".
+     * @return
+     */
+    private static Set<Integer> parseCoreList(final String coreList) {
+        final Set<Integer> cores = new TreeSet<>();
+        if (coreList == null)
+            return cores;
+
+        for (final String range : coreList.trim().split(",")) {
+            if (range.isEmpty())
+                continue;
+            final String[] bounds = range.split("-");
+            final int first = Integer.parseInt(bounds[0].trim());
+            final int last = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : first;
+            for (int core = first; core <= last; ++core)
+                cores.add(core);
+        }
+        return cores;
+    }
+
+    private static String readStatusValue(final String key) {
+        try (final BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(key + ":"))
+                    return line.substring(key.length() + 1);
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not read /proc/self/status", e);
+        }
+        return null;
+    }
+
+    private static String readLine(final File file) {
+        try (final BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            return reader.readLine();
+        } catch (IOException e) {
+            LOG.debug("Could not read " + file, e);
+            return null;
+        }
+    }
+
+    private static void drain(final InputStream in) throws IOException {
+        final byte[] buffer = new byte[256];
+        try {
+            while (in.read(buffer) != -1) {}
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
+import de.tuberlin.aura.core.iosystem.queues.WaitStrategy;
 import de.tuberlin.aura.core.task.usercode.UserCode;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.Node;
 
@@ -264,6 +265,65 @@ public final class Descriptors {
         }
     }
 
+    /**
+     * The execution slots and buffer memory a task manager advertises in ZooKeeper.
+     */
+    public static final class ResourceDescriptor implements Serializable {
+
+        // ---------------------------------------------------
+        // Fields.
+        // ---------------------------------------------------
+
+        private static final long serialVersionUID = -1L;
+
+        public final UUID machineID;
+
+        public final int numOfSlots;
+
+        public final int numOfBusySlots;
+
+        public final long bufferMemory;
+
+        // ---------------------------------------------------
+        // Constructors.
+        // ---------------------------------------------------
+
+        public ResourceDescriptor(final UUID machineID, final int numOfSlots, final int numOfBusySlots, final long bufferMemory) {
+            // sanity check.
+            if (machineID == null)
+                throw new IllegalArgumentException("machineID == null");
+            if (numOfSlots < 1)
+                throw new IllegalArgumentException("numOfSlots < 1");
+            if (numOfBusySlots < 0 || numOfBusySlots > numOfSlots)
+                throw new IllegalArgumentException("numOfBusySlots invalid");
+            if (bufferMemory < 0)
+                throw new IllegalArgumentException("bufferMemory < 0");
+
+            this.machineID = machineID;
+            this.numOfSlots = numOfSlots;
+            this.numOfBusySlots = numOfBusySlots;
+            this.bufferMemory = bufferMemory;
+        }
+
+        // ---------------------------------------------------
+        // Public Methods.
+        // ---------------------------------------------------
+
+        @Override
+        public String toString() {
+            return (new StringBuilder()).append("ResourceDescriptor = {")
+                                        .append(" machineID = " + machineID.toString())
+                                        .append(", ")
+                                        .append(" numOfSlots = " + numOfSlots)
+                                        .append(", ")
+                                        .append(" numOfBusySlots = " + numOfBusySlots)
+                                        .append(", ")
+                                        .append(" bufferMemory = " + bufferMemory)
+                                        .append(" }")
+                                        .toString();
+        }
+    }
+
     /**
      *
      */
@@ -285,6 +345,13 @@ public final class Descriptors {
 
         public final UserCode userCode;
 
+        /**
+         * Names and user code of the operators fused into this task, in data flow order.
+         */
+        public final List<String> chainedNames;
+
+        public final List<UserCode> chainedUserCodes;
+
         private MachineDescriptor machine;
 
         // ---------------------------------------------------
@@ -292,6 +359,16 @@ public final class Descriptors {
         // ---------------------------------------------------
 
         public TaskDescriptor(final UUID topologyID, final UUID taskID, final int taskIndex, final String name, final UserCode userCode) {
+            this(topologyID, taskID, taskIndex, name, userCode, Collections.<String>emptyList(), Collections.<UserCode>emptyList());
+        }
+
+        public TaskDescriptor(final UUID topologyID,
+                              final UUID taskID,
+                              final int taskIndex,
+                              final String name,
+                              final UserCode userCode,
+                              final List<String> chainedNames,
+                              final List<UserCode> chainedUserCodes) {
             // sanity check.
             if (topologyID == null)
                 throw new IllegalArgumentException("topologyID == null");
@@ -303,6 +380,12 @@ public final class Descriptors {
                 throw new IllegalArgumentException("name == null");
             if (userCode == null)
                 throw new IllegalArgumentException("userCode == null");
+            if (chainedNames == null)
+                throw new IllegalArgumentException("chainedNames == null");
+            if (chainedUserCodes == null)
+                throw new IllegalArgumentException("chainedUserCodes == null");
+            if (chainedNames.size() != chainedUserCodes.size())
+                throw new IllegalArgumentException("chainedNames.size() != chainedUserCodes.size()");
 
             this.topologyID = topologyID;
 
@@ -313,12 +396,20 @@ public final class Descriptors {
             this.name = name;
 
             this.userCode = userCode;
+
+            this.chainedNames = Collections.unmodifiableList(chainedNames);
+
+            this.chainedUserCodes = Collections.unmodifiableList(chainedUserCodes);
         }
 
         // ---------------------------------------------------
         // Public Methods.
         // ---------------------------------------------------
 
+        public boolean isChained() {
+            return !chainedNames.isEmpty();
+        }
+
         public void setMachineDescriptor(final MachineDescriptor machine) {
             // sanity check.
             if (machine == null)
@@ -453,6 +544,17 @@ public final class Descriptors {
 
         public final Node.ExecutionType executionType;
 
+        /**
+         * May be null, then the TaskManager default for the execution type is used.
+         */
+        public final WaitStrategy.Type inputWaitStrategy;
+
+        /**
+         * The indices of the output gates whose consumers are not deployed yet, see
+         * {@link de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology.DeploymentType#LAZY}.
+         */
+        public final List<Integer> lazyOutputGates;
+
         // ---------------------------------------------------
         // Constructors.
         // ---------------------------------------------------
@@ -461,6 +563,23 @@ public final class Descriptors {
                                         final TaskBindingDescriptor taskBindingDescriptor,
                                         final Node.DataPersistenceType dataPersistenceType,
                                         final Node.ExecutionType executionType) {
+            this(taskDescriptor, taskBindingDescriptor, dataPersistenceType, executionType, null);
+        }
+
+        public TaskDeploymentDescriptor(final TaskDescriptor taskDescriptor,
+                                        final TaskBindingDescriptor taskBindingDescriptor,
+                                        final Node.DataPersistenceType dataPersistenceType,
+                                        final Node.ExecutionType executionType,
+                                        final WaitStrategy.Type inputWaitStrategy) {
+            this(taskDescriptor, taskBindingDescriptor, dataPersistenceType, executionType, inputWaitStrategy, Collections.<Integer>emptyList());
+        }
+
+        public TaskDeploymentDescriptor(final TaskDescriptor taskDescriptor,
+                                        final TaskBindingDescriptor taskBindingDescriptor,
+                                        final Node.DataPersistenceType dataPersistenceType,
+                                        final Node.ExecutionType executionType,
+                                        final WaitStrategy.Type inputWaitStrategy,
+                                        final List<Integer> lazyOutputGates) {
 
             // sanity check.
             if (taskDescriptor == null)
@@ -471,6 +590,8 @@ public final class Descriptors {
                 throw new IllegalArgumentException("dataPersistenceType == null");
             if (executionType == null)
                 throw new IllegalArgumentException("executionType == null");
+            if (lazyOutputGates == null)
+                throw new IllegalArgumentException("lazyOutputGates == null");
 
             this.taskDescriptor = taskDescriptor;
 
@@ -479,6 +600,10 @@ public final class Descriptors {
             this.dataPersistenceType = dataPersistenceType;
 
             this.executionType = executionType;
+
+            this.inputWaitStrategy = inputWaitStrategy;
+
+            this.lazyOutputGates = Collections.unmodifiableList(lazyOutputGates);
         }
 
         // ---------------------------------------------------
@@ -0,0 +1,688 @@
+package de.tuberlin.aura.core.iosystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.UUID;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.shaded.org.objenesis.strategy.StdInstantiatorStrategy;
+
+import de.tuberlin.aura.core.common.statemachine.StateMachine;
+import de.tuberlin.aura.core.descriptors.Descriptors;
+import de.tuberlin.aura.core.iosystem.IOEvents.ControlEventType;
+import de.tuberlin.aura.core.iosystem.IOEvents.ControlIOEvent;
+import de.tuberlin.aura.core.iosystem.IOEvents.RPCCalleeResponseEvent;
+import de.tuberlin.aura.core.iosystem.IOEvents.RPCCallerRequestEvent;
+import de.tuberlin.aura.core.iosystem.IOEvents.TaskControlIOEvent;
+import de.tuberlin.aura.core.iosystem.RPCManager.MethodSignature;
+import de.tuberlin.aura.core.task.common.TaskStateUpdates;
+import de.tuberlin.aura.core.task.common.TaskStates;
+import de.tuberlin.aura.core.task.usercode.UserCode;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+/**
+ * Binary encoding of the {@link ControlIOEvent}s sent over the control plane. The header of an
+ * event (type, machine, topology and task ids) is written field by field, the event type as index
+ * into the table of {@link ControlEventType}s. RPC requests refer to the called method by an id
+ * that is assigned per connection, the full signature is only sent with the first call. Payloads,
+ * arguments and results are written with Kryo, exceptions and classes with custom serialization
+ * hooks fall back to Java serialization.
+ *
+ * Events are framed by a 4 byte length field, the inbound side must be preceded by
+ * {@link SerializationHandler#LENGTH_FIELD_DECODER()}.
+ */
+public final class ControlSerializationHandler {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final byte KIND_EVENT = 0;
+
+    private static final byte KIND_TASK_EVENT = 1;
+
+    private static final byte KIND_RPC_REQUEST = 2;
+
+    private static final byte KIND_RPC_RESPONSE = 3;
+
+    private static final byte KIND_OBJECT = 4;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * All control event types in a deterministic order, the index + 1 is written instead of the
+     * type string, 0 marks a type that is written as string.
+     */
+    private static final List<String> EVENT_TYPES = collectEventTypes();
+
+    private static final Map<String, Integer> EVENT_TYPE_INDICES = indexEventTypes(EVENT_TYPES);
+
+    /**
+     * Primitive types can not be resolved by {@link Class#forName(String)}.
+     */
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = indexPrimitiveTypes();
+
+    private static final Set<String> SERIALIZATION_HOOKS = new HashSet<>(Arrays.asList("writeObject", "readObject", "writeReplace", "readResolve"));
+
+    // Disallow instantiation.
+    private ControlSerializationHandler() {}
+
+    // ---------------------------------------------------
+    // Public Static Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Inbound handler that de-serializes {@link ControlIOEvent}s from length framed buffers.
+     *
+     * @return a new handler, the handler keeps per connection state and must not be shared.
+     */
+    public static MessageToMessageDecoder<ByteBuf> KRYO_CONTROL_INBOUND_HANDLER() {
+        return new ControlEventDecoder();
+    }
+
+    /**
+     * Outbound handler that serializes {@link ControlIOEvent}s.
+     *
+     * @return a new handler, the handler keeps per connection state and must not be shared.
+     */
+    public static MessageToByteEncoder<ControlIOEvent> KRYO_CONTROL_OUTBOUND_HANDLER() {
+        return new ControlEventEncoder();
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class ControlEventEncoder extends MessageToByteEncoder<ControlIOEvent> {
+
+        private final Kryo kryo = newControlKryo();
+
+        private final Output output = new Output(INITIAL_BUFFER_SIZE, -1);
+
+        private final Map<MethodKey, Integer> methodIDs = new HashMap<>();
+
+        @Override
+        protected void encode(final ChannelHandlerContext ctx, final ControlIOEvent event, final ByteBuf out) throws Exception {
+            output.clear();
+            MethodKey declaredMethod = null;
+            try {
+                if (event.getClass() == ControlIOEvent.class) {
+                    output.writeByte(KIND_EVENT);
+                    writeHeader(output, event);
+                    kryo.writeClassAndObject(output, event.getPayload());
+                } else if (event.getClass() == TaskControlIOEvent.class) {
+                    final TaskControlIOEvent taskEvent = (TaskControlIOEvent) event;
+                    output.writeByte(KIND_TASK_EVENT);
+                    writeHeader(output, event);
+                    writeUUID(output, taskEvent.getTopologyID());
+                    writeUUID(output, taskEvent.getTaskID());
+                    kryo.writeClassAndObject(output, event.getPayload());
+                } else if (event.getClass() == RPCCallerRequestEvent.class) {
+                    final RPCCallerRequestEvent request = (RPCCallerRequestEvent) event;
+                    output.writeByte(KIND_RPC_REQUEST);
+                    writeHeader(output, event);
+                    writeUUID(output, request.callUID);
+                    declaredMethod = writeMethodSignature(request.methodSignature);
+                } else if (event.getClass() == RPCCalleeResponseEvent.class) {
+                    final RPCCalleeResponseEvent response = (RPCCalleeResponseEvent) event;
+                    output.writeByte(KIND_RPC_RESPONSE);
+                    writeHeader(output, event);
+                    writeUUID(output, response.callUID);
+                    kryo.writeClassAndObject(output, response.result);
+                } else {
+                    output.writeByte(KIND_OBJECT);
+                    kryo.writeClassAndObject(output, event);
+                }
+            } finally {
+                kryo.reset();
+            }
+
+            // the receiver learns the method id with this event, only now it can be reused.
+            if (declaredMethod != null) {
+                methodIDs.put(declaredMethod, methodIDs.size());
+            }
+
+            out.writeInt(output.position());
+            out.writeBytes(output.getBuffer(), 0, output.position());
+        }
+
+        /**
+         * Writes the method id, followed by the signature if the method is called the first time.
+         *
+         * @return The key of the method if it was declared with this call, otherwise null.
+         */
+        private MethodKey writeMethodSignature(final MethodSignature signature) {
+            final MethodKey key = new MethodKey(signature.className, signature.methodName, signature.argumentTypes);
+            final Integer methodID = methodIDs.get(key);
+            final boolean isDeclaration = methodID == null;
+
+            // the lowest bit flags a declaration.
+            output.writeVarInt(((isDeclaration ? methodIDs.size() : methodID) << 1) | (isDeclaration ? 1 : 0), true);
+            if (isDeclaration) {
+                output.writeString(signature.className);
+                output.writeString(signature.methodName);
+                output.writeString(signature.returnType.getName());
+                writeArgumentTypes(signature.argumentTypes);
+            }
+
+            if (signature.arguments != null) {
+                for (final Object argument : signature.arguments) {
+                    kryo.writeClassAndObject(output, argument);
+                }
+            }
+            return isDeclaration ? key : null;
+        }
+
+        private void writeArgumentTypes(final Class<?>[] argumentTypes) {
+            if (argumentTypes == null) {
+                output.writeVarInt(0, true);
+                return;
+            }
+            output.writeVarInt(argumentTypes.length + 1, true);
+            for (final Class<?> argumentType : argumentTypes) {
+                output.writeString(argumentType.getName());
+            }
+        }
+    }
+
+    private static final class ControlEventDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+        private final Kryo kryo = newControlKryo();
+
+        private final Input input = new Input();
+
+        private final List<MethodSignature> declaredMethods = new ArrayList<>();
+
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+        @Override
+        protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) throws Exception {
+            final int length = in.readableBytes();
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readBytes(buffer, 0, length);
+            input.setBuffer(buffer, 0, length);
+
+            try {
+                final byte kind = input.readByte();
+                switch (kind) {
+                    case KIND_EVENT: {
+                        final ControlIOEvent event = new ControlIOEvent(readEventType(input));
+                        readMachineIDs(input, event);
+                        event.setPayload(kryo.readClassAndObject(input));
+                        out.add(event);
+                        break;
+                    }
+                    case KIND_TASK_EVENT: {
+                        final TaskControlIOEvent event = new TaskControlIOEvent(readEventType(input));
+                        readMachineIDs(input, event);
+                        final UUID topologyID = readUUID(input);
+                        if (topologyID != null) {
+                            event.setTopologyID(topologyID);
+                        }
+                        final UUID taskID = readUUID(input);
+                        if (taskID != null) {
+                            event.setTaskID(taskID);
+                        }
+                        event.setPayload(kryo.readClassAndObject(input));
+                        out.add(event);
+                        break;
+                    }
+                    case KIND_RPC_REQUEST: {
+                        readEventType(input);
+                        final ControlIOEvent header = new ControlIOEvent(ControlEventType.CONTROL_EVENT_RPC_CALLER_REQUEST);
+                        readMachineIDs(input, header);
+                        final RPCCallerRequestEvent event = new RPCCallerRequestEvent(readUUID(input), readMethodSignature());
+                        copyMachineIDs(header, event);
+                        out.add(event);
+                        break;
+                    }
+                    case KIND_RPC_RESPONSE: {
+                        readEventType(input);
+                        final ControlIOEvent header = new ControlIOEvent(ControlEventType.CONTROL_EVENT_RPC_CALLEE_RESPONSE);
+                        readMachineIDs(input, header);
+                        final RPCCalleeResponseEvent event = new RPCCalleeResponseEvent(readUUID(input), kryo.readClassAndObject(input));
+                        copyMachineIDs(header, event);
+                        out.add(event);
+                        break;
+                    }
+                    case KIND_OBJECT: {
+                        out.add(kryo.readClassAndObject(input));
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("unknown control event kind " + kind);
+                }
+            } finally {
+                kryo.reset();
+            }
+        }
+
+        private MethodSignature readMethodSignature() {
+            final int tag = input.readVarInt(true);
+            final int methodID = tag >>> 1;
+
+            final MethodSignature method;
+            if ((tag & 1) != 0) {
+                if (methodID != declaredMethods.size())
+                    throw new IllegalStateException("method id " + methodID + " declared out of order");
+
+                final String className = input.readString();
+                final String methodName = input.readString();
+                final Class<?> returnType = resolveType(input.readString());
+                final Class<?>[] argumentTypes = readArgumentTypes();
+                // the template carries no arguments, it only holds the resolved signature.
+                method = new MethodSignature(className, methodName, argumentTypes, argumentTypes != null ? new Object[0] : null, returnType);
+                declaredMethods.add(method);
+            } else {
+                if (methodID >= declaredMethods.size())
+                    throw new IllegalStateException("method id " + methodID + " is not declared");
+
+                method = declaredMethods.get(methodID);
+            }
+
+            if (method.argumentTypes == null) {
+                return new MethodSignature(method.className, method.methodName, null, null, method.returnType);
+            }
+            final Object[] arguments = new Object[method.argumentTypes.length];
+            for (int i = 0; i < arguments.length; ++i) {
+                arguments[i] = kryo.readClassAndObject(input);
+            }
+            return new MethodSignature(method.className, method.methodName, method.argumentTypes, arguments, method.returnType);
+        }
+
+        private Class<?>[] readArgumentTypes() {
+            final int count = input.readVarInt(true);
+            if (count == 0) {
+                return null;
+            }
+            final Class<?>[] argumentTypes = new Class<?>[count - 1];
+            for (int i = 0; i < argumentTypes.length; ++i) {
+                argumentTypes[i] = resolveType(input.readString());
+            }
+            return argumentTypes;
+        }
+
+        private Class<?> resolveType(final String typeName) {
+            final Class<?> primitiveType = PRIMITIVE_TYPES.get(typeName);
+            if (primitiveType != null) {
+                return primitiveType;
+            }
+            try {
+                return Class.forName(typeName, false, kryo.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Identifies a called method independent of the call arguments.
+     */
+    private static final class MethodKey {
+
+        private final String className;
+
+        private final String methodName;
+
+        private final Class<?>[] argumentTypes;
+
+        private final int hashCode;
+
+        public MethodKey(final String className, final String methodName, final Class<?>[] argumentTypes) {
+            this.className = className;
+            this.methodName = methodName;
+            this.argumentTypes = argumentTypes;
+            this.hashCode = 31 * (31 * className.hashCode() + methodName.hashCode()) + Arrays.hashCode(argumentTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other)
+                return true;
+            if (!(other instanceof MethodKey))
+                return false;
+            final MethodKey key = (MethodKey) other;
+            return className.equals(key.className) && methodName.equals(key.methodName) && Arrays.equals(argumentTypes, key.argumentTypes);
+        }
+    }
+
+    /**
+     * Kryo instance that serializes exceptions, JDK classes without a public no-arg constructor
+     * (unmodifiable collections, socket addresses, ...) and classes with own serialization hooks
+     * with Java serialization.
+     */
+    private static final class ControlKryo extends Kryo {
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Serializer getDefaultSerializer(final Class type) {
+            if (isImmutableJdkContainer(type)) {
+                return new ImmutableContainerSerializer();
+            }
+            if (isJavaSerialized(type)) {
+                return new JavaFallbackSerializer();
+            }
+            return super.getDefaultSerializer(type);
+        }
+
+        private static boolean isImmutableJdkContainer(final Class<?> type) {
+            final String name = type.getName();
+            if (!name.startsWith("java.util.Collections$")) {
+                return false;
+            }
+            // sorted views can not be restored as plain maps or sets.
+            if (SortedMap.class.isAssignableFrom(type) || SortedSet.class.isAssignableFrom(type)) {
+                return false;
+            }
+            return (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))
+                    && (name.startsWith("java.util.Collections$Unmodifiable") || name.startsWith("java.util.Collections$Empty") || name.startsWith("java.util.Collections$Singleton"));
+        }
+
+        private static boolean isJavaSerialized(final Class<?> type) {
+            if (Throwable.class.isAssignableFrom(type)) {
+                return true;
+            }
+            if (type.isArray() || Enum.class.isAssignableFrom(type) || EnumSet.class.isAssignableFrom(type) || !Serializable.class.isAssignableFrom(type)) {
+                return false;
+            }
+            if (type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+                final boolean isPlainContainer = Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+                return !(isPlainContainer && hasPublicNoArgConstructor(type));
+            }
+            for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                if (declaresSerializationHook(clazz)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean hasPublicNoArgConstructor(final Class<?> type) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+            try {
+                type.getConstructor();
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private static boolean declaresSerializationHook(final Class<?> type) {
+            for (final Method method : type.getDeclaredMethods()) {
+                if (SERIALIZATION_HOOKS.contains(method.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Writes the unmodifiable, empty and singleton containers of {@link Collections} by their
+     * elements, the elements keep their identity within the event. They are read back as
+     * unmodifiable copies.
+     */
+    @SuppressWarnings("unchecked")
+    private static final class ImmutableContainerSerializer extends Serializer<Object> {
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final Object container) {
+            if (container instanceof Map) {
+                final Map<Object, Object> map = (Map<Object, Object>) container;
+                output.writeVarInt(map.size(), true);
+                for (final Map.Entry<Object, Object> entry : map.entrySet()) {
+                    kryo.writeClassAndObject(output, entry.getKey());
+                    kryo.writeClassAndObject(output, entry.getValue());
+                }
+            } else {
+                final Collection<Object> collection = (Collection<Object>) container;
+                output.writeVarInt(collection.size(), true);
+                for (final Object element : collection) {
+                    kryo.writeClassAndObject(output, element);
+                }
+            }
+        }
+
+        @Override
+        public Object read(final Kryo kryo, final Input input, final Class<Object> type) {
+            final int size = input.readVarInt(true);
+            if (Map.class.isAssignableFrom(type)) {
+                final Map<Object, Object> map = new LinkedHashMap<>();
+                final Map<Object, Object> view = Collections.unmodifiableMap(map);
+                // register the view before the entries, they may refer back to it.
+                kryo.reference(view);
+                for (int i = 0; i < size; ++i) {
+                    map.put(kryo.readClassAndObject(input), kryo.readClassAndObject(input));
+                }
+                return view;
+            }
+
+            final Collection<Object> collection = Set.class.isAssignableFrom(type) ? new LinkedHashSet<>() : new ArrayList<>(size);
+            final Collection<Object> view = collection instanceof Set
+                    ? Collections.unmodifiableSet((Set<Object>) collection)
+                    : Collections.unmodifiableList((List<Object>) collection);
+            kryo.reference(view);
+            for (int i = 0; i < size; ++i) {
+                collection.add(kryo.readClassAndObject(input));
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Writes an object as length prefixed Java serialization stream. Unlike Kryo's JavaSerializer
+     * every object gets its own stream, the object input stream would otherwise read ahead into
+     * the bytes that follow the object.
+     */
+    private static final class JavaFallbackSerializer extends Serializer<Object> {
+
+        @Override
+        public void write(final Kryo kryo, final Output output, final Object object) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final ObjectOutputStream objectStream = new ObjectOutputStream(bytes)) {
+                objectStream.writeObject(object);
+            } catch (IOException e) {
+                throw new KryoException("Java serialization of " + object.getClass().getName() + " failed", e);
+            }
+            output.writeVarInt(bytes.size(), true);
+            output.writeBytes(bytes.toByteArray());
+        }
+
+        @Override
+        public Object read(final Kryo kryo, final Input input, final Class<Object> type) {
+            final byte[] bytes = input.readBytes(input.readVarInt(true));
+            try (final ObjectInputStream objectStream = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes), kryo.getClassLoader())) {
+                return objectStream.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new KryoException("Java deserialization of " + type.getName() + " failed", e);
+            }
+        }
+    }
+
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        public ClassLoaderObjectInputStream(final InputStream in, final ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            final Class<?> primitiveType = PRIMITIVE_TYPES.get(desc.getName());
+            return primitiveType != null ? primitiveType : Class.forName(desc.getName(), false, classLoader);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Static Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Both sides of a connection must register the same classes in the same order.
+     */
+    private static Kryo newControlKryo() {
+        final Kryo kryo = new ControlKryo();
+        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+        // references span the whole event, the kryo is reset after each event.
+        kryo.setReferences(true);
+        kryo.setAutoReset(false);
+
+        kryo.register(UUID.class, new UUIDSerializer());
+        kryo.register(Object[].class);
+        kryo.register(Class[].class);
+        kryo.register(ArrayList.class);
+        kryo.register(LinkedList.class);
+        kryo.register(HashMap.class);
+        kryo.register(LinkedHashMap.class);
+        kryo.register(HashSet.class);
+        kryo.register(Descriptors.MachineDescriptor.class);
+        kryo.register(Descriptors.HardwareDescriptor.class);
+        kryo.register(Descriptors.HDDDescriptor.class);
+        kryo.register(Descriptors.TaskDescriptor.class);
+        kryo.register(Descriptors.TaskBindingDescriptor.class);
+        kryo.register(Descriptors.TaskDeploymentDescriptor.class);
+        kryo.register(UserCode.class);
+        kryo.register(TaskStates.TaskState.class);
+        kryo.register(TaskStates.TaskTransition.class);
+        kryo.register(StateMachine.FSMTransitionEvent.class);
+        kryo.register(AuraDirectedGraph.AuraTopology.class);
+        kryo.register(AuraDirectedGraph.Node.class);
+        kryo.register(AuraDirectedGraph.Edge.class);
+        kryo.register(AuraDirectedGraph.ExecutionNode.class);
+        kryo.register(TaskStateUpdates.class);
+        return kryo;
+    }
+
+    private static List<String> collectEventTypes() {
+        final List<String> eventTypes = new ArrayList<>();
+        for (final Field field : ControlEventType.class.getDeclaredFields()) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && field.getType() == String.class) {
+                try {
+                    eventTypes.add((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        // the order of reflected fields is unspecified.
+        Collections.sort(eventTypes);
+        return Collections.unmodifiableList(eventTypes);
+    }
+
+    private static Map<String, Integer> indexEventTypes(final List<String> eventTypes) {
+        final Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < eventTypes.size(); ++i) {
+            indices.put(eventTypes.get(i), i);
+        }
+        return Collections.unmodifiableMap(indices);
+    }
+
+    private static Map<String, Class<?>> indexPrimitiveTypes() {
+        final Map<String, Class<?>> primitiveTypes = new HashMap<>();
+        for (final Class<?> type : Arrays.<Class<?>>asList(boolean.class,
+                                                          byte.class,
+                                                          char.class,
+                                                          short.class,
+                                                          int.class,
+                                                          long.class,
+                                                          float.class,
+                                                          double.class,
+                                                          void.class)) {
+            primitiveTypes.put(type.getName(), type);
+        }
+        return Collections.unmodifiableMap(primitiveTypes);
+    }
+
+    private static void writeHeader(final Output output, final ControlIOEvent event) {
+        final Integer index = EVENT_TYPE_INDICES.get(event.type);
+        if (index != null) {
+            output.writeVarInt(index + 1, true);
+        } else {
+            output.writeVarInt(0, true);
+            output.writeString(event.type);
+        }
+        writeUUID(output, event.getSrcMachineID());
+        writeUUID(output, event.getDstMachineID());
+    }
+
+    private static String readEventType(final Input input) {
+        final int index = input.readVarInt(true);
+        return index > 0 ? EVENT_TYPES.get(index - 1) : input.readString();
+    }
+
+    private static void readMachineIDs(final Input input, final ControlIOEvent event) {
+        final UUID srcMachineID = readUUID(input);
+        if (srcMachineID != null) {
+            event.setSrcMachineID(srcMachineID);
+        }
+        final UUID dstMachineID = readUUID(input);
+        if (dstMachineID != null) {
+            event.setDstMachineID(dstMachineID);
+        }
+    }
+
+    private static void copyMachineIDs(final ControlIOEvent from, final ControlIOEvent to) {
+        if (from.getSrcMachineID() != null) {
+            to.setSrcMachineID(from.getSrcMachineID());
+        }
+        if (from.getDstMachineID() != null) {
+            to.setDstMachineID(from.getDstMachineID());
+        }
+    }
+
+    private static void writeUUID(final Output output, final UUID uuid) {
+        output.writeBoolean(uuid != null);
+        if (uuid != null) {
+            output.writeLong(uuid.getMostSignificantBits());
+            output.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUUID(final Input input) {
+        return input.readBoolean() ? new UUID(input.readLong(), input.readLong()) : null;
+    }
+}
@@ -1,9 +1,12 @@
 package de.tuberlin.aura.core.iosystem;
 
 import java.net.SocketAddress;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -212,18 +215,65 @@ public class DataReader {
     // NETTY CHANNEL HANDLER
     // ---------------------------------------------------
 
+    /**
+     * Enqueues the events read from a channel into the inbound queue the channel is bound to. If
+     * the queue is full, reading from the channel is suspended and the pending events are offered
+     * again on the event loop of the channel until the queue has drained, so a slow consumer never
+     * blocks the event loop. All methods are called from the event loop of the channel.
+     */
+    public final class InboundQueueWriter {
+
+        private final Channel channel;
+
+        private final Queue<IOEvents.DataIOEvent> pendingEvents = new ArrayDeque<>();
+
+        public InboundQueueWriter(final Channel channel) {
+            this.channel = channel;
+        }
+
+        public void write(final IOEvents.DataIOEvent event) {
+            pendingEvents.add(event);
+            // with earlier pending events a retry is already scheduled.
+            if (pendingEvents.size() == 1)
+                drainPendingEvents();
+        }
+
+        private void drainPendingEvents() {
+            final BufferQueue<IOEvents.DataIOEvent> queue = inputQueues.get(channelToQueueIndex.get(channel));
+            while (!pendingEvents.isEmpty()) {
+                if (!queue.offer(pendingEvents.peek())) {
+                    if (channel.config().isAutoRead())
+                        channel.config().setAutoRead(false);
+                    channel.eventLoop().schedule(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            drainPendingEvents();
+                        }
+                    }, IOConfig.INBOUND_QUEUE_RETRY_DELAY, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                pendingEvents.poll();
+            }
+            if (!channel.config().isAutoRead())
+                channel.config().setAutoRead(true);
+        }
+    }
+
     /**
      * Handles {@link de.tuberlin.aura.core.iosystem.IOEvents.TransferBufferEvent}.
      */
     public final class TransferBufferEventHandler extends SimpleChannelInboundHandler<IOEvents.TransferBufferEvent> {
 
+        private final InboundQueueWriter queueWriter;
+
+        public TransferBufferEventHandler(final InboundQueueWriter queueWriter) {
+            this.queueWriter = queueWriter;
+        }
+
         @Override
         protected void channelRead0(final ChannelHandlerContext ctx, final IOEvents.TransferBufferEvent event) {
-            try {
-                inputQueues.get(channelToQueueIndex.get(ctx.channel())).put(event);
-            } catch (InterruptedException e) {
-                LOG.error("put on input queue was interrupted.", e);
-            }
+            queueWriter.write(event);
         }
     }
 
@@ -233,6 +283,12 @@ public class DataReader {
      */
     public final class DataIOEventHandler extends SimpleChannelInboundHandler<IOEvents.DataIOEvent> {
 
+        private final InboundQueueWriter queueWriter;
+
+        public DataIOEventHandler(final InboundQueueWriter queueWriter) {
+            this.queueWriter = queueWriter;
+        }
+
         @Override
         protected void channelRead0(final ChannelHandlerContext ctx, final IOEvents.DataIOEvent event) throws Exception {
             switch (event.type) {
@@ -247,7 +303,7 @@ public class DataReader {
                     break;
 
                 case IOEvents.DataEventType.DATA_EVENT_SOURCE_EXHAUSTED:
-                    inputQueues.get(channelToQueueIndex.get(ctx.channel())).put(event);
+                    queueWriter.write(event);
                     // send acknowledge
                     IOEvents.DataIOEvent acknowledge =
                             new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_SOURCE_EXHAUSTED_ACK, event.dstTaskID, event.srcTaskID);
@@ -255,7 +311,7 @@ public class DataReader {
                     break;
 
                 case IOEvents.DataEventType.DATA_EVENT_OUTPUT_GATE_CLOSE_ACK:
-                    inputQueues.get(channelToQueueIndex.get(ctx.channel())).put(event);
+                    queueWriter.write(event);
                     break;
 
                 default:
@@ -304,10 +360,11 @@ public class DataReader {
 
                 @Override
                 public void initChannel(LocalChannel ch) throws Exception {
+                    final InboundQueueWriter queueWriter = dataReader.new InboundQueueWriter(ch);
                     ch.pipeline()
                       .addLast(new SerializationHandler.LocalTransferBufferCopyHandler(dataReader.executionManager))
-                      .addLast(dataReader.new TransferBufferEventHandler())
-                      .addLast(dataReader.new DataIOEventHandler());
+                      .addLast(dataReader.new TransferBufferEventHandler(queueWriter))
+                      .addLast(dataReader.new DataIOEventHandler(queueWriter));
                 }
             };
         }
@@ -341,12 +398,13 @@ public class DataReader {
 
                 @Override
                 public void initChannel(SocketChannel ch) throws Exception {
+                    final InboundQueueWriter queueWriter = dataReader.new InboundQueueWriter(ch);
                     ch.pipeline()
                       .addLast(SerializationHandler.LENGTH_FIELD_DECODER())
                       .addLast(SerializationHandler.KRYO_OUTBOUND_HANDLER())
                       .addLast(SerializationHandler.KRYO_INBOUND_HANDLER(dataReader.executionManager))
-                      .addLast(dataReader.new TransferBufferEventHandler())
-                      .addLast(dataReader.new DataIOEventHandler());
+                      .addLast(dataReader.new TransferBufferEventHandler(queueWriter))
+                      .addLast(dataReader.new DataIOEventHandler(queueWriter));
                 }
             };
         }
@@ -2,10 +2,10 @@ package de.tuberlin.aura.core.iosystem;
 
 import java.net.SocketAddress;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,8 +19,6 @@ import io.netty.channel.*;
 import io.netty.channel.local.LocalChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.concurrent.Future;
-import io.netty.util.concurrent.GenericFutureListener;
 
 public class DataWriter {
 
@@ -73,19 +71,27 @@ public class DataWriter {
 
         private final UUID dstID;
 
-        private Channel channel;
+        private volatile Channel channel;
 
         private final CountDownLatch waitForExhaustedAcknowledge = new CountDownLatch(1);
 
-        private final CountDownLatch waitForQueueBind = new CountDownLatch(1);
-
         // connection
 
-        final int maxConnectionRetries = 5;
+        private final Bootstrap bootstrap;
+
+        private final SocketAddress address;
+
+        private final EventLoopGroup eventLoopGroup;
+
+        private final AtomicInteger connectionRetries = new AtomicInteger();
 
-        int connectionRetries = 0;
+        private volatile BufferQueue<IOEvents.DataIOEvent> outboundQueue;
 
-        private BufferQueue<IOEvents.DataIOEvent> outboundQueue;
+        // only accessed from the event loop of the channel
+
+        private ChannelHandlerContext activeContext;
+
+        private boolean isQueueBound = false;
 
         // gate semantics
 
@@ -93,6 +99,11 @@ public class DataWriter {
 
         private AtomicBoolean isGateOpen = new AtomicBoolean(false);
 
+        /**
+         * Starts an asynchronous connection attempt to the receiving task. The constructor returns
+         * immediately, readiness is reported by a DATA_EVENT_OUTPUT_CHANNEL_CONNECTED event and a
+         * connection that failed after the last retry by a DATA_EVENT_OUTPUT_CHANNEL_FAILED event.
+         */
         public ChannelWriter(final UUID srcTaskID,
                              final UUID dstTaskID,
                              final OutgoingConnectionType<T> connectionType,
@@ -101,81 +112,72 @@ public class DataWriter {
 
             this.srcID = srcTaskID;
             this.dstID = dstTaskID;
+            this.address = address;
+            this.eventLoopGroup = eventLoopGroup;
             this.waitForGateOpen = new ResettableCountDownLatch(1);
 
-            Bootstrap bootstrap = connectionType.bootStrap(eventLoopGroup);
+            this.bootstrap = connectionType.bootStrap(eventLoopGroup);
             bootstrap.handler(connectionType.getPipeline(this));
 
-            // bootstrap.connect(address).addListener(new ConnectListener(bootstrap, address));
-            // TODO: async. method with listener did not work sadly, investigate why
-            try {
-                while (connectionRetries++ < maxConnectionRetries) {
-
-                    ChannelFuture future = bootstrap.connect(address);
-
-                    boolean await = future.await(30, TimeUnit.SECONDS);
-                    if (await) {
-                        channel = future.channel();
-                        LOG.debug("Channel successfully connected.");
-
-                        future.channel().writeAndFlush(new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_INPUT_CHANNEL_CONNECTED,
-                                                                                srcID,
-                                                                                dstID));
-
-                        // Dispatch OUTPUT_CHANNEL_CONNECTED event.
-                        final IOEvents.DataIOEvent connected =
-                                new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_CONNECTED, srcID, dstID);
-                        connected.setPayload(ChannelWriter.this);
-                        connected.setChannel(channel);
-                        dispatcher.dispatchEvent(connected);
-                        // connection was successful
-                        break;
-                    } else {
-                        LOG.info("Connection retry (" + connectionRetries + ") ...");
-                    }
-                }
-            } catch (InterruptedException e) {
-                LOG.error("Connection attempt was interrupted");
-            }
+            connect();
         }
 
-        /*
-         * public final class ConnectListener implements ChannelFutureListener {
-         * 
-         * private final Bootstrap bootstrap;
-         * 
-         * private final SocketAddress address;
-         * 
-         * public ConnectListener(Bootstrap bootstrap, SocketAddress address) { this.bootstrap =
-         * bootstrap; this.address = address; }
-         * 
-         * @Override public void operationComplete(ChannelFuture future) throws Exception { if
-         * (future.isSuccess()) {
-         * 
-         * channel = future.channel(); LOG.debug("Channel successfully connected.");
-         * 
-         * future.channel().writeAndFlush(new
-         * IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_INPUT_CHANNEL_CONNECTED, srcID,
-         * dstID));
-         * 
-         * LOG.error("connected");
-         * 
-         * // Dispatch OUTPUT_CHANNEL_CONNECTED event. final IOEvents.DataIOEvent connected = new
-         * IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_CONNECTED, srcID,
-         * dstID); connected.setPayload(ChannelWriter.this); connected.setChannel(channel);
-         * dispatcher.dispatchEvent(connected);
-         * 
-         * } else { if (connectionRetries.incrementAndGet() > maxConnectionRetries) {
-         * LOG.error("Connection attempt failed: ", future.cause()); throw new
-         * IllegalStateException("connection attempt failed.", future.cause()); } else {
-         * LOG.info("Connection retry (" + connectionRetries.get() + ") ...");
-         * bootstrap.connect(address).addListener(this); } } } }
+        private void connect() {
+            bootstrap.connect(address).addListener(new ConnectListener());
+        }
+
+        /**
+         * Completes the channel setup on success, otherwise schedules a reconnect on the event loop
+         * group with exponential backoff. The failure of the last retry is dispatched to the task.
          */
+        private final class ConnectListener implements ChannelFutureListener {
+
+            @Override
+            public void operationComplete(final ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    channel = future.channel();
+                    LOG.debug("Channel successfully connected.");
+
+                    channel.writeAndFlush(new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_INPUT_CHANNEL_CONNECTED, srcID, dstID));
+
+                    // Dispatch OUTPUT_CHANNEL_CONNECTED event.
+                    final IOEvents.DataIOEvent connected =
+                            new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_CONNECTED, srcID, dstID);
+                    connected.setPayload(ChannelWriter.this);
+                    connected.setChannel(channel);
+                    dispatcher.dispatchEvent(connected);
+                    return;
+                }
+
+                // the attempts of a channel may complete on different event loops of the group.
+                final int retries = connectionRetries.incrementAndGet();
+                if (retries < IOConfig.DATA_CHANNEL_MAX_CONNECTION_RETRIES) {
+                    final long delay = Math.min(IOConfig.DATA_CHANNEL_INITIAL_RETRY_DELAY << (retries - 1), IOConfig.DATA_CHANNEL_MAX_RETRY_DELAY);
+                    LOG.info("Connection retry (" + retries + ") in " + delay + " ms ...");
+                    eventLoopGroup.schedule(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            connect();
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                } else {
+                    LOG.error("Connection attempt from " + srcID + " to " + dstID + " failed after " + retries + " retries.", future.cause());
+
+                    // Dispatch OUTPUT_CHANNEL_FAILED event.
+                    final IOEvents.DataIOEvent failed =
+                            new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_FAILED, srcID, dstID);
+                    failed.setPayload(future.cause());
+                    dispatcher.dispatchEvent(failed);
+                }
+            }
+        }
 
         /**
          * Writes the event to the channel.
          * 
-         * If the gate is not yet open, this method will block until the gate is open.
+         * If the gate is not yet open, this method will block until the gate is open. If the
+         * outbound queue is bounded, this method blocks until space is available.
          * 
          * @param event
          */
@@ -185,7 +187,7 @@ public class DataWriter {
                     waitForGateOpen.await();
                 }
 
-  this.outboundQueue.offer(event);
+                this.outboundQueue.put(event);
             } catch (InterruptedException e) {
                 LOG.error("Write of event " + event + " was interrupted.", e);
             }
@@ -234,10 +236,32 @@ public class DataWriter {
          * 
          * @param queue the queue for the events to be written by this channel writer
          */
-        public void setOutboundQueue(BufferQueue<IOEvents.DataIOEvent> queue) {
+        public void setOutboundQueue(final BufferQueue<IOEvents.DataIOEvent> queue) {
             this.outboundQueue = queue;
             LOG.debug("Event queue attached.");
-            waitForQueueBind.countDown();
+            // the observer binding happens on the event loop of the channel, so we never block it.
+            channel.eventLoop().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    bindQueue();
+                }
+            });
+        }
+
+        /**
+         * Registers the write observer as soon as the channel is active and the queue is attached.
+         * Must be called from the event loop of the channel.
+         */
+        private void bindQueue() {
+            if (isQueueBound || activeContext == null || outboundQueue == null)
+                return;
+
+            isQueueBound = true;
+            // bind observer
+            outboundQueue.registerObserver(new WriteableObserver(activeContext));
+            // goes to WriteHandler
+            activeContext.fireChannelWritabilityChanged();
         }
 
         // ---------------------------------------------------
@@ -277,7 +301,7 @@ public class DataWriter {
                         // as the gate is closed, now events could be enqueued at this point
                         IOEvents.DataIOEvent closedGate =
                                 new IOEvents.DataIOEvent(IOEvents.DataEventType.DATA_EVENT_OUTPUT_GATE_CLOSE_ACK, srcID, dstID);
-                        outboundQueue.offer(closedGate);
+                        enqueueControlEvent(ctx, closedGate);
 
                         break;
 
@@ -290,39 +314,37 @@ public class DataWriter {
                         break;
                 }
             }
+
+            /**
+             * Enqueues a control event without blocking the event loop. If the bounded outbound
+             * queue is full, the offer is retried on the event loop until the queue has drained.
+             */
+            private void enqueueControlEvent(final ChannelHandlerContext ctx, final IOEvents.DataIOEvent event) {
+                if (outboundQueue.offer(event))
+                    return;
+
+                LOG.debug("Outbound queue full, retry enqueue of " + event.type);
+                ctx.channel().eventLoop().schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        enqueueControlEvent(ctx, event);
+                    }
+                }, IOConfig.CONTROL_EVENT_RETRY_DELAY, TimeUnit.MILLISECONDS);
+            }
         }
 
         /**
          * Binds the write observer to the outbound queue and triggers the initial write to the
-         * channel.
+         * channel. The binding is done as soon as the channel is active and the queue is attached,
+         * both happen on the event loop of the channel.
          */
         private class ChannelActiveHandler extends ChannelInboundHandlerAdapter {
 
             @Override
             public void channelActive(final ChannelHandlerContext ctx) throws Exception {
-                ctx.channel().eventLoop().submit(new Callable<Void>() {
-
-                    @Override
-                    public Void call() throws Exception {
-                        waitForQueueBind.await();
-                        // bind observer
-                        outboundQueue.registerObserver(new WriteableObserver(ctx));
-                        return null;
-                    }
-                }).addListener(new GenericFutureListener<Future<? super Void>>() {
-
-                    @Override
-                    public void operationComplete(Future<? super Void> future) throws Exception {
-                        if (future.isSuccess()) {
-                            // goes to WriteHandler
-                            ctx.fireChannelWritabilityChanged();
-                        } else {
-                            if (future.cause() != null)
-                                throw new IllegalStateException(future.cause());
-                        }
-                    }
-                });
-
+                activeContext = ctx;
+                bindQueue();
                 ctx.fireChannelActive();
             }
         }
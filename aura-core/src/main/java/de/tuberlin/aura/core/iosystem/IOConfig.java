@@ -40,6 +40,45 @@ public final class IOConfig {
             4; // length field
 
 
+    /**
+     * The max. number of attempts a channel writer makes to connect a data channel.
+     */
+    public static final int DATA_CHANNEL_MAX_CONNECTION_RETRIES = 8;
+
+    /**
+     * The delay (in ms) before the first reconnect of a data channel. Doubled on each retry.
+     */
+    public static final long DATA_CHANNEL_INITIAL_RETRY_DELAY = 50;
+
+    /**
+     * The upper bound (in ms) for the delay between two connection attempts of a data channel.
+     */
+    public static final long DATA_CHANNEL_MAX_RETRY_DELAY = 5000;
+
+    /**
+     * The delay (in ms) before a control event is offered again to a full outbound queue.
+     */
+    public static final long CONTROL_EVENT_RETRY_DELAY = 1;
+
+    /**
+     * The capacity of an inbound queue that is not using the
+     * {@link de.tuberlin.aura.core.iosystem.queues.WaitStrategy.Type#BLOCKING} strategy. While
+     * the queue is full, the data reader stops reading from the channels bound to it.
+     */
+    public static final int INBOUND_QUEUE_CAPACITY = 8192;
+
+    /**
+     * The delay (in ms) before the data reader offers the pending events of a channel again to a
+     * full inbound queue.
+     */
+    public static final long INBOUND_QUEUE_RETRY_DELAY = 1;
+
+    /**
+     * Prefix of the system property that defines the default inbound wait strategy for an
+     * execution type, e.g. "aura.io.waitstrategy.pipelined=SPIN_PARK".
+     */
+    public static final String WAIT_STRATEGY_PROPERTY_PREFIX = "aura.io.waitstrategy.";
+
     public static final int KRYO_IO_EVENT_ID = 10;
 
     public static final int KRYO_IO_DATA_EVENT_ID = 11;
@@ -3,6 +3,7 @@ package de.tuberlin.aura.core.iosystem;
 import java.util.UUID;
 
 import de.tuberlin.aura.core.common.eventsystem.Event;
+import de.tuberlin.aura.core.common.eventsystem.EventTypeRegistry;
 import de.tuberlin.aura.core.iosystem.RPCManager.MethodSignature;
 import de.tuberlin.aura.core.memory.MemoryView;
 import io.netty.channel.Channel;
@@ -33,6 +34,8 @@ public final class IOEvents {
 
         public static final String DATA_EVENT_OUTPUT_CHANNEL_CONNECTED = "DATA_EVENT_OUTPUT_CHANNEL_CONNECTED";
 
+        public static final String DATA_EVENT_OUTPUT_CHANNEL_FAILED = "DATA_EVENT_OUTPUT_CHANNEL_FAILED";
+
         public static final String DATA_EVENT_OUTPUT_GATE_OPEN = "DATA_EVENT_OUTPUT_GATE_OPEN";
 
         public static final String DATA_EVENT_OUTPUT_GATE_CLOSE = "DATA_EVENT_OUTPUT_GATE_CLOSE";
@@ -68,6 +71,12 @@ public final class IOEvents {
         public static final String CONTROL_EVENT_REMOTE_TASK_TRANSITION = "CONTROL_EVENT_REMOTE_TASK_TRANSITION";
 
         public static final String CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE = "CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE";
+
+        public static final String CONTROL_EVENT_REMOTE_TASK_STATE_UPDATES = "CONTROL_EVENT_REMOTE_TASK_STATE_UPDATES";
+
+        public static final String CONTROL_EVENT_REMOTE_OUTPUT_GATE_REQUEST = "CONTROL_EVENT_REMOTE_OUTPUT_GATE_REQUEST";
+
+        public static final String CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED = "CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED";
     }
 
     /**
@@ -87,6 +96,10 @@ public final class IOEvents {
             super(type, null, sticky);
         }
 
+        protected BaseIOEvent(final String type, final int typeId, final boolean sticky) {
+            super(type, typeId, null, sticky);
+        }
+
         public void setChannel(final Channel channel) {
             // sanity check.
             if (channel == null)
@@ -122,7 +135,11 @@ public final class IOEvents {
         }
 
         public DataIOEvent(final String type, final UUID srcTaskID, final UUID dstTaskID, final boolean sticky) {
-            super(type, sticky);
+            this(type, EventTypeRegistry.getTypeId(type), srcTaskID, dstTaskID, sticky);
+        }
+
+        protected DataIOEvent(final String type, final int typeId, final UUID srcTaskID, final UUID dstTaskID, final boolean sticky) {
+            super(type, typeId, sticky);
             // sanity check.
             if (srcTaskID == null)
                 throw new IllegalArgumentException("srcTaskID == null");
@@ -152,6 +169,8 @@ public final class IOEvents {
 
         private static final long serialVersionUID = -1;
 
+        private static final int TYPE_ID = EventTypeRegistry.getTypeId(DataEventType.DATA_EVENT_BUFFER);
+
         public final UUID messageID;
 
         // public final byte[] data;
@@ -164,7 +183,7 @@ public final class IOEvents {
 
         public TransferBufferEvent(final UUID messageID, final UUID srcTaskID, final UUID dstTaskID, final MemoryView buffer) {
 
-            super(DataEventType.DATA_EVENT_BUFFER, srcTaskID, dstTaskID);
+            super(DataEventType.DATA_EVENT_BUFFER, TYPE_ID, srcTaskID, dstTaskID, false);
 
             // sanity check.
             if (messageID == null)
@@ -203,6 +222,10 @@ public final class IOEvents {
             super(type);
         }
 
+        protected ControlIOEvent(final String type, final int typeId) {
+            super(type, typeId, false);
+        }
+
         public ControlIOEvent(final String type, final UUID srcMachineID, final UUID dstMachineID) {
             super(type);
             // sanity check.
@@ -298,13 +321,15 @@ public final class IOEvents {
 
         private static final long serialVersionUID = -1L;
 
+        private static final int TYPE_ID = EventTypeRegistry.getTypeId(ControlEventType.CONTROL_EVENT_RPC_CALLER_REQUEST);
+
         public UUID callUID;
 
         public MethodSignature methodSignature;
 
         public RPCCallerRequestEvent(final UUID callUID, final MethodSignature methodSignature) {
 
-            super(ControlEventType.CONTROL_EVENT_RPC_CALLER_REQUEST);
+            super(ControlEventType.CONTROL_EVENT_RPC_CALLER_REQUEST, TYPE_ID);
             // sanity check.
             if (callUID == null)
                 throw new IllegalArgumentException("callUID == null");
@@ -324,13 +349,15 @@ public final class IOEvents {
 
         private static final long serialVersionUID = -1L;
 
+        private static final int TYPE_ID = EventTypeRegistry.getTypeId(ControlEventType.CONTROL_EVENT_RPC_CALLEE_RESPONSE);
+
         public UUID callUID;
 
         public Object result;
 
         public RPCCalleeResponseEvent(final UUID callUID, final Object result) {
 
-            super(ControlEventType.CONTROL_EVENT_RPC_CALLEE_RESPONSE);
+            super(ControlEventType.CONTROL_EVENT_RPC_CALLEE_RESPONSE, TYPE_ID);
             // sanity check.
             if (callUID == null)
                 throw new IllegalArgumentException("callUID == null");
@@ -1,6 +1,7 @@
 package de.tuberlin.aura.core.iosystem;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,9 +30,8 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 
 public final class IOManager extends EventDispatcher {
 
@@ -44,6 +44,24 @@ public final class IOManager extends EventDispatcher {
      */
     private static final Logger LOG = LoggerFactory.getLogger(IOManager.class);
 
+    /**
+     * Set while a flush of a control channel is scheduled on its event loop.
+     */
+    private static final AttributeKey<Boolean> FLUSH_PENDING = AttributeKey.valueOf("IOManager.FLUSH_PENDING");
+
+    /**
+     * Nobody may wait for a control event write, failures are at least logged.
+     */
+    private static final ChannelFutureListener FAILED_WRITE_LOGGER = new ChannelFutureListener() {
+
+        @Override
+        public void operationComplete(final ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                LOG.error("control event write failed", future.cause());
+            }
+        }
+    };
+
     public final MachineDescriptor machine;
 
     private final Map<Pair<UUID, UUID>, Channel> controlIOConnections;
@@ -229,20 +247,26 @@ public final class IOManager extends EventDispatcher {
     /**
      * @param dstMachine
      * @param event
+     * @return The future of the write.
      */
-    public void sendEvent(final MachineDescriptor dstMachine, final ControlIOEvent event) {
+    public ChannelFuture sendEvent(final MachineDescriptor dstMachine, final ControlIOEvent event) {
         // sanity check.
         if (dstMachine == null)
             throw new IllegalArgumentException("machine == null");
 
-        sendEvent(dstMachine.uid, event);
+        return sendEvent(dstMachine.uid, event);
     }
 
     /**
+     * Sends the event without waiting for the write. Events sent before the event loop of the
+     * channel runs are flushed together, listeners added to the returned future are notified when
+     * the event is written or the write failed.
+     * 
      * @param dstMachineID
      * @param event
+     * @return The future of the write.
      */
-    public void sendEvent(final UUID dstMachineID, final ControlIOEvent event) {
+    public ChannelFuture sendEvent(final UUID dstMachineID, final ControlIOEvent event) {
 
         // sanity check.
         if (dstMachineID == null)
@@ -250,26 +274,92 @@ public final class IOManager extends EventDispatcher {
         if (event == null)
             throw new IllegalArgumentException("event == null");
 
-        final Channel channel = controlIOConnections.get(new Pair<>(machine.uid, dstMachineID));
-
-        if (channel == null) {
-            throw new IllegalStateException("channel is not registered");
-        }
+        final Channel channel = getControlChannel(dstMachineID);
 
         event.setSrcMachineID(machine.uid);
         event.setDstMachineID(dstMachineID);
 
-        try {
-            channel.writeAndFlush(event).sync();
-        } catch (InterruptedException e) {
-            LOG.error("Write interrupted", e);
+        final ChannelPromise write = channel.newPromise();
+        write.addListener(FAILED_WRITE_LOGGER);
+        writeCoalesced(channel, event, write);
+        return write;
+    }
+
+    /**
+     * Writes all events to the control channel and flushes the channel once.
+     * 
+     * @param dstMachineID
+     * @param events
+     * @return The future of the last write, writes complete in order.
+     */
+    public ChannelFuture sendEvents(final UUID dstMachineID, final List<? extends ControlIOEvent> events) {
+        // sanity check.
+        if (dstMachineID == null)
+            throw new IllegalArgumentException("machine == null");
+        if (events == null)
+            throw new IllegalArgumentException("events == null");
+        if (events.isEmpty())
+            throw new IllegalArgumentException("events is empty");
+
+        final Channel channel = getControlChannel(dstMachineID);
+
+        ChannelPromise lastWrite = null;
+        for (final ControlIOEvent event : events) {
+            event.setSrcMachineID(machine.uid);
+            event.setDstMachineID(dstMachineID);
+            lastWrite = channel.newPromise();
+            lastWrite.addListener(FAILED_WRITE_LOGGER);
+            writeCoalesced(channel, event, lastWrite);
         }
+        return lastWrite;
     }
 
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
+    /**
+     * Writes the event from the event loop of the channel and schedules a flush if none is
+     * pending. All events written until the flush runs go out with it.
+     */
+    private void writeCoalesced(final Channel channel, final ControlIOEvent event, final ChannelPromise promise) {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    writeCoalesced(channel, event, promise);
+                }
+            });
+            return;
+        }
+
+        channel.write(event, promise);
+
+        // the flag is only accessed from the event loop.
+        final Attribute<Boolean> isFlushPending = channel.attr(FLUSH_PENDING);
+        if (!Boolean.TRUE.equals(isFlushPending.get())) {
+            isFlushPending.set(Boolean.TRUE);
+            channel.eventLoop().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    isFlushPending.set(Boolean.FALSE);
+                    channel.flush();
+                }
+            });
+        }
+    }
+
+    private Channel getControlChannel(final UUID dstMachineID) {
+        final Channel channel = controlIOConnections.get(new Pair<>(machine.uid, dstMachineID));
+
+        if (channel == null) {
+            throw new IllegalStateException("channel is not registered");
+        }
+        return channel;
+    }
+
     /**
      * @param machine
      * @param nelg
@@ -295,9 +385,10 @@ public final class IOManager extends EventDispatcher {
 
             @Override
             protected void initChannel(SocketChannel ch) throws Exception {
-                ch.pipeline().addFirst(new ObjectEncoder());
+                ch.pipeline().addFirst(ControlSerializationHandler.KRYO_CONTROL_OUTBOUND_HANDLER());
                 ch.pipeline().addFirst(new ControlIOChannelHandler());
-                ch.pipeline().addFirst(new ObjectDecoder(ClassResolvers.cacheDisabled(getClass().getClassLoader())));
+                ch.pipeline().addFirst(ControlSerializationHandler.KRYO_CONTROL_INBOUND_HANDLER());
+                ch.pipeline().addFirst(SerializationHandler.LENGTH_FIELD_DECODER());
             }
         });
 
@@ -391,9 +482,10 @@ public final class IOManager extends EventDispatcher {
 
                 @Override
                 public void initChannel(SocketChannel ch) throws Exception {
-                    ch.pipeline().addFirst(new ObjectEncoder());
+                    ch.pipeline().addFirst(ControlSerializationHandler.KRYO_CONTROL_OUTBOUND_HANDLER());
                     ch.pipeline().addFirst(new ControlIOChannelHandler());
-                    ch.pipeline().addFirst(new ObjectDecoder(ClassResolvers.cacheDisabled(getClass().getClassLoader())));
+                    ch.pipeline().addFirst(ControlSerializationHandler.KRYO_CONTROL_INBOUND_HANDLER());
+                    ch.pipeline().addFirst(SerializationHandler.LENGTH_FIELD_DECODER());
                 }
             });
 
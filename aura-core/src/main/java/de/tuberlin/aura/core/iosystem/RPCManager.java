@@ -1,27 +1,65 @@
 package de.tuberlin.aura.core.iosystem;
 
 import java.io.Serializable;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import de.tuberlin.aura.core.common.eventsystem.EventHandler;
 import de.tuberlin.aura.core.common.utils.Pair;
 import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
 import de.tuberlin.aura.core.iosystem.IOEvents.ControlEventType;
 import de.tuberlin.aura.core.iosystem.IOEvents.RPCCalleeResponseEvent;
 import de.tuberlin.aura.core.iosystem.IOEvents.RPCCallerRequestEvent;
-
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+
+/**
+ * Remote procedure calls between machines. A protocol method that is declared to return a
+ * {@link ListenableFuture} is called asynchronously: the proxy returns a future that is completed
+ * by the response. All other methods block the caller until the response arrived.
+ * 
+ * On the callee site an implementation may return a {@link ListenableFuture} as well, the response
+ * is then sent when the future completes.
+ * 
+ * Received calls are executed by a bounded pool. Calls of a protocol are serialized on its
+ * implementation unless the method is marked as {@link Concurrent}.
+ */
 public final class RPCManager {
 
     // ---------------------------------------------------
@@ -31,6 +69,16 @@ public final class RPCManager {
     // for debugging use -1.
     private static final long RPC_RESPONSE_TIMEOUT = -1; // 5000; // in ms
 
+    /**
+     * Max. number of calls executed at once, set with -Daura.rpc.poolsize.
+     */
+    private static final int CALLEE_POOL_SIZE = Integer.getInteger("aura.rpc.poolsize", 32);
+
+    /**
+     * Max. number of calls waiting for execution, further calls are rejected.
+     */
+    private static final int CALLEE_QUEUE_CAPACITY = Integer.getInteger("aura.rpc.queuecapacity", 1024);
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
@@ -39,12 +87,18 @@ public final class RPCManager {
 
     private final IOManager ioManager;
 
-    private final Map<Pair<Class<?>, UUID>, Object> cachedProxies;
+    private final ConcurrentMap<Pair<Class<?>, UUID>, Object> cachedProxies;
+
+    private final ConcurrentMap<UUID, SettableFuture<Object>> callerTable;
 
     private final RPCEventHandler rpcEventHandler;
 
     private final ProtocolCalleeProxy calleeProxy;
 
+    private final ThreadPoolExecutor calleeExecutor;
+
+    private final AtomicLong rejectedCalls;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -61,13 +115,27 @@ public final class RPCManager {
 
         this.rpcEventHandler = new RPCEventHandler();
 
-        this.cachedProxies = new HashMap<>();
+        this.cachedProxies = new ConcurrentHashMap<>();
+
+        this.callerTable = new ConcurrentHashMap<>();
 
         final String[] rpcEvents = {ControlEventType.CONTROL_EVENT_RPC_CALLER_REQUEST, ControlEventType.CONTROL_EVENT_RPC_CALLEE_RESPONSE};
 
         this.ioManager.addEventListener(rpcEvents, rpcEventHandler);
 
         this.calleeProxy = new ProtocolCalleeProxy();
+
+        this.calleeExecutor =
+                new ThreadPoolExecutor(CALLEE_POOL_SIZE,
+                                       CALLEE_POOL_SIZE,
+                                       60,
+                                       TimeUnit.SECONDS,
+                                       new LinkedBlockingQueue<Runnable>(CALLEE_QUEUE_CAPACITY),
+                                       new ThreadFactoryBuilder().setNameFormat("RPCCallee-%d").setDaemon(true).build());
+
+        this.calleeExecutor.allowCoreThreadTimeOut(true);
+
+        this.rejectedCalls = new AtomicLong();
     }
 
     // ---------------------------------------------------
@@ -106,17 +174,73 @@ public final class RPCManager {
         @SuppressWarnings("unchecked")
         T proxy = (T) cachedProxies.get(proxyKey);
         if (proxy == null) {
-            proxy = ProtocolCallerProxy.createProtocolProxy(dstMachine.uid, protocolInterface, ioManager);
-            cachedProxies.put(proxyKey, proxy);
+            proxy = ProtocolCallerProxy.createProtocolProxy(dstMachine.uid, protocolInterface, ioManager, callerTable, null);
+            @SuppressWarnings("unchecked")
+            final T existingProxy = (T) cachedProxies.putIfAbsent(proxyKey, proxy);
+            if (existingProxy != null) {
+                proxy = existingProxy;
+            }
         }
 
         return proxy;
     }
 
+    /**
+     * @return A new batch of asynchronous calls.
+     */
+    public RPCBatch createBatch() {
+        return new RPCBatch();
+    }
+
+    /**
+     * @return The bounded pool that executes the received calls, also used for work that completes
+     *         a call asynchronously.
+     */
+    public Executor getCalleeExecutor() {
+        return calleeExecutor;
+    }
+
+    /**
+     * @return The number of received calls waiting for execution.
+     */
+    public int getPendingCallCount() {
+        return calleeExecutor.getQueue().size();
+    }
+
+    /**
+     * @return The number of received calls in execution.
+     */
+    public int getActiveCallCount() {
+        return calleeExecutor.getActiveCount();
+    }
+
+    /**
+     * @return The approximate number of executed calls.
+     */
+    public long getCompletedCallCount() {
+        return calleeExecutor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return The number of calls rejected because the queue was full.
+     */
+    public long getRejectedCallCount() {
+        return rejectedCalls.get();
+    }
+
     // ---------------------------------------------------
     // Inner Classes.
     // ---------------------------------------------------
 
+    /**
+     * Marks a protocol method that may be called concurrently. All other methods of a protocol are
+     * serialized on the protocol implementation.
+     */
+    @Documented
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    public static @interface Concurrent {}
+
     /**
      *
      */
@@ -169,31 +293,41 @@ public final class RPCManager {
 
         private final IOManager ioManager;
 
-        private final static Map<UUID, CountDownLatch> callerTable = new HashMap<>();
+        private final ConcurrentMap<UUID, SettableFuture<Object>> callerTable;
 
-        private final static Map<UUID, Object> callerResultTable = new HashMap<>();
+        private final RPCBatch batch;
 
-        public ProtocolCallerProxy(final UUID dstMachineID, final IOManager ioManager) {
+        public ProtocolCallerProxy(final UUID dstMachineID,
+                                   final IOManager ioManager,
+                                   final ConcurrentMap<UUID, SettableFuture<Object>> callerTable,
+                                   final RPCBatch batch) {
             // sanity check.
             if (ioManager == null)
                 throw new IllegalArgumentException("ioManager == null");
+            if (callerTable == null)
+                throw new IllegalArgumentException("callerTable == null");
 
             this.dstMachineID = dstMachineID;
 
             this.ioManager = ioManager;
+
+            this.callerTable = callerTable;
+
+            this.batch = batch;
         }
 
         @SuppressWarnings("unchecked")
-        public static <T> T createProtocolProxy(final UUID dstMachineID, final Class<T> protocolInterface, final IOManager ioManager) {
+        public static <T> T createProtocolProxy(final UUID dstMachineID,
+                                                final Class<T> protocolInterface,
+                                                final IOManager ioManager,
+                                                final ConcurrentMap<UUID, SettableFuture<Object>> callerTable,
+                                                final RPCBatch batch) {
 
-            final ProtocolCallerProxy pc = new ProtocolCallerProxy(dstMachineID, ioManager);
+            final ProtocolCallerProxy pc = new ProtocolCallerProxy(dstMachineID, ioManager, callerTable, batch);
             return (T) Proxy.newProxyInstance(protocolInterface.getClassLoader(), new Class[] {protocolInterface}, pc);
         }
 
         /**
-         * TODO: It should be possible to invoke methods in a non-blocking fashion. This could speed
-         * up our deployment time significantly!
-         * 
          * @param proxy
          * @param method
          * @param methodArguments
@@ -203,13 +337,19 @@ public final class RPCManager {
         @Override
         public Object invoke(Object proxy, Method method, Object[] methodArguments) throws Throwable {
 
+            final boolean isAsynchronous = ListenableFuture.class.isAssignableFrom(method.getReturnType());
+            if (batch != null && !isAsynchronous)
+                throw new IllegalStateException("only asynchronous calls can be batched");
+
             // check if all arguments implement serializable
-            int argumentIndex = 0;
-            for (final Object argument : methodArguments) {
-                if (!(argument instanceof Serializable))
-                    throw new IllegalStateException("argument [" + argumentIndex + "] is not instance of" + "<"
-                            + Serializable.class.getCanonicalName() + ">");
-                ++argumentIndex;
+            if (methodArguments != null) {
+                int argumentIndex = 0;
+                for (final Object argument : methodArguments) {
+                    if (!(argument instanceof Serializable))
+                        throw new IllegalStateException("argument [" + argumentIndex + "] is not instance of" + "<"
+                                + Serializable.class.getCanonicalName() + ">");
+                    ++argumentIndex;
+                }
             }
 
             final MethodSignature methodInfo =
@@ -222,50 +362,148 @@ public final class RPCManager {
             // every remote call is identified by a unique id. The id is used to
             // resolve the associated response from remote site.
             final UUID callUID = UUID.randomUUID();
-            final CountDownLatch cdl = new CountDownLatch(1);
-            callerTable.put(callUID, cdl);
+            final SettableFuture<Object> future = SettableFuture.create();
+            callerTable.put(callUID, future);
+
+            // a cancelled or timed out call must not leak its table entry.
+            future.addListener(new Runnable() {
+
+                @Override
+                public void run() {
+                    callerTable.remove(callUID);
+                }
+            }, MoreExecutors.sameThreadExecutor());
 
             // send to server...
-            ioManager.sendEvent(dstMachineID, new RPCCallerRequestEvent(callUID, methodInfo));
+            if (batch != null) {
+                batch.addCall(dstMachineID, new RPCCallerRequestEvent(callUID, methodInfo), future);
+                return future;
+            }
+            ioManager.sendEvent(dstMachineID, new RPCCallerRequestEvent(callUID, methodInfo)).addListener(new FailedCallListener(future));
+
+            // several asynchronous calls can be in flight on one connection.
+            if (isAsynchronous) {
+                return future;
+            }
 
             try {
                 if (RPC_RESPONSE_TIMEOUT > 0) {
                     // block the caller thread until we get some response...
                     // ...but with a specified timeout to avoid indefinitely blocking of caller.
-                    cdl.await(RPC_RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
+                    return future.get(RPC_RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
                 } else {
-                    cdl.await();
+                    return future.get();
                 }
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                throw new IllegalStateException("no result of remote call " + callUID + " received");
             } catch (InterruptedException e) {
+                future.cancel(false);
                 LOG.info(e.getLocalizedMessage(), e);
+                throw new IllegalStateException("remote call " + callUID + " interrupted");
+            } catch (ExecutionException e) {
+                // TODO: should we pass a crashed call to the caller?
+                throw new IllegalStateException(e.getCause());
             }
+        }
+    }
 
-            // if is no result hasFree, then a response time-out happened...
-            if (!callerResultTable.containsKey(callUID))
-                throw new IllegalStateException("no result of remote call " + callUID + " hasFree");
+    /**
+     * Collects asynchronous calls instead of sending them one by one. {@link #flush()} sends the
+     * collected calls of each machine with a single write, the futures returned by the calls
+     * complete as usual. A batch is not thread-safe.
+     */
+    public final class RPCBatch {
 
-            // result is allowed to be null -> void as return type.
-            final Object result = callerResultTable.get(callUID);
-            // clean up our tables.
-            callerResultTable.remove(callUID);
-            callerTable.remove(callUID);
+        private final Map<UUID, List<RPCCallerRequestEvent>> pendingCalls = new LinkedHashMap<>();
 
-            // TODO: should we pass a crashed call to the caller?
-            if (result instanceof Throwable)
-                throw new IllegalStateException((Throwable) result);
+        private final Map<UUID, List<SettableFuture<Object>>> pendingResults = new HashMap<>();
 
-            return result;
-        }
+        private RPCBatch() {}
 
-        public static void notifyCaller(final UUID callUID, final Object result) {
+        /**
+         * @param protocolInterface
+         * @param dstMachine
+         * @param <T>
+         * @return A proxy whose calls are added to this batch, all methods must return a
+         *         {@link ListenableFuture}.
+         */
+        public <T> T getRPCProtocolProxy(final Class<T> protocolInterface, final MachineDescriptor dstMachine) {
             // sanity check.
-            if (callUID == null)
-                throw new IllegalArgumentException("callUID == null");
+            if (protocolInterface == null)
+                throw new IllegalArgumentException("protocolInterface == null");
+            if (dstMachine == null)
+                throw new IllegalArgumentException("dstMachine == null");
+
+            return ProtocolCallerProxy.createProtocolProxy(dstMachine.uid, protocolInterface, ioManager, callerTable, this);
+        }
+
+        /**
+         * Sends all calls added since the last flush.
+         */
+        public void flush() {
+            for (final Map.Entry<UUID, List<RPCCallerRequestEvent>> calls : pendingCalls.entrySet()) {
+                final ChannelFuture lastWrite = ioManager.sendEvents(calls.getKey(), calls.getValue());
+                for (final SettableFuture<Object> result : pendingResults.get(calls.getKey())) {
+                    lastWrite.addListener(new FailedCallListener(result));
+                }
+            }
+            pendingCalls.clear();
+            pendingResults.clear();
+        }
+
+        private void addCall(final UUID dstMachineID, final RPCCallerRequestEvent call, final SettableFuture<Object> result) {
+            List<RPCCallerRequestEvent> calls = pendingCalls.get(dstMachineID);
+            if (calls == null) {
+                calls = new ArrayList<>();
+                pendingCalls.put(dstMachineID, calls);
+                pendingResults.put(dstMachineID, new ArrayList<SettableFuture<Object>>());
+            }
+            calls.add(call);
+            pendingResults.get(dstMachineID).add(result);
+        }
+    }
+
+    /**
+     * Fails a call whose request could not be written, no response will arrive for it.
+     */
+    private static final class FailedCallListener implements ChannelFutureListener {
 
-            callerResultTable.put(callUID, result);
-            // final CountDownLatch cdl = RPCManager.ProtocolCallerProxy.callerTable.get(callUID);
-            final CountDownLatch cdl = callerTable.get(callUID);
-            cdl.countDown();
+        private final SettableFuture<Object> result;
+
+        public FailedCallListener(final SettableFuture<Object> result) {
+            this.result = result;
+        }
+
+        @Override
+        public void operationComplete(final ChannelFuture future) {
+            if (!future.isSuccess()) {
+                result.setException(future.cause());
+            }
+        }
+    }
+
+    /**
+     * A protocol method bound to its implementation.
+     */
+    private static final class CalleeMethod {
+
+        public final Class<?>[] parameterTypes;
+
+        /**
+         * Takes the arguments as array and returns the result as object.
+         */
+        public final MethodHandle handle;
+
+        /**
+         * The monitor the call is serialized on, null for concurrent methods.
+         */
+        public final Object lock;
+
+        public CalleeMethod(final Class<?>[] parameterTypes, final MethodHandle handle, final Object lock) {
+            this.parameterTypes = parameterTypes;
+            this.handle = handle;
+            this.lock = lock;
         }
     }
 
@@ -274,38 +512,83 @@ public final class RPCManager {
      */
     private final class ProtocolCalleeProxy {
 
-        private final Map<String, Object> calleeTable = new HashMap<>();
+        private final Map<String, Map<String, List<CalleeMethod>>> calleeTable = new ConcurrentHashMap<>();
 
+        /**
+         * Binds all methods of the protocol once, calls only look up the bound method.
+         */
         public void registerProtocol(final Object protocolImplementation, final Class<?> protocolInterface) {
-            calleeTable.put(protocolInterface.getSimpleName(), protocolImplementation);
+            final Map<String, List<CalleeMethod>> methodTable = new HashMap<>();
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (final Method method : protocolInterface.getMethods()) {
+                final MethodHandle handle;
+                try {
+                    handle = lookup.unreflect(method);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalArgumentException("protocol method " + method.getName() + " is not accessible", e);
+                }
+
+                final Class<?>[] parameterTypes = method.getParameterTypes();
+                final MethodHandle spreader =
+                        handle.bindTo(protocolImplementation)
+                              .asSpreader(Object[].class, parameterTypes.length)
+                              .asType(MethodType.methodType(Object.class, Object[].class));
+                final Object lock = method.isAnnotationPresent(Concurrent.class) ? null : protocolImplementation;
+
+                List<CalleeMethod> overloads = methodTable.get(method.getName());
+                if (overloads == null) {
+                    overloads = new ArrayList<>();
+                    methodTable.put(method.getName(), overloads);
+                }
+                overloads.add(new CalleeMethod(parameterTypes, spreader, lock));
+            }
+            calleeTable.put(protocolInterface.getSimpleName(), methodTable);
         }
 
-        public RPCCalleeResponseEvent callMethod(final UUID callUID, final MethodSignature methodInfo) {
+        /**
+         * @return The result of the call, a future of the result or the exception of a failed call.
+         */
+        public Object callMethod(final UUID callUID, final MethodSignature methodInfo) {
             // sanity check.
             if (callUID == null)
                 throw new IllegalArgumentException("callUID == null");
             if (methodInfo == null)
                 throw new IllegalArgumentException("methodInfo == null");
 
-            final Object protocolImplementation = calleeTable.get(methodInfo.className);
+            final Map<String, List<CalleeMethod>> methodTable = calleeTable.get(methodInfo.className);
+            if (methodTable == null) {
+                return new IllegalStateException("found no protocol implementation");
+            }
 
-            if (protocolImplementation == null) {
-                return new RPCCalleeResponseEvent(callUID, new IllegalStateException("found no protocol implementation"));
+            final CalleeMethod method = findMethod(methodTable.get(methodInfo.methodName), methodInfo.argumentTypes);
+            if (method == null) {
+                return new IllegalStateException("found no protocol method " + methodInfo.methodName);
             }
 
-            synchronized (protocolImplementation) { // TODO: Synchronization on local variable
-                                                    // 'protocolImplementation'
-                // TODO: Maybe we could do some caching of method signatures
-                // on the callee site for frequent repeated calls...
+            final Object[] arguments = methodInfo.arguments != null ? methodInfo.arguments : new Object[0];
+            try {
+                if (method.lock == null) {
+                    return method.handle.invokeExact(arguments);
+                }
+                synchronized (method.lock) {
+                    return method.handle.invokeExact(arguments);
+                }
+            } catch (Throwable t) {
+                return t;
+            }
+        }
 
-                try {
-                    final Method method = protocolImplementation.getClass().getMethod(methodInfo.methodName, methodInfo.argumentTypes);
-                    final Object result = method.invoke(protocolImplementation, methodInfo.arguments);
-                    return new RPCCalleeResponseEvent(callUID, result);
-                } catch (Exception e) {
-                    return new RPCCalleeResponseEvent(callUID, e);
+        private CalleeMethod findMethod(final List<CalleeMethod> overloads, final Class<?>[] argumentTypes) {
+            if (overloads == null) {
+                return null;
+            }
+            final Class<?>[] parameterTypes = argumentTypes != null ? argumentTypes : new Class<?>[0];
+            for (final CalleeMethod method : overloads) {
+                if (Arrays.equals(method.parameterTypes, parameterTypes)) {
+                    return method;
                 }
             }
+            return null;
         }
     }
 
@@ -314,27 +597,56 @@ public final class RPCManager {
      */
     private final class RPCEventHandler extends EventHandler {
 
-        private ExecutorService executor = Executors.newCachedThreadPool();
-
         @Handle(event = RPCCallerRequestEvent.class)
         private void handleRPCRequest(final RPCCallerRequestEvent event) {
-            this.executor.execute(new Runnable() {
-
-                @Override
-                public void run() {
-                    final RPCCalleeResponseEvent calleeMsg =
-                    // RPCManager.ProtocolCalleeProxy.callMethod(event.callUID,
-                    // event.methodSignature);
-                            calleeProxy.callMethod(event.callUID, event.methodSignature);
-
-                    ioManager.sendEvent(event.getSrcMachineID(), calleeMsg);
-                }
-            });
+            try {
+                calleeExecutor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        final Object result = calleeProxy.callMethod(event.callUID, event.methodSignature);
+
+                        if (result instanceof ListenableFuture) {
+                            // respond when the implementation completed the call.
+                            @SuppressWarnings("unchecked")
+                            final ListenableFuture<Object> future = (ListenableFuture<Object>) result;
+                            Futures.addCallback(future, new FutureCallback<Object>() {
+
+                                @Override
+                                public void onSuccess(final Object value) {
+                                    ioManager.sendEvent(event.getSrcMachineID(), new RPCCalleeResponseEvent(event.callUID, value));
+                                }
+
+                                @Override
+                                public void onFailure(final Throwable t) {
+                                    ioManager.sendEvent(event.getSrcMachineID(), new RPCCalleeResponseEvent(event.callUID, t));
+                                }
+                            });
+                        } else {
+                            ioManager.sendEvent(event.getSrcMachineID(), new RPCCalleeResponseEvent(event.callUID, result));
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejectedCalls.incrementAndGet();
+                LOG.warn("rejected remote call " + event.callUID + ", " + calleeExecutor.getQueue().size() + " calls pending");
+                ioManager.sendEvent(event.getSrcMachineID(), new RPCCalleeResponseEvent(event.callUID, e));
+            }
         }
 
         @Handle(event = RPCCalleeResponseEvent.class)
         private void handleRPCResponse(final RPCCalleeResponseEvent event) {
-            ProtocolCallerProxy.notifyCaller(event.callUID, event.result);
+            final SettableFuture<Object> future = callerTable.remove(event.callUID);
+            if (future == null) {
+                LOG.warn("no pending remote call " + event.callUID);
+                return;
+            }
+
+            if (event.result instanceof Throwable) {
+                future.setException((Throwable) event.result);
+            } else {
+                future.set(event.result);
+            }
         }
     }
 }
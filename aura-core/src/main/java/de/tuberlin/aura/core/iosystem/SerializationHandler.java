@@ -222,7 +222,7 @@ public final class SerializationHandler {
         private void bindAllocator(UUID src, UUID dst) {
             final TaskExecutionManager tem = executionManager;
             final TaskExecutionUnit executionUnit = tem.findTaskExecutionUnitByTaskID(dst);
-            final TaskDriverContext taskDriverContext = executionUnit.getCurrentTaskDriverContext();
+            final TaskDriverContext taskDriverContext = executionUnit.getTaskDriverContext(dst);
             final DataConsumer dataConsumer = taskDriverContext.getDataConsumer();
             final int gateIndex = dataConsumer.getInputGateIndexFromTaskID(src);
             IAllocator allocatorGroup = executionUnit.getInputAllocator();
@@ -389,7 +389,7 @@ public final class SerializationHandler {
         private void bindAllocator(UUID src, UUID dst) {
             final TaskExecutionManager tem = executionManager;
             final TaskExecutionUnit executionUnit = tem.findTaskExecutionUnitByTaskID(dst);
-            final TaskDriverContext taskDriverContext = executionUnit.getCurrentTaskDriverContext();
+            final TaskDriverContext taskDriverContext = executionUnit.getTaskDriverContext(dst);
             final DataConsumer dataConsumer = taskDriverContext.getDataConsumer();
             final int gateIndex = dataConsumer.getInputGateIndexFromTaskID(src);
             IAllocator allocatorGroup = executionUnit.getInputAllocator();
@@ -1,5 +1,6 @@
 package de.tuberlin.aura.core.iosystem.queues;
 
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -18,6 +19,8 @@ public class BlockingBufferQueue<T> implements BufferQueue<T> {
 
     private final BlockingQueue<T> backingQueue;
 
+    private volatile QueueObserver observer;
+
     BlockingBufferQueue() {
         this.backingQueue = new LinkedBlockingQueue<>();
     }
@@ -29,12 +32,17 @@ public class BlockingBufferQueue<T> implements BufferQueue<T> {
 
     @Override
     public boolean offer(T value) {
-        return backingQueue.offer(value);
+        final boolean added = backingQueue.offer(value);
+        if (added) {
+            signalNewElement();
+        }
+        return added;
     }
 
     @Override
     public void put(T value) throws InterruptedException {
         backingQueue.put(value);
+        signalNewElement();
     }
 
     @Override
@@ -63,10 +71,26 @@ public class BlockingBufferQueue<T> implements BufferQueue<T> {
     }
 
     @Override
-    public void registerObserver(QueueObserver observer) {}
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        return backingQueue.drainTo(c, maxElements);
+    }
+
+    @Override
+    public void registerObserver(QueueObserver observer) {
+        this.observer = observer;
+    }
 
     @Override
-    public void removeObserver(QueueObserver observer) {}
+    public void removeObserver(QueueObserver observer) {
+        this.observer = null;
+    }
+
+    private void signalNewElement() {
+        final QueueObserver o = observer;
+        if (o != null) {
+            o.signalNewElement();
+        }
+    }
 
     public static class Factory<F> implements FACTORY<F> {
 
@@ -1,5 +1,6 @@
 package de.tuberlin.aura.core.iosystem.queues;
 
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 public interface BufferQueue<T> {
@@ -48,6 +49,16 @@ public interface BufferQueue<T> {
      */
     boolean offer(T value);
 
+    /**
+     * Removes at most the given number of available elements from this queue and adds them to the
+     * given collection. Never waits for elements to become available.
+     * 
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @return the number of elements transferred
+     */
+    int drainTo(Collection<? super T> c, int maxElements);
+
     /**
      * Returns true if the queue contains no elements.
      * 
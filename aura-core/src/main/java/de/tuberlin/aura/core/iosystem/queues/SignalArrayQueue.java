@@ -0,0 +1,359 @@
+package de.tuberlin.aura.core.iosystem.queues;
+
+import static de.tuberlin.aura.core.common.utils.UnsafeAccess.UNSAFE;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+abstract class ArrayQueuePad0<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+}
+
+
+abstract class ArrayQueueBuffer<E> extends ArrayQueuePad0<E> {
+
+    /**
+     * Number of unused slots at both ends of the buffer, keeps the elements off the cache lines of
+     * the array header and of neighbouring objects.
+     */
+    private static final int BUFFER_PAD = 16;
+
+    private static final long ARRAY_BASE;
+
+    private static final int ELEMENT_SHIFT;
+
+    static {
+        final int scale = UNSAFE.arrayIndexScale(Object[].class);
+        if (scale == 4) {
+            ELEMENT_SHIFT = 2;
+        } else if (scale == 8) {
+            ELEMENT_SHIFT = 3;
+        } else {
+            throw new IllegalStateException("unknown pointer size");
+        }
+        ARRAY_BASE = UNSAFE.arrayBaseOffset(Object[].class) + (BUFFER_PAD << ELEMENT_SHIFT);
+    }
+
+    protected final int capacity;
+
+    protected final long mask;
+
+    protected final E[] buffer;
+
+    @SuppressWarnings("unchecked")
+    ArrayQueueBuffer(final int capacity) {
+        // sanity check.
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity <= 0");
+        if (capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity > 2^30");
+
+        this.capacity = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.mask = this.capacity - 1;
+        this.buffer = (E[]) new Object[this.capacity + BUFFER_PAD * 2];
+    }
+
+    protected final long calcOffset(final long index) {
+        return ARRAY_BASE + ((index & mask) << ELEMENT_SHIFT);
+    }
+
+    protected final void soElement(final long offset, final E e) {
+        UNSAFE.putOrderedObject(buffer, offset, e);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected final E lvElement(final long offset) {
+        return (E) UNSAFE.getObjectVolatile(buffer, offset);
+    }
+}
+
+
+abstract class ArrayQueuePad1<E> extends ArrayQueueBuffer<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+
+    ArrayQueuePad1(final int capacity) {
+        super(capacity);
+    }
+}
+
+
+abstract class ArrayQueueProducerIndex<E> extends ArrayQueuePad1<E> {
+
+    private final static long PRODUCER_INDEX_OFFSET;
+
+    static {
+        try {
+            PRODUCER_INDEX_OFFSET = UNSAFE.objectFieldOffset(ArrayQueueProducerIndex.class.getDeclaredField("producerIndex"));
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private volatile long producerIndex;
+
+    ArrayQueueProducerIndex(final int capacity) {
+        super(capacity);
+    }
+
+    protected final long lvProducerIndex() {
+        return producerIndex;
+    }
+
+    protected final void soProducerIndex(final long index) {
+        UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
+    }
+
+    protected final boolean casProducerIndex(final long expect, final long index) {
+        return UNSAFE.compareAndSwapLong(this, PRODUCER_INDEX_OFFSET, expect, index);
+    }
+}
+
+
+abstract class ArrayQueuePad2<E> extends ArrayQueueProducerIndex<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+
+    ArrayQueuePad2(final int capacity) {
+        super(capacity);
+    }
+}
+
+
+abstract class ArrayQueueConsumerIndex<E> extends ArrayQueuePad2<E> {
+
+    private final static long CONSUMER_INDEX_OFFSET;
+
+    static {
+        try {
+            CONSUMER_INDEX_OFFSET = UNSAFE.objectFieldOffset(ArrayQueueConsumerIndex.class.getDeclaredField("consumerIndex"));
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private volatile long consumerIndex;
+
+    ArrayQueueConsumerIndex(final int capacity) {
+        super(capacity);
+    }
+
+    protected final long lvConsumerIndex() {
+        return consumerIndex;
+    }
+
+    protected final void soConsumerIndex(final long index) {
+        UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+    }
+}
+
+
+/**
+ * Bounded, array backed queue with padded producer and consumer indexes. Supports a single consumer,
+ * the number of supported producers is defined by the {@link #offer(Object)} of the subclass.
+ *
+ * Like {@link SignalSpscLinkedQueue} the registered observer is signaled when the queue turns from
+ * empty to non-empty. A waiting consumer behaves as defined by the {@link WaitStrategy} of the
+ * queue, a producer waiting for space spins, yields and finally parks.
+ *
+ * @param <E>
+ */
+public abstract class SignalArrayQueue<E> extends ArrayQueueConsumerIndex<E> implements BufferQueue<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 100;
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final static long EMPTY_OFFSET;
+
+    static {
+        try {
+            EMPTY_OFFSET = UNSAFE.objectFieldOffset(SignalArrayQueue.class.getDeclaredField("empty"));
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private volatile int empty = 1;
+
+    private volatile QueueObserver observer;
+
+    private final WaitStrategy waitStrategy;
+
+    SignalArrayQueue(final int capacity, final WaitStrategy waitStrategy) {
+        super(capacity);
+        // sanity check.
+        if (waitStrategy == null)
+            throw new IllegalArgumentException("waitStrategy == null");
+
+        this.waitStrategy = waitStrategy;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public E poll() {
+        for (;;) {
+            final E e = pollElement();
+            if (e != null) {
+                return e;
+            }
+            empty = 1;
+            // an element offered between the failed poll and the reset of the flag did not signal.
+            if (lvProducerIndex() == lvConsumerIndex() || !UNSAFE.compareAndSwapInt(this, EMPTY_OFFSET, 1, 0)) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        int idleCounter = 0;
+        E e;
+        while ((e = poll()) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return null;
+            idleCounter = waitStrategy.idle(this, idleCounter, remaining);
+        }
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        int idleCounter = 0;
+        E e;
+        while ((e = poll()) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            idleCounter = waitStrategy.idle(this, idleCounter, Long.MAX_VALUE);
+        }
+        return e;
+    }
+
+    @Override
+    public void put(final E value) throws InterruptedException {
+        int idleCounter = 0;
+        while (!offer(value)) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            idleCounter = backoff(idleCounter);
+        }
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        int n = 0;
+        while (n < maxElements) {
+            E e = pollElement();
+            if (e == null && (e = poll()) == null) {
+                break;
+            }
+            c.add(e);
+            ++n;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return lvConsumerIndex() == lvProducerIndex();
+    }
+
+    @Override
+    public int size() {
+        // read the consumer index first, so the difference can never become negative.
+        final long consumer = lvConsumerIndex();
+        final long producer = lvProducerIndex();
+        return (int) Math.min(producer - consumer, capacity);
+    }
+
+    /**
+     * @return the max. number of elements this queue can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void registerObserver(QueueObserver observer) {
+        this.observer = observer;
+    }
+
+    @Override
+    public void removeObserver(QueueObserver observer) {
+        this.observer = null;
+    }
+
+    // ---------------------------------------------------
+    // Protected Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Must be called by the producer after an element is published.
+     */
+    protected final void signalNewElement() {
+        if (UNSAFE.compareAndSwapInt(this, EMPTY_OFFSET, 1, 0)) {
+            final QueueObserver o = observer;
+            if (o != null) {
+                o.signalNotEmpty();
+            }
+            waitStrategy.signal();
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private E pollElement() {
+        final long index = lvConsumerIndex();
+        final long offset = calcOffset(index);
+        E e = lvElement(offset);
+        if (e == null) {
+            if (index == lvProducerIndex()) {
+                return null;
+            }
+            // a producer claimed the slot but has not published the element yet.
+            do {
+                e = lvElement(offset);
+            } while (e == null);
+        }
+        soElement(offset, null);
+        soConsumerIndex(index + 1);
+        return e;
+    }
+
+    private static int backoff(final int idleCounter) {
+        if (idleCounter < SPIN_TRIES) {
+            return idleCounter + 1;
+        } else if (idleCounter < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+            return idleCounter + 1;
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+            return idleCounter;
+        }
+    }
+}
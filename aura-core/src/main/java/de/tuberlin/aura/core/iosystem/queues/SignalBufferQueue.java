@@ -1,5 +1,6 @@
 package de.tuberlin.aura.core.iosystem.queues;
 
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -72,6 +73,11 @@ public class SignalBufferQueue<T> implements BufferQueue<T> {
         return backingQueue.size();
     }
 
+    @Override
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        return backingQueue.drainTo(c, maxElements);
+    }
+
     @Override
     public void registerObserver(QueueObserver observer) {
         this.observer = observer;
@@ -0,0 +1,69 @@
+package de.tuberlin.aura.core.iosystem.queues;
+
+/**
+ * Bounded multi-producer single-consumer ring buffer. Producers claim a slot by a CAS on the
+ * producer index.
+ * 
+ * @param <E>
+ */
+public final class SignalMpscArrayQueue<E> extends SignalArrayQueue<E> {
+
+    public SignalMpscArrayQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SignalMpscArrayQueue(final int capacity) {
+        this(capacity, new WaitStrategy.SpinParkWaitStrategy());
+    }
+
+    public SignalMpscArrayQueue(final int capacity, final WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        if (e == null) {
+            throw new IllegalArgumentException("null elements not allowed");
+        }
+        long index;
+        do {
+            index = lvProducerIndex();
+            if (index - lvConsumerIndex() >= capacity) {
+                return false;
+            }
+        } while (!casProducerIndex(index, index + 1));
+
+        soElement(calcOffset(index), e);
+        signalNewElement();
+        return true;
+    }
+
+    public static class Factory<F> implements FACTORY<F> {
+
+        private final int capacity;
+
+        private final WaitStrategy.Type waitStrategyType;
+
+        public Factory() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public Factory(final int capacity) {
+            this(capacity, WaitStrategy.Type.SPIN_PARK);
+        }
+
+        public Factory(final int capacity, final WaitStrategy.Type waitStrategyType) {
+            // sanity check.
+            if (waitStrategyType == null)
+                throw new IllegalArgumentException("waitStrategyType == null");
+
+            this.capacity = capacity;
+            this.waitStrategyType = waitStrategyType;
+        }
+
+        @Override
+        public BufferQueue<F> newInstance() {
+            return new SignalMpscArrayQueue<>(capacity, waitStrategyType.newInstance());
+        }
+    }
+}
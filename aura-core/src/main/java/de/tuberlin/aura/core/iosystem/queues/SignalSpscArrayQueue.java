@@ -0,0 +1,67 @@
+package de.tuberlin.aura.core.iosystem.queues;
+
+/**
+ * Bounded single-producer single-consumer ring buffer.
+ * 
+ * @param <E>
+ */
+public final class SignalSpscArrayQueue<E> extends SignalArrayQueue<E> {
+
+    public SignalSpscArrayQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SignalSpscArrayQueue(final int capacity) {
+        this(capacity, new WaitStrategy.SpinParkWaitStrategy());
+    }
+
+    public SignalSpscArrayQueue(final int capacity, final WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        if (e == null) {
+            throw new IllegalArgumentException("null elements not allowed");
+        }
+        final long index = lvProducerIndex();
+        final long offset = calcOffset(index);
+        // the consumer clears the slot before it moves on, so a non empty slot means full.
+        if (lvElement(offset) != null) {
+            return false;
+        }
+        soElement(offset, e);
+        soProducerIndex(index + 1);
+        signalNewElement();
+        return true;
+    }
+
+    public static class Factory<F> implements FACTORY<F> {
+
+        private final int capacity;
+
+        private final WaitStrategy.Type waitStrategyType;
+
+        public Factory() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public Factory(final int capacity) {
+            this(capacity, WaitStrategy.Type.SPIN_PARK);
+        }
+
+        public Factory(final int capacity, final WaitStrategy.Type waitStrategyType) {
+            // sanity check.
+            if (waitStrategyType == null)
+                throw new IllegalArgumentException("waitStrategyType == null");
+
+            this.capacity = capacity;
+            this.waitStrategyType = waitStrategyType;
+        }
+
+        @Override
+        public BufferQueue<F> newInstance() {
+            return new SignalSpscArrayQueue<>(capacity, waitStrategyType.newInstance());
+        }
+    }
+}
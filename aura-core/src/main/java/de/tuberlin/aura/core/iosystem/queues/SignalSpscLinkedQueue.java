@@ -2,6 +2,7 @@ package de.tuberlin.aura.core.iosystem.queues;
 
 import static de.tuberlin.aura.core.common.utils.UnsafeAccess.UNSAFE;
 
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 abstract class SpscLinkedQueuePad0<E> {
@@ -111,7 +112,19 @@ public final class SignalSpscLinkedQueue<E> extends SpscLinkedQueueTail<E> imple
 
     @Override
     public void put(E value) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        // unbounded, never waits.
+        offer(value);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            ++n;
+        }
+        return n;
     }
 
     @Override
@@ -0,0 +1,168 @@
+package de.tuberlin.aura.core.iosystem.queues;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Defines how a consumer waits for elements of an empty {@link SignalArrayQueue}. The strategies
+ * trade cpu usage against the latency of the hand-off between producer and consumer.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called by the consumer after an unsuccessful poll.
+     *
+     * @param queue the queue the consumer waits on
+     * @param idleCounter the number of unsuccessful polls so far
+     * @param remainingNanos the max. time the strategy may wait
+     * @return the idle counter for the next call
+     * @throws InterruptedException if interrupted while waiting
+     */
+    int idle(final BufferQueue<?> queue, final int idleCounter, final long remainingNanos) throws InterruptedException;
+
+    /**
+     * Called by the producer when the queue turned from empty to non-empty.
+     */
+    void signal();
+
+    // ---------------------------------------------------
+    // Strategy Types.
+    // ---------------------------------------------------
+
+    public static enum Type {
+
+        /**
+         * Never gives up the core, lowest latency.
+         */
+        BUSY_SPIN,
+
+        /**
+         * Spins for a while, then yields the core to other threads.
+         */
+        SPIN_YIELD,
+
+        /**
+         * Spins, yields and finally parks for a short time.
+         */
+        SPIN_PARK,
+
+        /**
+         * Sleeps until the producer signals a new element.
+         */
+        BLOCKING;
+
+        public WaitStrategy newInstance() {
+            switch (this) {
+                case BUSY_SPIN:
+                    return new BusySpinWaitStrategy();
+                case SPIN_YIELD:
+                    return new SpinYieldWaitStrategy();
+                case SPIN_PARK:
+                    return new SpinParkWaitStrategy();
+                case BLOCKING:
+                    return new BlockingWaitStrategy();
+                default:
+                    throw new IllegalStateException("unknown wait strategy " + this);
+            }
+        }
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    public static final class BusySpinWaitStrategy implements WaitStrategy {
+
+        @Override
+        public int idle(final BufferQueue<?> queue, final int idleCounter, final long remainingNanos) {
+            return idleCounter;
+        }
+
+        @Override
+        public void signal() {}
+    }
+
+    public static final class SpinYieldWaitStrategy implements WaitStrategy {
+
+        private static final int SPIN_TRIES = 100;
+
+        @Override
+        public int idle(final BufferQueue<?> queue, final int idleCounter, final long remainingNanos) {
+            if (idleCounter < SPIN_TRIES) {
+                return idleCounter + 1;
+            }
+            Thread.yield();
+            return idleCounter;
+        }
+
+        @Override
+        public void signal() {}
+    }
+
+    public static final class SpinParkWaitStrategy implements WaitStrategy {
+
+        private static final int SPIN_TRIES = 100;
+
+        private static final int YIELD_TRIES = 100;
+
+        private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+        @Override
+        public int idle(final BufferQueue<?> queue, final int idleCounter, final long remainingNanos) {
+            if (idleCounter < SPIN_TRIES) {
+                return idleCounter + 1;
+            } else if (idleCounter < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+                return idleCounter + 1;
+            } else {
+                LockSupport.parkNanos(Math.min(PARK_NANOS, remainingNanos));
+                return idleCounter;
+            }
+        }
+
+        @Override
+        public void signal() {}
+    }
+
+    public static final class BlockingWaitStrategy implements WaitStrategy {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition notEmpty = lock.newCondition();
+
+        private volatile int waiters = 0;
+
+        @Override
+        public int idle(final BufferQueue<?> queue, final int idleCounter, final long remainingNanos) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                ++waiters;
+                try {
+                    // re-check under the lock, a producer signals only after it published.
+                    if (queue.isEmpty()) {
+                        notEmpty.awaitNanos(remainingNanos);
+                    }
+                } finally {
+                    --waiters;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return idleCounter + 1;
+        }
+
+        @Override
+        public void signal() {
+            if (waiters > 0) {
+                lock.lock();
+                try {
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
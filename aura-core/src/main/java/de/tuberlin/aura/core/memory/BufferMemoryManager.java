@@ -38,7 +38,14 @@ public final class BufferMemoryManager implements IBufferMemoryManager {
 
     private final int globalBufferCount;
 
-    private final List<BufferAllocatorGroup> allocatorGroups;
+    private final int buffersPerAllocator;
+
+    /**
+     * Created by the first caller, so the memory is allocated by the thread that uses it. The arenas
+     * are heap arrays, they are only local to the node of a pinned caller if its allocation is the
+     * first touch of their pages, see {@link de.tuberlin.aura.core.common.utils.ThreadAffinity}.
+     */
+    private final BufferAllocatorGroup[] allocatorGroups;
 
     private final AtomicInteger allocatorIndex;
 
@@ -65,20 +72,16 @@ public final class BufferMemoryManager implements IBufferMemoryManager {
 
         final int perExecutionUnitBuffers = globalBufferCount / numOfExecutionUnits;
 
-        final int buffersPerAllocator = (perExecutionUnitBuffers / groupsPerExecutionUnit) / NUM_OF_ALLOCATORS_PER_GROUP;
+        this.buffersPerAllocator = (perExecutionUnitBuffers / groupsPerExecutionUnit) / NUM_OF_ALLOCATORS_PER_GROUP;
 
-        this.allocatorGroups =
-                setupBufferAllocatorGroups(numOfExecutionUnits * groupsPerExecutionUnit,
-                                           NUM_OF_ALLOCATORS_PER_GROUP,
-                                           buffersPerAllocator,
-                                           BufferAllocator._64K);
+        this.allocatorGroups = new BufferAllocatorGroup[numOfExecutionUnits * groupsPerExecutionUnit];
 
         this.allocatorIndex = new AtomicInteger(0);
 
         LOG.debug("Execution Units: {}", numOfExecutionUnits);
         LOG.debug("Max Memory: {}", maxMemory);
         LOG.debug("Buffer Count: {}", globalBufferCount);
-        LOG.debug("IAllocator Groups: {} with {} allocators each", allocatorGroups.size(), NUM_OF_ALLOCATORS_PER_GROUP);
+        LOG.debug("IAllocator Groups: {} with {} allocators each", allocatorGroups.length, NUM_OF_ALLOCATORS_PER_GROUP);
         LOG.debug("Groups per Execution Unit: {}", groupsPerExecutionUnit);
         LOG.debug("Buffers Per IAllocator: {}", buffersPerAllocator);
     }
@@ -99,28 +102,32 @@ public final class BufferMemoryManager implements IBufferMemoryManager {
         return runtime.totalMemory();
     }
 
+    public long getBufferMemory() {
+        return (long) globalBufferCount * BUFFER_SIZE;
+    }
+
     public BufferAllocatorGroup getBufferAllocatorGroup() {
-        return allocatorGroups.get(allocatorIndex.getAndIncrement() % allocatorGroups.size());
+        final int index = allocatorIndex.getAndIncrement() % allocatorGroups.length;
+        synchronized (allocatorGroups) {
+            if (allocatorGroups[index] == null)
+                allocatorGroups[index] = createBufferAllocatorGroup(NUM_OF_ALLOCATORS_PER_GROUP, buffersPerAllocator, BUFFER_SIZE);
+            return allocatorGroups[index];
+        }
     }
 
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
-    private List<BufferAllocatorGroup> setupBufferAllocatorGroups(final int numOfAllocatorGroups,
-                                                                  final int numOfAllocatorsPerGroup,
-                                                                  final int buffersPerAllocator,
-                                                                  final int bufferSize) {
+    private static BufferAllocatorGroup createBufferAllocatorGroup(final int numOfAllocatorsPerGroup,
+                                                                   final int buffersPerAllocator,
+                                                                   final int bufferSize) {
 
-        final List<BufferAllocatorGroup> allocatorGroups = new ArrayList<>();
-        for (int i = 0; i < numOfAllocatorGroups; ++i) {
-            final List<IAllocator> initialAllocators = new ArrayList<>();
+        final List<IAllocator> initialAllocators = new ArrayList<>();
 
-            for (int j = 0; j < numOfAllocatorsPerGroup; ++j)
-                initialAllocators.add(new BufferAllocator(bufferSize, buffersPerAllocator));
+        for (int j = 0; j < numOfAllocatorsPerGroup; ++j)
+            initialAllocators.add(new BufferAllocator(bufferSize, buffersPerAllocator));
 
-            allocatorGroups.add(new BufferAllocatorGroup(bufferSize, initialAllocators));
-        }
-        return allocatorGroups;
+        return new BufferAllocatorGroup(bufferSize, initialAllocators);
     }
 }
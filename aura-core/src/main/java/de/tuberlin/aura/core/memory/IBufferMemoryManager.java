@@ -11,5 +11,7 @@ public interface IBufferMemoryManager {
 
     public long getTotalMemory();
 
+    public long getBufferMemory();
+
     public BufferAllocatorGroup getBufferAllocatorGroup();
 }
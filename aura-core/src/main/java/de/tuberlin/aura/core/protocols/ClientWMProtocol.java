@@ -2,13 +2,20 @@ package de.tuberlin.aura.core.protocols;
 
 import java.util.UUID;
 
+import de.tuberlin.aura.core.iosystem.RPCManager.Concurrent;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
 
+/**
+ * The calls of different clients are executed concurrently.
+ */
 public interface ClientWMProtocol {
 
+    @Concurrent
     public void openSession(final UUID sessionID);
 
+    @Concurrent
     public void submitTopology(final UUID sessionID, final AuraTopology topology);
 
+    @Concurrent
     public void closeSession(final UUID sessionID);
 }
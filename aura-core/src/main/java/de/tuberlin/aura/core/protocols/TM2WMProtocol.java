@@ -0,0 +1,23 @@
+package de.tuberlin.aura.core.protocols;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import de.tuberlin.aura.core.iosystem.RPCManager.Concurrent;
+import de.tuberlin.aura.core.task.usercode.UserCode;
+
+/**
+ * The calls of different task managers are executed concurrently.
+ */
+public interface TM2WMProtocol {
+
+    /**
+     * @param topologyID
+     * @param codeHashes
+     * @return The user code of the topology with the hashes.
+     */
+    @Concurrent
+    public ListenableFuture<List<UserCode>> fetchUserCodes(final UUID topologyID, final List<String> codeHashes);
+}
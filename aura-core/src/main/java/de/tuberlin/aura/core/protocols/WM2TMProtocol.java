@@ -1,12 +1,32 @@
 package de.tuberlin.aura.core.protocols;
 
 import java.util.List;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListenableFuture;
 
 import de.tuberlin.aura.core.descriptors.Descriptors.TaskDeploymentDescriptor;
+import de.tuberlin.aura.core.task.usercode.UserCode;
 
+/**
+ * The calls are asynchronous, the futures complete when the task manager installed the tasks.
+ */
 public interface WM2TMProtocol {
 
-    public void installTask(final TaskDeploymentDescriptor taskDeploymentDescriptor);
+    public ListenableFuture<Void> installTask(final TaskDeploymentDescriptor taskDeploymentDescriptor);
+
+    /**
+     * @param deploymentDescriptors The tasks, they refer to their user code by hash.
+     * @param userCodes The code the task manager probably does not have yet, missing code is
+     *        fetched with {@link TM2WMProtocol#fetchUserCodes(java.util.UUID, List)}.
+     */
+    public ListenableFuture<Void> installTasks(final List<TaskDeploymentDescriptor> deploymentDescriptors, final List<UserCode> userCodes);
 
-    public void installTasks(final List<TaskDeploymentDescriptor> deploymentDescriptors);
+    /**
+     * Called once the topology is finished, canceled or failed. Until then the task manager keeps
+     * the class loader of the topology, also between tasks deployed on demand.
+     * 
+     * @param topologyID
+     */
+    public ListenableFuture<Void> releaseTopology(final UUID topologyID);
 }
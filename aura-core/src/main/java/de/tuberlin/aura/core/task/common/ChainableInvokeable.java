@@ -0,0 +1,87 @@
+package de.tuberlin.aura.core.task.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+import de.tuberlin.aura.core.iosystem.IOEvents;
+
+/**
+ * A single input invokeable that processes one buffer at a time. If it is connected POINT_TO_POINT
+ * to a producer with the same degree of parallelism, it is fused into the task of the producer and
+ * {@link #process(IOEvents.TransferBufferEvent)} is called directly with each emitted buffer.
+ * Otherwise it runs as a task of its own and absorbs the buffers of its input gate.
+ */
+public abstract class ChainableInvokeable extends TaskInvokeable {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    private static final int BATCH_SIZE = 64;
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private boolean isChained;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public ChainableInvokeable(final TaskDriverContext driverContext, final DataProducer producer, final DataConsumer consumer, final Logger LOG) {
+        super(driverContext, producer, consumer, LOG);
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Called with each buffer of the input, the buffer must be freed or passed on.
+     * 
+     * @param event
+     * @throws Throwable
+     */
+    public abstract void process(final IOEvents.TransferBufferEvent event) throws Throwable;
+
+    /**
+     * Marks this invokeable as fused into the task of its producer, it then neither opens its input
+     * gate nor runs.
+     */
+    public void markChained() {
+        isChained = true;
+    }
+
+    public boolean isChained() {
+        return isChained;
+    }
+
+    @Override
+    public void open() throws Throwable {
+        if (!isChained)
+            consumer.openGate(0);
+    }
+
+    @Override
+    public void run() throws Throwable {
+        final List<IOEvents.TransferBufferEvent> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (!consumer.isExhausted() && isInvokeableRunning()) {
+            consumer.absorbBatch(0, batch, BATCH_SIZE);
+
+            for (final IOEvents.TransferBufferEvent event : batch) {
+                process(event);
+            }
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void close() throws Throwable {
+        if (!driverContext.taskBindingDescriptor.outputGateBindings.isEmpty())
+            producer.done();
+    }
+}
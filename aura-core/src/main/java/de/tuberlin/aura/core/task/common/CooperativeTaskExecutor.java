@@ -0,0 +1,149 @@
+package de.tuberlin.aura.core.task.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.tuberlin.aura.core.iosystem.queues.BufferQueue;
+
+/**
+ * Multiplexes cooperative tasks over a fixed number of worker threads. A task is scheduled when
+ * events arrive at its input, processes the available events without waiting and returns the
+ * worker. Blocking calls of the invokeable, like {@link DataProducer#allocBlocking()}, still block
+ * the worker.
+ */
+public final class CooperativeTaskExecutor {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    /**
+     * The max. number of input events a task processes before it yields the worker, set with
+     * -Daura.taskmanager.cooperativestepsize.
+     */
+    private static final int STEP_SIZE = Integer.getInteger("aura.taskmanager.cooperativestepsize", 64);
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final Logger LOG = LoggerFactory.getLogger(CooperativeTaskExecutor.class);
+
+    private final ExecutorService workers;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    /**
+     * @param numberOfWorkers
+     */
+    public CooperativeTaskExecutor(final int numberOfWorkers) {
+        // sanity check.
+        if (numberOfWorkers < 1)
+            throw new IllegalArgumentException("numberOfWorkers < 1");
+
+        this.workers = Executors.newFixedThreadPool(numberOfWorkers, new ThreadFactoryBuilder().setNameFormat("Cooperative-Worker-%d")
+                                                                                               .setDaemon(true)
+                                                                                               .build());
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param driverContext
+     * @return A task that starts once it is released twice, by the transition to running and by
+     *         the hand over of its execution unit.
+     */
+    public CooperativeTask createTask(final TaskDriverContext driverContext) {
+        // sanity check.
+        if (driverContext == null)
+            throw new IllegalArgumentException("driverContext == null");
+
+        return new CooperativeTask(driverContext);
+    }
+
+    /**
+     *
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    public final class CooperativeTask implements Runnable, BufferQueue.QueueObserver {
+
+        private final TaskDriverContext driverContext;
+
+        private final AtomicInteger startConditions = new AtomicInteger(2);
+
+        /**
+         * Input signals not yet seen by a step, the task is scheduled while this is greater than 0.
+         */
+        private final AtomicInteger signals = new AtomicInteger(0);
+
+        private CooperativeTask(final TaskDriverContext driverContext) {
+            this.driverContext = driverContext;
+        }
+
+        /**
+         * Opens the task and schedules its first step on the second call.
+         */
+        public void release() {
+            if (startConditions.decrementAndGet() != 0)
+                return;
+
+            LOG.debug("Start cooperative execution of task {}", driverContext.taskDescriptor.taskID);
+
+            workers.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (driverContext.taskDriver.openDriver(CooperativeTask.this))
+                        schedule();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            final int seenSignals = signals.get();
+            final int events = driverContext.taskDriver.executeDriverStep(STEP_SIZE);
+            if (events < 0)
+                return;
+
+            // a full step may have left events behind that do not signal again.
+            if (events == STEP_SIZE || signals.addAndGet(-seenSignals) > 0)
+                workers.execute(this);
+        }
+
+        @Override
+        public void signalNotFull() {}
+
+        @Override
+        public void signalNotEmpty() {
+            schedule();
+        }
+
+        @Override
+        public void signalNewElement() {
+            schedule();
+        }
+
+        private void schedule() {
+            if (signals.getAndIncrement() == 0)
+                workers.execute(this);
+        }
+    }
+}
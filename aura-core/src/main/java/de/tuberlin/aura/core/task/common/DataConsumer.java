@@ -1,6 +1,7 @@
 package de.tuberlin.aura.core.task.common;
 
 
+import java.util.List;
 import java.util.UUID;
 
 import de.tuberlin.aura.core.iosystem.IOEvents;
@@ -9,6 +10,48 @@ public interface DataConsumer {
 
     public abstract IOEvents.TransferBufferEvent absorb(int gateIndex) throws InterruptedException;
 
+    /**
+     * Moves all buffers currently available on the gate into the given list, waits if there is
+     * none. Control events received along with the buffers are processed in bulk.
+     * 
+     * @param gateIndex
+     * @param buffers the list the buffers are appended to
+     * @param maxBuffers the max. number of events taken from the gate in one round
+     * @return the number of buffers added, 0 if the gate is exhausted, closed or the wait timed out
+     * @throws InterruptedException
+     */
+    public abstract int absorbBatch(int gateIndex, List<IOEvents.TransferBufferEvent> buffers, int maxBuffers) throws InterruptedException;
+
+    /**
+     * Moves the buffers currently available on the gate into the given list without waiting, used
+     * by tasks that are executed cooperatively. Control events are processed like in
+     * {@link #absorbBatch(int, List, int)}.
+     * 
+     * @param gateIndex
+     * @param buffers the list the buffers are appended to
+     * @param maxEvents the max. number of events taken from the gate
+     * @return the number of events taken from the gate, buffers and control events
+     */
+    public abstract int pollBatch(int gateIndex, List<IOEvents.TransferBufferEvent> buffers, int maxEvents);
+
+    /**
+     * Waits on all input gates at once and returns the first available buffer. The gate of the
+     * buffer can be resolved via {@link #getInputGateIndexFromTaskID(UUID)}.
+     * 
+     * @return the next buffer of any gate, or null if all gates are exhausted or the wait timed out
+     * @throws InterruptedException
+     */
+    public abstract IOEvents.TransferBufferEvent absorbAny() throws InterruptedException;
+
+    /**
+     * Sets the priority of a gate for {@link #absorbAny()}. Gates with a higher priority are served
+     * first, without priorities all gates are served round robin.
+     * 
+     * @param gateIndex
+     * @param priority
+     */
+    public abstract void setGatePriority(int gateIndex, int priority);
+
     public abstract void shutdownConsumer();
 
     public abstract void openGate(int gateIndex);
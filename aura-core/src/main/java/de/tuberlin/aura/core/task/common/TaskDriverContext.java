@@ -50,7 +50,7 @@ public final class TaskDriverContext {
 
     // -------------- Execution Unit Assignment --------------
 
-    private int assignedExecutionUnitIndex = -1;
+    private volatile int assignedExecutionUnitIndex = -1;
 
     public void setAssignedExecutionUnitIndex(int assignedExecutionUnitIndex) {
         this.assignedExecutionUnitIndex = assignedExecutionUnitIndex;
@@ -1,5 +1,6 @@
 package de.tuberlin.aura.core.task.common;
 
+import de.tuberlin.aura.core.iosystem.queues.BufferQueue;
 import de.tuberlin.aura.core.memory.IAllocator;
 
 public interface TaskDriverLifecycle {
@@ -9,4 +10,30 @@ public interface TaskDriverLifecycle {
     public abstract void executeDriver();
 
     public abstract void teardownDriver(boolean awaitExhaustion);
+
+    // ------------- Cooperative Execution ---------------
+
+    /**
+     * @return True if the task can be executed in steps instead of {@link #executeDriver()}, valid
+     *         after the startup.
+     */
+    public abstract boolean isCooperative();
+
+    /**
+     * Creates and opens the invokeables of a cooperative task and registers the observer of its
+     * input.
+     * 
+     * @param inputObserver
+     * @return False if the task failed.
+     */
+    public abstract boolean openDriver(final BufferQueue.QueueObserver inputObserver);
+
+    /**
+     * Processes the available input of a cooperative task without waiting and finishes the task
+     * once its input is exhausted.
+     * 
+     * @param maxEvents
+     * @return The number of events taken from the input or -1 if the task is done.
+     */
+    public abstract int executeDriverStep(final int maxEvents);
 }
@@ -1,6 +1,8 @@
 package de.tuberlin.aura.core.task.common;
 
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -8,8 +10,8 @@ import org.slf4j.LoggerFactory;
 
 import de.tuberlin.aura.core.common.eventsystem.Event;
 import de.tuberlin.aura.core.common.eventsystem.EventDispatcher;
+import de.tuberlin.aura.core.common.utils.ThreadAffinity;
 import de.tuberlin.aura.core.descriptors.Descriptors;
-import de.tuberlin.aura.core.memory.BufferAllocatorGroup;
 import de.tuberlin.aura.core.memory.IBufferMemoryManager;
 
 public final class TaskExecutionManager extends EventDispatcher {
@@ -30,6 +32,30 @@ public final class TaskExecutionManager extends EventDispatcher {
         }
     }
 
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    /**
+     * Runs tasks that support it on shared worker threads instead of holding an execution unit
+     * while running, set with -Daura.taskmanager.cooperative=true.
+     */
+    private static final boolean COOPERATIVE_EXECUTION = Boolean.getBoolean("aura.taskmanager.cooperative");
+
+    /**
+     * Pins the threads of the execution units to cores, filling one NUMA node after the other, set
+     * with -Daura.taskmanager.affinity=true.
+     */
+    private static final boolean THREAD_AFFINITY = Boolean.getBoolean("aura.taskmanager.affinity");
+
+    /**
+     * The number of tasks the task manager runs at once, set with -Daura.taskmanager.slots. One per
+     * execution unit by default. Cooperative tasks hold no execution unit, so with cooperative
+     * execution the slots may exceed the cores. Pipelined tasks that do not run cooperatively still
+     * need an execution unit each.
+     */
+    private static final String SLOTS_PROPERTY = "aura.taskmanager.slots";
+
     // ---------------------------------------------------
     // Fields.
     // ---------------------------------------------------
@@ -40,10 +66,14 @@ public final class TaskExecutionManager extends EventDispatcher {
 
     private final int numberOfCores;
 
+    private final int numberOfSlots;
+
     private final TaskExecutionUnit[] executionUnit;
 
     private final IBufferMemoryManager bufferMemoryManager;
 
+    private final CooperativeTaskExecutor cooperativeExecutor;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -68,8 +98,18 @@ public final class TaskExecutionManager extends EventDispatcher {
 
         this.numberOfCores = machineDescriptor.hardware.cpuCores;
 
+        this.numberOfSlots = Integer.getInteger(SLOTS_PROPERTY, numberOfCores);
+
+        // check postcondition.
+        if (numberOfSlots < 1)
+            throw new IllegalStateException(SLOTS_PROPERTY + " < 1");
+
         this.executionUnit = new TaskExecutionUnit[numberOfCores];
 
+        // one worker per core, the number of workers is set with -Daura.taskmanager.cooperativeworkers.
+        this.cooperativeExecutor =
+                COOPERATIVE_EXECUTION ? new CooperativeTaskExecutor(Integer.getInteger("aura.taskmanager.cooperativeworkers", numberOfCores)) : null;
+
         initializeExecutionUnits();
     }
 
@@ -108,6 +148,41 @@ public final class TaskExecutionManager extends EventDispatcher {
                  machineDescriptor.uid);
     }
 
+    /**
+     * @return The number of execution units, each runs one task at a time.
+     */
+    public int getNumberOfExecutionUnits() {
+        return numberOfCores;
+    }
+
+    /**
+     * @return The number of tasks the task manager runs at once.
+     */
+    public int getNumberOfSlots() {
+        return numberOfSlots;
+    }
+
+    /**
+     * @return The number of execution units running or holding a task plus the number of running
+     *         cooperative tasks, at most the number of slots.
+     */
+    public int getNumberOfBusySlots() {
+        int busySlots = 0;
+        for (int i = 0; i < numberOfCores; ++i) {
+            if (executionUnit[i].getNumberOfEnqueuedTasks() > 0)
+                ++busySlots;
+            busySlots += executionUnit[i].getNumberOfCooperativeTasks();
+        }
+        return Math.min(busySlots, numberOfSlots);
+    }
+
+    /**
+     * @return The executor of the cooperative tasks or null if cooperative execution is disabled.
+     */
+    public CooperativeTaskExecutor getCooperativeExecutor() {
+        return cooperativeExecutor;
+    }
+
     /**
      * @param taskID
      * @return
@@ -119,8 +194,7 @@ public final class TaskExecutionManager extends EventDispatcher {
 
         for (int i = 0; i < numberOfCores; ++i) {
             final TaskExecutionUnit eu = executionUnit[i];
-            final TaskDriverContext taskCtx = eu.getCurrentTaskDriverContext();
-            if (taskCtx != null && taskID.equals(taskCtx.taskDescriptor.taskID)) {
+            if (eu.getTaskDriverContext(taskID) != null) {
                 return eu;
             }
         }
@@ -129,6 +203,45 @@ public final class TaskExecutionManager extends EventDispatcher {
         return null;
     }
 
+    /**
+     * Moves a waiting task of the busy execution unit with the most waiting tasks to the idle
+     * execution unit. The task is started with the allocators of the thief.
+     * 
+     * @param thief The idle execution unit.
+     * @return The stolen task or null.
+     */
+    public TaskDriverContext stealTask(final TaskExecutionUnit thief) {
+        // sanity check.
+        if (thief == null)
+            throw new IllegalArgumentException("thief == null");
+
+        TaskExecutionUnit victim = null;
+        int maxQueuedTasks = 0;
+        for (int i = 0; i < numberOfCores; ++i) {
+            final int queuedTasks = executionUnit[i].getNumberOfQueuedTasks();
+            if (executionUnit[i] != thief && queuedTasks > maxQueuedTasks) {
+                victim = executionUnit[i];
+                maxQueuedTasks = queuedTasks;
+            }
+        }
+
+        if (victim == null)
+            return null;
+
+        final TaskDriverContext driverContext = victim.stealTask();
+        if (driverContext != null) {
+            driverContext.setAssignedExecutionUnitIndex(thief.getExecutionUnitID());
+
+            LOG.info("EXECUTION UNIT ({}) STOLE TASK {}-{} [{}] FROM EXECUTION UNIT ({})",
+                     thief.getExecutionUnitID(),
+                     driverContext.taskDescriptor.name,
+                     driverContext.taskDescriptor.taskIndex,
+                     driverContext.taskDescriptor.taskID,
+                     victim.getExecutionUnitID());
+        }
+        return driverContext;
+    }
+
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
@@ -137,11 +250,17 @@ public final class TaskExecutionManager extends EventDispatcher {
      *
      */
     private void initializeExecutionUnits() {
+        final List<Integer> cores = THREAD_AFFINITY ? ThreadAffinity.getCoreLayout() : Collections.<Integer>emptyList();
+        if (THREAD_AFFINITY && cores.isEmpty())
+            LOG.warn("The core layout is unknown, execution units are not pinned");
+
         for (int i = 0; i < numberOfCores; ++i) {
-            final BufferAllocatorGroup inputBuffer = bufferMemoryManager.getBufferAllocatorGroup();
-            final BufferAllocatorGroup outputBuffer = bufferMemoryManager.getBufferAllocatorGroup();
+            final int core = cores.isEmpty() ? -1 : cores.get(i % cores.size());
+            this.executionUnit[i] = new TaskExecutionUnit(this, i, bufferMemoryManager, core);
+        }
 
-            this.executionUnit[i] = new TaskExecutionUnit(this, i, inputBuffer, outputBuffer);
+        // idle execution units look at all others to steal tasks.
+        for (int i = 0; i < numberOfCores; ++i) {
             this.executionUnit[i].start();
         }
     }
@@ -1,15 +1,21 @@
 package de.tuberlin.aura.core.task.common;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
+import de.tuberlin.aura.core.common.utils.ThreadAffinity;
 import de.tuberlin.aura.core.memory.IAllocator;
+import de.tuberlin.aura.core.memory.IBufferMemoryManager;
 
 public final class TaskExecutionUnit {
 
@@ -19,51 +25,82 @@ public final class TaskExecutionUnit {
 
     private static final Logger LOG = LoggerFactory.getLogger(TaskExecutionUnit.class);
 
+    /**
+     * The time in ms an idle execution unit waits for own tasks before it tries to steal again, set
+     * with -Daura.taskmanager.stealinterval.
+     */
+    private static final long STEAL_INTERVAL = Long.getLong("aura.taskmanager.stealinterval", 10);
+
     private final int executionUnitID;
 
     private final Thread executorThread;
 
-    private final BlockingQueue<TaskDriverContext> taskQueue;
+    /**
+     * The owner takes tasks from the head, other execution units steal from the tail.
+     */
+    private final BlockingDeque<TaskDriverContext> taskQueue;
 
     private final AtomicBoolean isExecutionUnitRunning;
 
     private final TaskExecutionManager executionManager;
 
-    private TaskDriverContext currentTaskCtx;
+    private volatile TaskDriverContext currentTaskCtx;
+
+    /**
+     * The cooperative tasks this execution unit handed over, they keep using its allocators.
+     */
+    private final ConcurrentMap<UUID, TaskDriverContext> cooperativeTasks;
+
+    private final IBufferMemoryManager bufferMemoryManager;
 
-    private final IAllocator inputAllocator;
+    /**
+     * The core the thread is pinned to or -1.
+     */
+    private final int core;
 
-    private final IAllocator outputAllocator;
+    private final CountDownLatch initializedLatch;
+
+    private volatile IAllocator inputAllocator;
+
+    private volatile IAllocator outputAllocator;
 
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
 
+    /**
+     * @param executionManager
+     * @param executionUnitID
+     * @param bufferMemoryManager
+     * @param core The core the thread is pinned to or -1.
+     */
     public TaskExecutionUnit(final TaskExecutionManager executionManager,
                              final int executionUnitID,
-                             final IAllocator inputAllocator,
-                             final IAllocator outputAllocator) {
+                             final IBufferMemoryManager bufferMemoryManager,
+                             final int core) {
         // sanity check.
         if (executionManager == null)
             throw new IllegalArgumentException("executionManager == null");
         if (executionUnitID < 0)
             throw new IllegalArgumentException("executionUnitID < 0");
-        if (inputAllocator == null)
-            throw new IllegalArgumentException("inputAllocator == null");
-        if (outputAllocator == null)
-            throw new IllegalArgumentException("outputAllocator == null");
+        if (bufferMemoryManager == null)
+            throw new IllegalArgumentException("bufferMemoryManager == null");
 
         this.executionManager = executionManager;
 
         this.executionUnitID = executionUnitID;
 
-        this.inputAllocator = inputAllocator;
+        this.bufferMemoryManager = bufferMemoryManager;
+
+        this.core = core;
 
-        this.outputAllocator = outputAllocator;
+        this.initializedLatch = new CountDownLatch(1);
 
         this.executorThread = new Thread(new ExecutionUnitRunner());
 
-        this.taskQueue = new LinkedBlockingQueue<>();
+        this.taskQueue = new LinkedBlockingDeque<>();
+
+        this.cooperativeTasks = new ConcurrentHashMap<>();
 
         this.isExecutionUnitRunning = new AtomicBoolean(false);
     }
@@ -73,7 +110,7 @@ public final class TaskExecutionUnit {
     // ---------------------------------------------------
 
     /**
-     *
+     * Starts the thread and waits until it allocated its buffers.
      */
     public void start() {
         // check preconditions.
@@ -82,6 +119,12 @@ public final class TaskExecutionUnit {
         }
         isExecutionUnitRunning.set(true);
         executorThread.start();
+
+        try {
+            initializedLatch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -113,6 +156,29 @@ public final class TaskExecutionUnit {
         return taskQueue.size() + (currentTaskCtx != null ? 1 : 0);
     }
 
+    /**
+     * @return The number of tasks waiting for execution.
+     */
+    public int getNumberOfQueuedTasks() {
+        return taskQueue.size();
+    }
+
+    /**
+     * @return The number of running cooperative tasks this execution unit handed over.
+     */
+    public int getNumberOfCooperativeTasks() {
+        return cooperativeTasks.size();
+    }
+
+    /**
+     * Removes the most recently enqueued task, if this execution unit is busy with another task.
+     * 
+     * @return The waiting task or null.
+     */
+    public TaskDriverContext stealTask() {
+        return currentTaskCtx != null ? taskQueue.pollLast() : null;
+    }
+
     /**
      * @return
      */
@@ -120,6 +186,17 @@ public final class TaskExecutionUnit {
         return currentTaskCtx;
     }
 
+    /**
+     * @param taskID
+     * @return The running task or a cooperative task of this execution unit with the id, or null.
+     */
+    public TaskDriverContext getTaskDriverContext(final UUID taskID) {
+        final TaskDriverContext taskCtx = currentTaskCtx;
+        if (taskCtx != null && taskID.equals(taskCtx.taskDescriptor.taskID))
+            return taskCtx;
+        return cooperativeTasks.get(taskID);
+    }
+
     /**
      * @return
      */
@@ -143,6 +220,7 @@ public final class TaskExecutionUnit {
      */
     private void unregisterTask(final TaskDriverContext taskDriverCtx) {
         LOG.trace("unregister task {} {}", taskDriverCtx.taskDescriptor.name, taskDriverCtx.taskDescriptor.taskIndex);
+        cooperativeTasks.remove(taskDriverCtx.taskDescriptor.taskID);
         executionManager.dispatchEvent(new TaskExecutionManager.TaskExecutionEvent(TaskExecutionManager.TaskExecutionEvent.EXECUTION_MANAGER_EVENT_UNREGISTER_TASK,
                                                                                    taskDriverCtx));
     }
@@ -163,10 +241,20 @@ public final class TaskExecutionUnit {
         @Override
         public void run() {
 
+            // the allocators are created after pinning, so their memory is local to the core.
+            if (core >= 0 && ThreadAffinity.pinCurrentThread(core))
+                LOG.info("Execution Unit {} is pinned to core {}", executionUnitID, core);
+
+            inputAllocator = bufferMemoryManager.getBufferAllocatorGroup();
+            outputAllocator = bufferMemoryManager.getBufferAllocatorGroup();
+            initializedLatch.countDown();
+
             while (isExecutionUnitRunning.get()) {
 
                 try {
-                    currentTaskCtx = taskQueue.take();
+                    currentTaskCtx = takeTask();
+                    if (currentTaskCtx == null)
+                        break;
                     LOG.debug("Execution Unit {} prepares execution of task {}",
                               TaskExecutionUnit.this.executionUnitID,
                               currentTaskCtx.taskDescriptor.taskID);
@@ -176,8 +264,16 @@ public final class TaskExecutionUnit {
 
                 final CountDownLatch executeLatch = new CountDownLatch(1);
 
+                // a task may fail while it connects, then it never runs.
+                final AtomicBoolean isTaskRunning = new AtomicBoolean(false);
+
                 final TaskDriverContext taskDriverCtx = currentTaskCtx;
 
+                final CooperativeTaskExecutor cooperativeExecutor = executionManager.getCooperativeExecutor();
+
+                final CooperativeTaskExecutor.CooperativeTask cooperativeTask =
+                        cooperativeExecutor != null ? cooperativeExecutor.createTask(taskDriverCtx) : null;
+
                 executorThread.setName("Execution-Unit-" + TaskExecutionUnit.this.executionUnitID + "->" + taskDriverCtx.taskDescriptor.name);
 
                 currentTaskCtx.taskFSM.addStateListener(TaskStates.TaskState.TASK_STATE_RUNNING,
@@ -187,7 +283,10 @@ public final class TaskExecutionUnit {
                                                             public void stateAction(TaskStates.TaskState previousState,
                                                                                     TaskStates.TaskTransition transition,
                                                                                     TaskStates.TaskState state) {
+                                                                isTaskRunning.set(true);
                                                                 executeLatch.countDown();
+                                                                if (cooperativeTask != null)
+                                                                    cooperativeTask.release();
                                                             }
                                                         });
 
@@ -224,6 +323,7 @@ public final class TaskExecutionUnit {
                                                                                     TaskStates.TaskState state) {
                                                                 taskDriverCtx.taskDriver.teardownDriver(false);
                                                                 unregisterTask(taskDriverCtx);
+                                                                executeLatch.countDown();
                                                             }
                                                         });
 
@@ -236,17 +336,38 @@ public final class TaskExecutionUnit {
                                                                                     TaskStates.TaskState state) {
                                                                 taskDriverCtx.taskDriver.teardownDriver(false);
                                                                 unregisterTask(taskDriverCtx);
+                                                                executeLatch.countDown();
                                                             }
                                                         });
 
                 currentTaskCtx.taskDriver.startupDriver(inputAllocator, outputAllocator);
 
+                // a cooperative task does not hold the execution unit, it starts on a worker once it runs.
+                if (cooperativeTask != null && currentTaskCtx.taskDriver.isCooperative()) {
+                    LOG.debug("Execution Unit {} hands over task {} to the cooperative workers",
+                              TaskExecutionUnit.this.executionUnitID,
+                              currentTaskCtx.taskDescriptor.taskID);
+
+                    cooperativeTasks.put(currentTaskCtx.taskDescriptor.taskID, currentTaskCtx);
+                    cooperativeTask.release();
+                    currentTaskCtx = null;
+                    continue;
+                }
+
                 try {
                     executeLatch.await();
                 } catch (InterruptedException e) {
                     LOG.error(e.getLocalizedMessage(), e);
                 }
 
+                if (!isTaskRunning.get()) {
+                    LOG.debug("Execution Unit {} releases task {}, it ended before it ran",
+                              TaskExecutionUnit.this.executionUnitID,
+                              currentTaskCtx.taskDescriptor.taskID);
+                    currentTaskCtx = null;
+                    continue;
+                }
+
                 currentTaskCtx.taskDriver.executeDriver();
                 LOG.debug("Execution Unit {} completed the execution of task {}",
                           TaskExecutionUnit.this.executionUnitID,
@@ -259,5 +380,23 @@ public final class TaskExecutionUnit {
 
             LOG.debug("Terminate thread of execution unit {}", TaskExecutionUnit.this.executionUnitID);
         }
+
+        /**
+         * Takes the next own task or steals one from a busy execution unit while idle.
+         * 
+         * @return The next task or null if the execution unit was stopped.
+         */
+        private TaskDriverContext takeTask() throws InterruptedException {
+            while (isExecutionUnitRunning.get()) {
+                TaskDriverContext taskDriverCtx = taskQueue.pollFirst();
+                if (taskDriverCtx == null)
+                    taskDriverCtx = executionManager.stealTask(TaskExecutionUnit.this);
+                if (taskDriverCtx == null)
+                    taskDriverCtx = taskQueue.pollFirst(STEAL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (taskDriverCtx != null)
+                    return taskDriverCtx;
+            }
+            return null;
+        }
     }
 }
@@ -3,6 +3,7 @@ package de.tuberlin.aura.core.task.common;
 import de.tuberlin.aura.core.descriptors.Descriptors;
 import de.tuberlin.aura.core.iosystem.IOManager;
 import de.tuberlin.aura.core.iosystem.RPCManager;
+import de.tuberlin.aura.core.task.usercode.UserCodeCache;
 
 public final class TaskManagerContext {
 
@@ -12,6 +13,9 @@ public final class TaskManagerContext {
 
     public final TaskExecutionManager executionManager;
 
+    public final TaskStateAggregator stateAggregator;
+
+    public final UserCodeCache userCodeCache;
 
     public final Descriptors.MachineDescriptor workloadManagerMachine;
 
@@ -21,6 +25,8 @@ public final class TaskManagerContext {
     public TaskManagerContext(final IOManager ioManager,
                               final RPCManager rpcManager,
                               final TaskExecutionManager executionManager,
+                              final TaskStateAggregator stateAggregator,
+                              final UserCodeCache userCodeCache,
                               final Descriptors.MachineDescriptor workloadManagerMachine,
                               final Descriptors.MachineDescriptor ownMachine) {
 
@@ -30,6 +36,10 @@ public final class TaskManagerContext {
 
         this.executionManager = executionManager;
 
+        this.stateAggregator = stateAggregator;
+
+        this.userCodeCache = userCodeCache;
+
         this.workloadManagerMachine = workloadManagerMachine;
 
         this.ownMachine = ownMachine;
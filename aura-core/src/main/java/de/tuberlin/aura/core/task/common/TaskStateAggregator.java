@@ -0,0 +1,175 @@
+package de.tuberlin.aura.core.task.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.iosystem.IOEvents;
+import de.tuberlin.aura.core.iosystem.IOManager;
+import de.tuberlin.aura.core.task.common.TaskStates.TaskState;
+
+/**
+ * Collects the state changes of the tasks of a task manager and reports them per topology as one
+ * {@link TaskStateUpdates} message. The updates of a topology are sent when the report window
+ * after its first pending update elapsed, a failure is sent immediately together with all
+ * pending updates of its topology.
+ */
+public final class TaskStateAggregator {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    /**
+     * The time in ms updates are collected before they are sent, set with
+     * -Daura.taskmanager.statereportwindow.
+     */
+    private static final long REPORT_WINDOW = Long.getLong("aura.taskmanager.statereportwindow", 5);
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final IOManager ioManager;
+
+    private final MachineDescriptor workloadManagerMachine;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Pending task ids and states per topology, guarded by this.
+     */
+    private final Map<UUID, List<UUID>> pendingTaskIDs;
+
+    private final Map<UUID, List<TaskState>> pendingStates;
+
+    /**
+     * Set by {@link #shutdown()}, afterwards updates are sent immediately. Guarded by this.
+     */
+    private boolean isShutdown = false;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    /**
+     * @param ioManager
+     * @param workloadManagerMachine
+     */
+    public TaskStateAggregator(final IOManager ioManager, final MachineDescriptor workloadManagerMachine) {
+        // sanity check.
+        if (ioManager == null)
+            throw new IllegalArgumentException("ioManager == null");
+        if (workloadManagerMachine == null)
+            throw new IllegalArgumentException("workloadManagerMachine == null");
+
+        this.ioManager = ioManager;
+
+        this.workloadManagerMachine = workloadManagerMachine;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("TaskStateAggregator")
+                                                                                              .setDaemon(true)
+                                                                                              .build());
+
+        this.pendingTaskIDs = new HashMap<>();
+
+        this.pendingStates = new HashMap<>();
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param topologyID
+     * @param taskID
+     * @param state
+     */
+    public void reportState(final UUID topologyID, final UUID taskID, final TaskState state) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+        if (taskID == null)
+            throw new IllegalArgumentException("taskID == null");
+        if (state == null)
+            throw new IllegalArgumentException("state == null");
+
+        synchronized (this) {
+            List<UUID> taskIDs = pendingTaskIDs.get(topologyID);
+            if (taskIDs == null) {
+                taskIDs = new ArrayList<>();
+                pendingTaskIDs.put(topologyID, taskIDs);
+                pendingStates.put(topologyID, new ArrayList<TaskState>());
+
+                if (state != TaskState.TASK_STATE_FAILURE && !isShutdown) {
+                    scheduleFlush(topologyID);
+                }
+            }
+            taskIDs.add(taskID);
+            pendingStates.get(topologyID).add(state);
+
+            if (state == TaskState.TASK_STATE_FAILURE || isShutdown) {
+                flush(topologyID);
+            }
+        }
+    }
+
+    /**
+     * Sends the pending updates of all topologies and stops the scheduled reports. Updates reported
+     * afterwards are sent immediately.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            isShutdown = true;
+            for (final UUID topologyID : new ArrayList<>(pendingTaskIDs.keySet())) {
+                flush(topologyID);
+            }
+        }
+        scheduler.shutdownNow();
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private void scheduleFlush(final UUID topologyID) {
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (TaskStateAggregator.this) {
+                    flush(topologyID);
+                }
+            }
+        }, REPORT_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Must be called while holding the lock, sending under the lock keeps the reports of a topology
+     * in order. Sending does not block.
+     */
+    private void flush(final UUID topologyID) {
+        final List<UUID> taskIDs = pendingTaskIDs.remove(topologyID);
+        final List<TaskState> states = pendingStates.remove(topologyID);
+        if (taskIDs == null) {
+            // already sent with a failure.
+            return;
+        }
+
+        final IOEvents.TaskControlIOEvent stateUpdates =
+                new IOEvents.TaskControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATES);
+
+        stateUpdates.setPayload(new TaskStateUpdates(taskIDs, states));
+        stateUpdates.setTopologyID(topologyID);
+
+        ioManager.sendEvent(workloadManagerMachine, stateUpdates);
+    }
+}
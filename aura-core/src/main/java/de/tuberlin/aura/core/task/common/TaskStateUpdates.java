@@ -0,0 +1,92 @@
+package de.tuberlin.aura.core.task.common;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.UUID;
+
+import de.tuberlin.aura.core.task.common.TaskStates.TaskState;
+
+/**
+ * The state changes of several tasks of one topology in the order they occurred. The task ids and
+ * states are stored as primitive arrays to keep the message small.
+ */
+public final class TaskStateUpdates implements Serializable {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private static final long serialVersionUID = -1L;
+
+    private static final TaskState[] STATES = TaskState.values();
+
+    /**
+     * Most and least significant bits of the task ids, two entries per update.
+     */
+    private final long[] taskIDs;
+
+    /**
+     * Ordinals of the states.
+     */
+    private final byte[] states;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    /**
+     * @param taskIDs
+     * @param states
+     */
+    public TaskStateUpdates(final List<UUID> taskIDs, final List<TaskState> states) {
+        // sanity check.
+        if (taskIDs == null)
+            throw new IllegalArgumentException("taskIDs == null");
+        if (states == null)
+            throw new IllegalArgumentException("states == null");
+        if (taskIDs.size() != states.size())
+            throw new IllegalArgumentException("taskIDs.size() != states.size()");
+
+        this.taskIDs = new long[taskIDs.size() * 2];
+
+        this.states = new byte[states.size()];
+
+        for (int i = 0; i < this.states.length; ++i) {
+            this.taskIDs[2 * i] = taskIDs.get(i).getMostSignificantBits();
+            this.taskIDs[2 * i + 1] = taskIDs.get(i).getLeastSignificantBits();
+            this.states[i] = (byte) states.get(i).ordinal();
+        }
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @return The number of updates.
+     */
+    public int size() {
+        return states.length;
+    }
+
+    /**
+     * @param index
+     * @return The id of the task of the update.
+     */
+    public UUID getTaskID(final int index) {
+        return new UUID(taskIDs[2 * index], taskIDs[2 * index + 1]);
+    }
+
+    /**
+     * @param index
+     * @return The new state of the update.
+     */
+    public TaskState getState(final int index) {
+        return STATES[states[index]];
+    }
+
+    @Override
+    public String toString() {
+        return "TaskStateUpdates = { size = " + size() + " }";
+    }
+}
@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 
+import com.google.common.hash.Hashing;
+
 public final class UserCode implements Serializable {
 
     // ---------------------------------------------------
@@ -18,8 +20,16 @@ public final class UserCode implements Serializable {
 
     public final List<String> classDependencies;
 
+    /**
+     * The compressed byte code, null if this is only a reference to the code.
+     */
     public final byte[] classByteCode;
 
+    /**
+     * SHA-1 of the byte code, identifies the code independent of the topology.
+     */
+    public final String codeHash;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -48,5 +58,40 @@ public final class UserCode implements Serializable {
         this.classDependencies = Collections.unmodifiableList(classDependencies);
 
         this.classByteCode = byteCode;
+
+        this.codeHash = Hashing.sha1().hashBytes(byteCode).toString();
+    }
+
+    /**
+     * @param userCode
+     */
+    private UserCode(final UserCode userCode) {
+        this.className = userCode.className;
+
+        this.simpleClassName = userCode.simpleClassName;
+
+        this.classDependencies = userCode.classDependencies;
+
+        this.classByteCode = null;
+
+        this.codeHash = userCode.codeHash;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @return A copy without the byte code, the receiver resolves it by the hash.
+     */
+    public UserCode toReference() {
+        return hasByteCode() ? new UserCode(this) : this;
+    }
+
+    /**
+     * @return
+     */
+    public boolean hasByteCode() {
+        return classByteCode != null;
     }
 }
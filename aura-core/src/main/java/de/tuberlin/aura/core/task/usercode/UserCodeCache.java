@@ -0,0 +1,182 @@
+package de.tuberlin.aura.core.task.usercode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * The user code of a task manager, addressed by the hash of its byte code. The byte code is kept
+ * across topologies, so it has to be shipped only once per task manager. Tasks carry references to
+ * the code, which are resolved when the tasks are installed.
+ *
+ * All tasks of a topology share one class loader, so each user code is defined once per topology
+ * instead of once per task.
+ */
+public final class UserCodeCache {
+
+    // ---------------------------------------------------
+    // Constants.
+    // ---------------------------------------------------
+
+    /**
+     * The max. size in bytes of the compressed byte code kept for later topologies, set with
+     * -Daura.taskmanager.usercodecachesize. The code of deployed topologies is always kept.
+     */
+    private static final long CACHE_SIZE = Long.getLong("aura.taskmanager.usercodecachesize", 64 * 1024 * 1024);
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final ClassLoader parentClassLoader;
+
+    private final ConcurrentMap<UUID, UserCodeImplanter> implanters;
+
+    /**
+     * The code referenced by the deployed tasks per topology, by hash.
+     */
+    private final ConcurrentMap<UUID, ConcurrentMap<String, UserCode>> topologyUserCodes;
+
+    private final Cache<String, UserCode> storedUserCodes;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    /**
+     * @param parentClassLoader
+     */
+    public UserCodeCache(final ClassLoader parentClassLoader) {
+        // sanity check.
+        if (parentClassLoader == null)
+            throw new IllegalArgumentException("parentClassLoader == null");
+
+        this.parentClassLoader = parentClassLoader;
+
+        this.implanters = new ConcurrentHashMap<>();
+
+        this.topologyUserCodes = new ConcurrentHashMap<>();
+
+        this.storedUserCodes = CacheBuilder.newBuilder().maximumWeight(CACHE_SIZE).weigher(new Weigher<String, UserCode>() {
+
+            @Override
+            public int weigh(final String codeHash, final UserCode userCode) {
+                return userCode.classByteCode.length;
+            }
+        }).build();
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param userCodes The shipped code, references are ignored.
+     */
+    public void storeUserCodes(final Collection<UserCode> userCodes) {
+        // sanity check.
+        if (userCodes == null)
+            throw new IllegalArgumentException("userCodes == null");
+
+        for (final UserCode userCode : userCodes) {
+            if (userCode.hasByteCode())
+                storedUserCodes.put(userCode.codeHash, userCode);
+        }
+    }
+
+    /**
+     * Keeps the byte code of the referenced code until the topology is released.
+     *
+     * @param topologyID
+     * @param userCodes
+     * @return The hashes of the code that is not available and must be fetched.
+     */
+    public List<String> registerUserCodes(final UUID topologyID, final Collection<UserCode> userCodes) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+        if (userCodes == null)
+            throw new IllegalArgumentException("userCodes == null");
+
+        final ConcurrentMap<String, UserCode> registeredCodes = getTopologyUserCodes(topologyID);
+        final List<String> missingCodeHashes = new ArrayList<>();
+        for (final UserCode userCode : userCodes) {
+            if (registeredCodes.containsKey(userCode.codeHash))
+                continue;
+
+            final UserCode storedCode = userCode.hasByteCode() ? userCode : storedUserCodes.getIfPresent(userCode.codeHash);
+            if (storedCode != null) {
+                registeredCodes.putIfAbsent(userCode.codeHash, storedCode);
+            } else if (!missingCodeHashes.contains(userCode.codeHash)) {
+                missingCodeHashes.add(userCode.codeHash);
+            }
+        }
+        return missingCodeHashes;
+    }
+
+    /**
+     * @param topologyID
+     * @param userCode The code or a reference to registered code.
+     * @return
+     */
+    public Class<?> implantUserCodeClass(final UUID topologyID, final UserCode userCode) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+        if (userCode == null)
+            throw new IllegalArgumentException("userCode == null");
+
+        final UserCode resolvedCode = userCode.hasByteCode() ? userCode : getTopologyUserCodes(topologyID).get(userCode.codeHash);
+        if (resolvedCode == null)
+            throw new IllegalStateException("user code " + userCode.className + " [" + userCode.codeHash + "] is not registered");
+
+        UserCodeImplanter implanter = implanters.get(topologyID);
+        if (implanter == null) {
+            final UserCodeImplanter newImplanter = new UserCodeImplanter(parentClassLoader);
+            implanter = implanters.putIfAbsent(topologyID, newImplanter);
+            if (implanter == null)
+                implanter = newImplanter;
+        }
+        return implanter.implantUserCodeClass(resolvedCode);
+    }
+
+    /**
+     * Drops the class loader of the topology, called when the workload manager reports the topology
+     * as done. Its byte code stays in the cache.
+     *
+     * @param topologyID
+     */
+    public void releaseTopology(final UUID topologyID) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+
+        implanters.remove(topologyID);
+
+        final ConcurrentMap<String, UserCode> registeredCodes = topologyUserCodes.remove(topologyID);
+        if (registeredCodes != null)
+            storeUserCodes(registeredCodes.values());
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private ConcurrentMap<String, UserCode> getTopologyUserCodes(final UUID topologyID) {
+        ConcurrentMap<String, UserCode> registeredCodes = topologyUserCodes.get(topologyID);
+        if (registeredCodes == null) {
+            final ConcurrentMap<String, UserCode> newCodes = new ConcurrentHashMap<>();
+            registeredCodes = topologyUserCodes.putIfAbsent(topologyID, newCodes);
+            if (registeredCodes == null)
+                registeredCodes = newCodes;
+        }
+        return registeredCodes;
+    }
+}
@@ -55,6 +55,8 @@ public final class UserCodeImplanter {
             throw new IllegalArgumentException("cl == null");
 
         this.classLoader = new DynamicClassLoader(cl);
+
+        this.implantedClazzMap = new HashMap<>();
     }
 
     // ---------------------------------------------------
@@ -63,15 +65,24 @@ public final class UserCodeImplanter {
 
     private final DynamicClassLoader classLoader;
 
+    /**
+     * The implanted classes by the hash of their user code.
+     */
+    private final Map<String, Class<?>> implantedClazzMap;
+
     // ---------------------------------------------------
     // Public.
     // ---------------------------------------------------
 
-    public Class<?> implantUserCodeClass(final UserCode userCode) {
+    public synchronized Class<?> implantUserCodeClass(final UserCode userCode) {
         // sanity check.
         if (userCode == null)
             throw new IllegalArgumentException("userCode == null");
 
+        final Class<?> implantedClazz = implantedClazzMap.get(userCode.codeHash);
+        if (implantedClazz != null)
+            return implantedClazz;
+
         try {
             for (final String dependency : userCode.classDependencies) {
                 Class.forName(dependency, false, classLoader);
@@ -87,6 +98,7 @@ public final class UserCodeImplanter {
             clazz = classLoader.buildClassFromByteArray(userCode.className, Compression.decompress(userCode.classByteCode));
         }
 
+        implantedClazzMap.put(userCode.codeHash, clazz);
         return clazz;
     }
 }
@@ -6,6 +6,8 @@ import java.util.*;
 import de.tuberlin.aura.core.common.utils.Pair;
 import de.tuberlin.aura.core.descriptors.Descriptors.TaskBindingDescriptor;
 import de.tuberlin.aura.core.descriptors.Descriptors.TaskDescriptor;
+import de.tuberlin.aura.core.iosystem.queues.WaitStrategy;
+import de.tuberlin.aura.core.task.common.ChainableInvokeable;
 import de.tuberlin.aura.core.task.common.TaskStates.TaskState;
 import de.tuberlin.aura.core.task.usercode.UserCode;
 import de.tuberlin.aura.core.task.usercode.UserCodeExtractor;
@@ -299,6 +301,7 @@ public class AuraDirectedGraph {
                     final Class<?> userCodeClazz = userCodeClazzMap.get(n.name);
                     final UserCode uc = codeExtractor.extractUserCodeClass(userCodeClazz);
                     userCodeMap.put(n.name, uc);
+                    n.setChainable(ChainableInvokeable.class.isAssignableFrom(userCodeClazz));
                 }
 
                 isBuilded = true;
@@ -462,10 +465,19 @@ public class AuraDirectedGraph {
 
         public final ExecutionType executionType;
 
+        private WaitStrategy.Type inputWaitStrategy;
+
+        private boolean isChainable;
+
+        private final List<String> chainedNodeNames;
+
         private final List<Node> inputs;
 
         private final List<Node> outputs;
 
+        /**
+         * In the order they were added, i.e. by task index.
+         */
         private final Map<UUID, ExecutionNode> executionNodes;
 
         // ---------------------------------------------------
@@ -512,7 +524,9 @@ public class AuraDirectedGraph {
 
             this.outputs = new ArrayList<>();
 
-            this.executionNodes = new HashMap<>();
+            this.executionNodes = new LinkedHashMap<>();
+
+            this.chainedNodeNames = new ArrayList<>();
 
             this.dataPersistenceType = dataPersistenceType;
 
@@ -563,6 +577,49 @@ public class AuraDirectedGraph {
             return Collections.unmodifiableList(new ArrayList<>(executionNodes.values()));
         }
 
+        /**
+         * Sets how the tasks of this node wait for input data. If not set, the default of the
+         * TaskManager for the execution type is used.
+         * 
+         * @param inputWaitStrategy
+         */
+        public void setInputWaitStrategy(final WaitStrategy.Type inputWaitStrategy) {
+            this.inputWaitStrategy = inputWaitStrategy;
+        }
+
+        public WaitStrategy.Type getInputWaitStrategy() {
+            return inputWaitStrategy;
+        }
+
+        /**
+         * @param isChainable True if the user code of this node is a {@link ChainableInvokeable}.
+         */
+        public void setChainable(final boolean isChainable) {
+            this.isChainable = isChainable;
+        }
+
+        public boolean isChainable() {
+            return isChainable;
+        }
+
+        /**
+         * Fuses a node into the tasks of this node, its operator runs behind the operators of this
+         * node and all nodes chained before.
+         * 
+         * @param nodeName
+         */
+        public void addChainedNode(final String nodeName) {
+            // sanity check.
+            if (nodeName == null)
+                throw new IllegalArgumentException("nodeName == null");
+
+            chainedNodeNames.add(nodeName);
+        }
+
+        public List<String> getChainedNodes() {
+            return Collections.unmodifiableList(chainedNodeNames);
+        }
+
         @Override
         public String toString() {
             return (new StringBuilder()).append("Node = {").append(" name = " + name + ", ").append(" }").toString();
@@ -9,6 +9,7 @@ import net.jcip.annotations.NotThreadSafe;
 
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs.Ids;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
@@ -63,6 +64,11 @@ public class ZookeeperHelper {
      */
     public static final String ZOOKEEPER_WORKLOADMANAGER = ZOOKEEPER_ROOT + "/workloadmanager";
 
+    /**
+     * ZooKeeper folder for the advertised resources of the task managers.
+     */
+    public static final String ZOOKEEPER_RESOURCES = ZOOKEEPER_ROOT + "/resources";
+
     // ---------------------------------------------------
     // Public Methods.
     // ---------------------------------------------------
@@ -95,6 +101,17 @@ public class ZookeeperHelper {
                 // created them.
             }
         }
+
+        // Create a folder that is used to advertise the resources of the task-managers.
+        stat = zk.exists(ZOOKEEPER_RESOURCES, false);
+        if (stat == null) {
+            try {
+                zk.create(ZOOKEEPER_RESOURCES, new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            } catch (KeeperException.NodeExistsException e) {
+                // No need to worry about this. You only want those nodes to exists. No matter who
+                // created them.
+            }
+        }
     }
 
     /**
@@ -140,14 +157,47 @@ public class ZookeeperHelper {
         }
     }
 
+    /**
+     * Replaces the data of an existing node.
+     * 
+     * @param zk
+     * @param dir
+     * @param object
+     */
+    public static void updateInZookeeper(final ZooKeeper zk, final String dir, final Object object) {
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(object);
+            oos.flush();
+            zk.setData(dir, baos.toByteArray(), -1);
+            oos.close();
+            baos.close();
+        } catch (KeeperException | IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            LOG.error(e.getLocalizedMessage());
+        }
+    }
+
     /**
      * @param zk
      * @param dir
      * @return
      */
     public static Object readFromZookeeper(final ZooKeeper zk, final String dir) {
+        return readFromZookeeper(zk, dir, null);
+    }
+
+    /**
+     * @param zk
+     * @param dir
+     * @param watcher Is notified about the next change of the node, may be null.
+     * @return
+     */
+    public static Object readFromZookeeper(final ZooKeeper zk, final String dir, final Watcher watcher) {
         try {
-            final byte[] data = zk.getData(dir, false, null);
+            final byte[] data = zk.getData(dir, watcher, null);
             final ByteArrayInputStream bais = new ByteArrayInputStream(data);
             final ObjectInputStream ois = new ObjectInputStream(bais);
             return ois.readObject();
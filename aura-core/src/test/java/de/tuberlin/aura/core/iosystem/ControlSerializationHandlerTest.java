@@ -0,0 +1,361 @@
+package de.tuberlin.aura.core.iosystem;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import de.tuberlin.aura.core.common.eventsystem.EventTypeRegistry;
+import de.tuberlin.aura.core.common.statemachine.StateMachine;
+import de.tuberlin.aura.core.descriptors.Descriptors;
+import de.tuberlin.aura.core.iosystem.IOEvents.ControlEventType;
+import de.tuberlin.aura.core.iosystem.IOEvents.ControlIOEvent;
+import de.tuberlin.aura.core.iosystem.IOEvents.RPCCalleeResponseEvent;
+import de.tuberlin.aura.core.iosystem.IOEvents.RPCCallerRequestEvent;
+import de.tuberlin.aura.core.iosystem.IOEvents.TaskControlIOEvent;
+import de.tuberlin.aura.core.iosystem.RPCManager.MethodSignature;
+import de.tuberlin.aura.core.protocols.WM2TMProtocol;
+import de.tuberlin.aura.core.task.common.TaskStateUpdates;
+import de.tuberlin.aura.core.task.common.TaskStates;
+import de.tuberlin.aura.core.task.usercode.UserCode;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Node;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Sends events through the encoder and decoder of one connection and compares them.
+ */
+public class ControlSerializationHandlerTest extends TestCase {
+
+    private EmbeddedChannel sender;
+
+    private EmbeddedChannel receiver;
+
+    private int lastFrameSize;
+
+    @Override
+    protected void setUp() {
+        sender = new EmbeddedChannel(ControlSerializationHandler.KRYO_CONTROL_OUTBOUND_HANDLER());
+        receiver = new EmbeddedChannel(SerializationHandler.LENGTH_FIELD_DECODER(), ControlSerializationHandler.KRYO_CONTROL_INBOUND_HANDLER());
+    }
+
+    @Override
+    protected void tearDown() {
+        sender.finish();
+        receiver.finish();
+    }
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    public void testEveryControlEventType() throws Exception {
+        final UUID srcMachineID = UUID.randomUUID();
+        final UUID dstMachineID = UUID.randomUUID();
+
+        for (final String type : getControlEventTypes()) {
+            final ControlIOEvent event = new ControlIOEvent(type);
+            event.setSrcMachineID(srcMachineID);
+            event.setDstMachineID(dstMachineID);
+            event.setPayload("payload of " + type);
+
+            final ControlIOEvent received = (ControlIOEvent) roundTrip(event);
+
+            assertEquals(ControlIOEvent.class, received.getClass());
+            assertEquals(type, received.type);
+            assertEquals(EventTypeRegistry.getTypeId(type), received.getTypeId());
+            assertEquals(srcMachineID, received.getSrcMachineID());
+            assertEquals(dstMachineID, received.getDstMachineID());
+            assertEquals("payload of " + type, received.getPayload());
+        }
+    }
+
+    public void testEveryTaskControlEventType() throws Exception {
+        final UUID topologyID = UUID.randomUUID();
+        final UUID taskID = UUID.randomUUID();
+
+        for (final String type : getControlEventTypes()) {
+            final TaskControlIOEvent event = new TaskControlIOEvent(type);
+            event.setSrcMachineID(UUID.randomUUID());
+            event.setTopologyID(topologyID);
+            event.setTaskID(taskID);
+            event.setPayload(3);
+
+            final TaskControlIOEvent received = (TaskControlIOEvent) roundTrip(event);
+
+            assertEquals(TaskControlIOEvent.class, received.getClass());
+            assertEquals(type, received.type);
+            assertEquals(event.getSrcMachineID(), received.getSrcMachineID());
+            assertNull(received.getDstMachineID());
+            assertEquals(topologyID, received.getTopologyID());
+            assertEquals(taskID, received.getTaskID());
+            assertEquals(3, received.getPayload());
+        }
+    }
+
+    public void testTaskStatePayloads() throws Exception {
+        final TaskControlIOEvent transition = newTaskEvent(ControlEventType.CONTROL_EVENT_REMOTE_TASK_TRANSITION);
+        transition.setPayload(new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_RUN));
+
+        final StateMachine.FSMTransitionEvent<?> receivedTransition =
+                (StateMachine.FSMTransitionEvent<?>) ((TaskControlIOEvent) roundTrip(transition)).getPayload();
+        assertEquals(TaskStates.TaskTransition.TASK_TRANSITION_RUN, receivedTransition.getPayload());
+        assertEquals(EventTypeRegistry.getTypeId(receivedTransition.type), receivedTransition.getTypeId());
+
+        final TaskControlIOEvent update = newTaskEvent(ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE);
+        update.setPayload(TaskStates.TaskState.TASK_STATE_FINISHED);
+        assertSame(TaskStates.TaskState.TASK_STATE_FINISHED, ((TaskControlIOEvent) roundTrip(update)).getPayload());
+
+        final List<UUID> taskIDs = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        final List<TaskStates.TaskState> states = Arrays.asList(TaskStates.TaskState.TASK_STATE_RUNNING, TaskStates.TaskState.TASK_STATE_FAILURE);
+        final TaskControlIOEvent updates = newTaskEvent(ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATES);
+        updates.setPayload(new TaskStateUpdates(taskIDs, states));
+
+        final TaskStateUpdates receivedUpdates = (TaskStateUpdates) ((TaskControlIOEvent) roundTrip(updates)).getPayload();
+        assertEquals(2, receivedUpdates.size());
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(taskIDs.get(i), receivedUpdates.getTaskID(i));
+            assertEquals(states.get(i), receivedUpdates.getState(i));
+        }
+    }
+
+    public void testUnknownEventTypeIsWrittenAsString() throws Exception {
+        final ControlIOEvent event = new ControlIOEvent("CONTROL_EVENT_NOT_IN_THE_TABLE");
+
+        final ControlIOEvent received = (ControlIOEvent) roundTrip(event);
+
+        assertEquals("CONTROL_EVENT_NOT_IN_THE_TABLE", received.type);
+        assertNull(received.getSrcMachineID());
+        assertNull(received.getPayload());
+    }
+
+    public void testOtherControlEventIsWrittenAsObject() throws Exception {
+        final StateMachine.FSMTransitionEvent<TaskStates.TaskTransition> event =
+                new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_FINISH);
+
+        final StateMachine.FSMTransitionEvent<?> received = (StateMachine.FSMTransitionEvent<?>) roundTrip(event);
+
+        assertEquals(event.type, received.type);
+        assertEquals(TaskStates.TaskTransition.TASK_TRANSITION_FINISH, received.getPayload());
+        assertEquals(EventTypeRegistry.getTypeId(event.type), received.getTypeId());
+    }
+
+    public void testRPCRequestDeclaresMethodOnce() throws Exception {
+        final Method method = WM2TMProtocol.class.getMethod("releaseTopology", UUID.class);
+        final UUID topologyID = UUID.randomUUID();
+
+        final RPCCallerRequestEvent first = newRequest(method, topologyID);
+        final RPCCallerRequestEvent receivedFirst = (RPCCallerRequestEvent) roundTrip(first);
+        final int declarationSize = lastFrameSize;
+
+        final RPCCallerRequestEvent second = newRequest(method, topologyID);
+        final RPCCallerRequestEvent receivedSecond = (RPCCallerRequestEvent) roundTrip(second);
+
+        // the second call only refers to the method by its id.
+        assertTrue(lastFrameSize < declarationSize);
+
+        for (final RPCCallerRequestEvent received : Arrays.asList(receivedFirst, receivedSecond)) {
+            assertEquals(ControlEventType.CONTROL_EVENT_RPC_CALLER_REQUEST, received.type);
+            assertEquals("WM2TMProtocol", received.methodSignature.className);
+            assertEquals("releaseTopology", received.methodSignature.methodName);
+            assertTrue(Arrays.equals(new Class<?>[] {UUID.class}, received.methodSignature.argumentTypes));
+            assertEquals(method.getReturnType(), received.methodSignature.returnType);
+            assertTrue(Arrays.equals(new Object[] {topologyID}, received.methodSignature.arguments));
+        }
+        assertEquals(first.getSrcMachineID(), receivedFirst.getSrcMachineID());
+        assertEquals(second.getSrcMachineID(), receivedSecond.getSrcMachineID());
+        assertEquals(first.callUID, receivedFirst.callUID);
+        assertEquals(second.callUID, receivedSecond.callUID);
+    }
+
+    public void testRPCRequestWithPrimitiveAndWithoutArguments() throws Exception {
+        final MethodSignature primitive =
+                new MethodSignature("Protocol", "add", new Class<?>[] {int.class, long.class}, new Object[] {1, 2L}, long.class);
+        final RPCCallerRequestEvent receivedPrimitive = (RPCCallerRequestEvent) roundTrip(new RPCCallerRequestEvent(UUID.randomUUID(), primitive));
+
+        assertTrue(Arrays.equals(primitive.argumentTypes, receivedPrimitive.methodSignature.argumentTypes));
+        assertTrue(Arrays.equals(primitive.arguments, receivedPrimitive.methodSignature.arguments));
+        assertEquals(long.class, receivedPrimitive.methodSignature.returnType);
+
+        final MethodSignature noArguments = new MethodSignature("Protocol", "ping", null, null, void.class);
+        for (int i = 0; i < 2; ++i) {
+            final RPCCallerRequestEvent received = (RPCCallerRequestEvent) roundTrip(new RPCCallerRequestEvent(UUID.randomUUID(), noArguments));
+
+            assertEquals("ping", received.methodSignature.methodName);
+            assertNull(received.methodSignature.argumentTypes);
+            assertNull(received.methodSignature.arguments);
+            assertEquals(void.class, received.methodSignature.returnType);
+        }
+    }
+
+    public void testRPCResponses() throws Exception {
+        final UUID callUID = UUID.randomUUID();
+
+        final RPCCalleeResponseEvent value = (RPCCalleeResponseEvent) roundTrip(newResponse(callUID, "result"));
+        assertEquals(ControlEventType.CONTROL_EVENT_RPC_CALLEE_RESPONSE, value.type);
+        assertEquals(callUID, value.callUID);
+        assertEquals("result", value.result);
+
+        assertNull(((RPCCalleeResponseEvent) roundTrip(newResponse(callUID, null))).result);
+
+        final Object exception = ((RPCCalleeResponseEvent) roundTrip(newResponse(callUID, new IllegalStateException("failed")))).result;
+        assertEquals(IllegalStateException.class, exception.getClass());
+        assertEquals("failed", ((Throwable) exception).getMessage());
+
+        final Object list = ((RPCCalleeResponseEvent) roundTrip(newResponse(callUID, Collections.unmodifiableList(Arrays.asList(1, 2))))).result;
+        assertEquals(Arrays.asList(1, 2), list);
+        try {
+            ((List<?>) list).clear();
+            fail("unmodifiable list was read back modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected.
+        }
+    }
+
+    public void testDeploymentKeepsSharedGateBindings() throws Exception {
+        final Descriptors.MachineDescriptor machine = newMachine();
+        final UUID topologyID = UUID.randomUUID();
+        final UserCode userCode = new UserCode("de.tuberlin.Sink", "Sink", Collections.<String>emptyList(), new byte[] {1, 2, 3});
+
+        final List<Descriptors.TaskDescriptor> consumers = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            final Descriptors.TaskDescriptor consumer = new Descriptors.TaskDescriptor(topologyID, UUID.randomUUID(), i, "Sink", userCode);
+            consumer.setMachineDescriptor(machine);
+            consumers.add(consumer);
+        }
+        final List<Descriptors.TaskDescriptor> sharedGate = Collections.unmodifiableList(consumers);
+
+        final List<Descriptors.TaskDeploymentDescriptor> deployment = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            final Descriptors.TaskDescriptor producer = new Descriptors.TaskDescriptor(topologyID, UUID.randomUUID(), i, "Source", userCode);
+            producer.setMachineDescriptor(machine);
+            final Descriptors.TaskBindingDescriptor binding =
+                    new Descriptors.TaskBindingDescriptor(producer,
+                                                          Collections.<List<Descriptors.TaskDescriptor>>emptyList(),
+                                                          Collections.singletonList(sharedGate));
+            deployment.add(new Descriptors.TaskDeploymentDescriptor(producer,
+                                                                    binding,
+                                                                    Node.DataPersistenceType.EPHEMERAL,
+                                                                    Node.ExecutionType.PIPELINED,
+                                                                    null,
+                                                                    Collections.singletonList(0)));
+        }
+
+        final Method method = WM2TMProtocol.class.getMethod("installTasks", List.class, List.class);
+        final RPCCallerRequestEvent received = (RPCCallerRequestEvent) roundTrip(newRequest(method, deployment, Collections.singletonList(userCode)));
+
+        @SuppressWarnings("unchecked")
+        final List<Descriptors.TaskDeploymentDescriptor> receivedDeployment =
+                (List<Descriptors.TaskDeploymentDescriptor>) received.methodSignature.arguments[0];
+        assertEquals(2, receivedDeployment.size());
+
+        final List<Descriptors.TaskDescriptor> firstGate = receivedDeployment.get(0).taskBindingDescriptor.outputGateBindings.get(0);
+        final List<Descriptors.TaskDescriptor> secondGate = receivedDeployment.get(1).taskBindingDescriptor.outputGateBindings.get(0);
+
+        // the shared list is written once per event and read back as one list.
+        assertSame(firstGate, secondGate);
+        assertEquals(2, firstGate.size());
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(consumers.get(i).taskID, firstGate.get(i).taskID);
+            assertEquals(i, firstGate.get(i).taskIndex);
+            assertEquals(machine.uid, firstGate.get(i).getMachineDescriptor().uid);
+        }
+        assertSame(firstGate.get(0).getMachineDescriptor(), receivedDeployment.get(0).taskDescriptor.getMachineDescriptor());
+
+        for (int i = 0; i < 2; ++i) {
+            final Descriptors.TaskDeploymentDescriptor tdd = receivedDeployment.get(i);
+            assertEquals(deployment.get(i).taskDescriptor.taskID, tdd.taskDescriptor.taskID);
+            assertSame(tdd.taskDescriptor, tdd.taskBindingDescriptor.task);
+            assertEquals(Collections.singletonList(0), tdd.lazyOutputGates);
+            assertEquals(Node.ExecutionType.PIPELINED, tdd.executionType);
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<UserCode> receivedCodes = (List<UserCode>) received.methodSignature.arguments[1];
+        assertSame(receivedCodes.get(0), receivedDeployment.get(0).taskDescriptor.userCode);
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, receivedCodes.get(0).classByteCode));
+    }
+
+    public void testIdentityDoesNotSpanEvents() throws Exception {
+        final List<Integer> shared = Collections.unmodifiableList(Arrays.asList(1, 2, 3));
+
+        final Object first = ((ControlIOEvent) roundTrip(newEvent(shared))).getPayload();
+        final Object second = ((ControlIOEvent) roundTrip(newEvent(shared))).getPayload();
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private Object roundTrip(final ControlIOEvent event) {
+        assertTrue(sender.writeOutbound(event));
+        final ByteBuf frame = (ByteBuf) sender.readOutbound();
+        lastFrameSize = frame.readableBytes();
+        assertNull(sender.readOutbound());
+
+        assertTrue(receiver.writeInbound(frame));
+        final Object received = receiver.readInbound();
+        assertNull(receiver.readInbound());
+        return received;
+    }
+
+    private static List<String> getControlEventTypes() throws IllegalAccessException {
+        final List<String> types = new ArrayList<>();
+        for (final Field field : ControlEventType.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class)
+                types.add((String) field.get(null));
+        }
+        assertFalse(types.isEmpty());
+        return types;
+    }
+
+    private static ControlIOEvent newEvent(final Object payload) {
+        final ControlIOEvent event = new ControlIOEvent(ControlEventType.CONTROL_EVENT_TOPOLOGY_FINISHED);
+        event.setPayload(payload);
+        return event;
+    }
+
+    private static TaskControlIOEvent newTaskEvent(final String type) {
+        final TaskControlIOEvent event = new TaskControlIOEvent(type);
+        event.setTopologyID(UUID.randomUUID());
+        event.setTaskID(UUID.randomUUID());
+        return event;
+    }
+
+    private static RPCCallerRequestEvent newRequest(final Method method, final Object... arguments) {
+        final MethodSignature signature =
+                new MethodSignature(method.getDeclaringClass().getSimpleName(),
+                                    method.getName(),
+                                    method.getParameterTypes(),
+                                    arguments,
+                                    method.getReturnType());
+        final RPCCallerRequestEvent request = new RPCCallerRequestEvent(UUID.randomUUID(), signature);
+        request.setSrcMachineID(UUID.randomUUID());
+        return request;
+    }
+
+    private static RPCCalleeResponseEvent newResponse(final UUID callUID, final Object result) {
+        final RPCCalleeResponseEvent response = new RPCCalleeResponseEvent(callUID, result);
+        response.setSrcMachineID(UUID.randomUUID());
+        response.setDstMachineID(UUID.randomUUID());
+        return response;
+    }
+
+    private static Descriptors.MachineDescriptor newMachine() throws Exception {
+        final long gigabyte = 1024L * 1024L * 1024L;
+        return new Descriptors.MachineDescriptor(InetAddress.getLoopbackAddress(),
+                                                 24000,
+                                                 25000,
+                                                 new Descriptors.HardwareDescriptor(4, 2 * gigabyte, new Descriptors.HDDDescriptor(2 * gigabyte)));
+    }
+}
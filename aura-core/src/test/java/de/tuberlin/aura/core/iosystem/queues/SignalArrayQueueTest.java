@@ -0,0 +1,262 @@
+package de.tuberlin.aura.core.iosystem.queues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the bounded array queues against the contract of {@link BufferQueue}.
+ */
+public class SignalArrayQueueTest extends TestCase {
+
+    private static final int ELEMENTS_PER_PRODUCER = 100000;
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        for (final SignalArrayQueue<Integer> queue : newQueues(5)) {
+            assertEquals(8, queue.capacity());
+        }
+        for (final SignalArrayQueue<Integer> queue : newQueues(1)) {
+            assertEquals(1, queue.capacity());
+        }
+        try {
+            new SignalSpscArrayQueue<Integer>(0);
+            fail("capacity 0 accepted");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    public void testOfferUntilFull() {
+        for (final SignalArrayQueue<Integer> queue : newQueues(4)) {
+            assertTrue(queue.isEmpty());
+            for (int i = 0; i < 4; ++i) {
+                assertTrue(queue.offer(i));
+                assertEquals(i + 1, queue.size());
+            }
+            assertFalse(queue.offer(4));
+            assertEquals(4, queue.size());
+
+            assertEquals(Integer.valueOf(0), queue.poll());
+            assertTrue(queue.offer(4));
+            assertFalse(queue.offer(5));
+
+            for (int i = 1; i <= 4; ++i) {
+                assertEquals(Integer.valueOf(i), queue.poll());
+            }
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    public void testNullElementIsRejected() {
+        for (final SignalArrayQueue<Integer> queue : newQueues(4)) {
+            try {
+                queue.offer(null);
+                fail("null element accepted by " + queue.getClass().getSimpleName());
+            } catch (IllegalArgumentException e) {
+                // expected.
+            }
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    public void testDrainToKeepsOrderAcrossWrapAround() {
+        for (final SignalArrayQueue<Integer> queue : newQueues(8)) {
+            int next = 0;
+            int expected = 0;
+            // moves the indexes several times around the ring.
+            for (int round = 0; round < 5; ++round) {
+                while (queue.offer(next)) {
+                    ++next;
+                }
+
+                final List<Integer> drained = new ArrayList<>();
+                assertEquals(3, queue.drainTo(drained, 3));
+                assertEquals(5, queue.size());
+                assertEquals(5, queue.drainTo(drained, Integer.MAX_VALUE));
+                assertEquals(0, queue.drainTo(drained, Integer.MAX_VALUE));
+
+                for (final Integer e : drained) {
+                    assertEquals(expected++, e.intValue());
+                }
+            }
+            assertEquals(next, expected);
+        }
+    }
+
+    public void testObserverIsSignaledWhenQueueTurnsNonEmpty() {
+        for (final SignalArrayQueue<Integer> queue : newQueues(4)) {
+            final CountingObserver observer = new CountingObserver();
+            queue.registerObserver(observer);
+
+            queue.offer(1);
+            queue.offer(2);
+            assertEquals(1, observer.notEmpty.get());
+
+            queue.poll();
+            queue.offer(3);
+            assertEquals(1, observer.notEmpty.get());
+
+            // the queue is only known to be empty after a poll failed.
+            assertEquals(2, queue.drainTo(new ArrayList<Integer>(), Integer.MAX_VALUE));
+            queue.offer(4);
+            assertEquals(2, observer.notEmpty.get());
+
+            queue.removeObserver(observer);
+            queue.poll();
+            assertNull(queue.poll());
+            queue.offer(5);
+            assertEquals(2, observer.notEmpty.get());
+        }
+    }
+
+    public void testPollTimesOut() throws InterruptedException {
+        for (final SignalArrayQueue<Integer> queue : newQueues(4)) {
+            final long start = System.nanoTime();
+            assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    public void testBlockingStrategyWakesConsumer() throws Exception {
+        final SignalArrayQueue<Integer> queue = new SignalMpscArrayQueue<>(4, WaitStrategy.Type.BLOCKING.newInstance());
+        final AtomicReference<Integer> taken = new AtomicReference<>();
+        final Thread consumer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    taken.set(queue.take());
+                } catch (InterruptedException e) {
+                    // leaves taken unset.
+                }
+            }
+        });
+        consumer.start();
+
+        Thread.sleep(20);
+        queue.offer(42);
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(Integer.valueOf(42), taken.get());
+    }
+
+    public void testPutWaitsForSpace() throws Exception {
+        for (final SignalArrayQueue<Integer> queue : newQueues(2)) {
+            queue.offer(0);
+            queue.offer(1);
+
+            final CountDownLatch done = new CountDownLatch(1);
+            final Thread producer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        queue.put(2);
+                        done.countDown();
+                    } catch (InterruptedException e) {
+                        // leaves the latch open.
+                    }
+                }
+            });
+            producer.start();
+
+            assertFalse(done.await(20, TimeUnit.MILLISECONDS));
+            assertEquals(Integer.valueOf(0), queue.poll());
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            assertEquals(Integer.valueOf(1), queue.poll());
+            assertEquals(Integer.valueOf(2), queue.poll());
+            producer.join();
+        }
+    }
+
+    public void testSingleProducer() throws Exception {
+        for (final SignalArrayQueue<Integer> queue : newQueues(16)) {
+            transfer(queue, 1);
+        }
+    }
+
+    public void testMultipleProducers() throws Exception {
+        transfer(new SignalMpscArrayQueue<Integer>(16), 4);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static List<SignalArrayQueue<Integer>> newQueues(final int capacity) {
+        return Arrays.<SignalArrayQueue<Integer>>asList(new SignalSpscArrayQueue<Integer>(capacity), new SignalMpscArrayQueue<Integer>(capacity));
+    }
+
+    /**
+     * Every producer puts an ascending sequence tagged with its index. The consumer checks that no
+     * element is lost or duplicated and that the order of each producer is kept.
+     */
+    private static void transfer(final SignalArrayQueue<Integer> queue, final int producers) throws Exception {
+        final List<Thread> producerThreads = new ArrayList<>();
+        for (int i = 0; i < producers; ++i) {
+            final int producer = i;
+            final Thread producerThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < ELEMENTS_PER_PRODUCER; ++j) {
+                            queue.put(j * producers + producer);
+                        }
+                    } catch (InterruptedException e) {
+                        // the consumer fails on the missing elements.
+                    }
+                }
+            });
+            producerThread.start();
+            producerThreads.add(producerThread);
+        }
+
+        final int[] nextSequence = new int[producers];
+        for (int i = 0; i < producers * ELEMENTS_PER_PRODUCER; ++i) {
+            final Integer e = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull("element " + i + " is missing", e);
+
+            final int producer = e % producers;
+            assertEquals(nextSequence[producer]++, e / producers);
+        }
+        for (final Thread producerThread : producerThreads) {
+            producerThread.join();
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static final class CountingObserver implements BufferQueue.QueueObserver {
+
+        final AtomicInteger notEmpty = new AtomicInteger();
+
+        @Override
+        public void signalNotFull() {}
+
+        @Override
+        public void signalNotEmpty() {
+            notEmpty.incrementAndGet();
+        }
+
+        @Override
+        public void signalNewElement() {}
+    }
+}
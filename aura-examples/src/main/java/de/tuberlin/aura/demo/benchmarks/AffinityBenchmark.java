@@ -0,0 +1,157 @@
+package de.tuberlin.aura.demo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tuberlin.aura.core.common.utils.ThreadAffinity;
+import de.tuberlin.aura.core.descriptors.DescriptorFactory;
+import de.tuberlin.aura.core.descriptors.Descriptors;
+import de.tuberlin.aura.core.memory.BufferAllocatorGroup;
+import de.tuberlin.aura.core.memory.BufferMemoryManager;
+import de.tuberlin.aura.core.memory.MemoryView;
+
+/**
+ * Memory throughput of execution units that write and read the buffers of their allocator groups,
+ * like the execution units of a task manager with -Daura.taskmanager.affinity. Three setups are
+ * compared: unpinned units with groups created by the main thread, pinned units with groups created
+ * by the main thread and pinned units that create their groups after pinning.
+ *
+ * The groups are only local to the unit's NUMA node if the JVM places them there, so run it with
+ * -XX:+UseNUMA -XX:+UseParallelGC and without -XX:+AlwaysPreTouch on a multi-socket machine. On a
+ * single node all setups perform alike. The buffer memory is a tenth of the heap, at least -Xmx1g
+ * is needed.
+ *
+ * Usage: AffinityBenchmark [units] [passes] [runs]
+ */
+public final class AffinityBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AffinityBenchmark.class);
+
+    // Disallow Instantiation.
+    private AffinityBenchmark() {}
+
+    // ---------------------------------------------------
+    // Main.
+    // ---------------------------------------------------
+
+    public static void main(final String[] args) throws Exception {
+        final List<Integer> layout = ThreadAffinity.getCoreLayout();
+        final int units = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(layout.size(), 1);
+        final int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // no ports are opened, the descriptor only sizes the buffer memory.
+        final Descriptors.MachineDescriptor machine = DescriptorFactory.createMachineDescriptor(1024, 1025);
+
+        LOG.info("Core layout: " + layout);
+
+        for (int run = 0; run < runs; ++run) {
+            LOG.info("Run " + (run + 1) + "/" + runs + " (first runs are warm-up)");
+
+            benchmark("unpinned, groups of main", Setup.UNPINNED, machine, layout, units, passes);
+            benchmark("pinned, groups of main", Setup.PINNED, machine, layout, units, passes);
+            benchmark("pinned, groups of unit", Setup.PINNED_LOCAL_GROUPS, machine, layout, units, passes);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static void benchmark(final String name,
+                                  final Setup setup,
+                                  final Descriptors.MachineDescriptor machine,
+                                  final List<Integer> layout,
+                                  final int units,
+                                  final int passes) throws InterruptedException {
+
+        // the groups of the last setup are collected before the arenas of this one are allocated.
+        System.gc();
+
+        final BufferMemoryManager bufferMemoryManager = new BufferMemoryManager(machine);
+
+        final BufferAllocatorGroup[] groups = new BufferAllocatorGroup[units];
+        if (setup != Setup.PINNED_LOCAL_GROUPS) {
+            for (int i = 0; i < units; ++i)
+                groups[i] = bufferMemoryManager.getBufferAllocatorGroup();
+        }
+
+        final CountDownLatch readySignal = new CountDownLatch(units);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicLong checksum = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final List<Thread> unitThreads = new ArrayList<>(units);
+
+        for (int i = 0; i < units; ++i) {
+            final int unit = i;
+            final Thread unitThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (setup != Setup.UNPINNED && !layout.isEmpty())
+                        ThreadAffinity.pinCurrentThread(layout.get(unit % layout.size()));
+
+                    final BufferAllocatorGroup group =
+                            setup == Setup.PINNED_LOCAL_GROUPS ? bufferMemoryManager.getBufferAllocatorGroup() : groups[unit];
+
+                    readySignal.countDown();
+                    try {
+                        startSignal.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    long sum = 0;
+                    long written = 0;
+                    for (int pass = 0; pass < passes; ++pass) {
+                        // takes every buffer of the group once per pass.
+                        final List<MemoryView> buffers = new ArrayList<>();
+                        MemoryView buffer;
+                        while ((buffer = group.alloc()) != null) {
+                            for (int j = buffer.baseOffset; j < buffer.baseOffset + buffer.size; ++j)
+                                buffer.memory[j] = (byte) j;
+                            for (int j = buffer.baseOffset; j < buffer.baseOffset + buffer.size; ++j)
+                                sum += buffer.memory[j];
+                            written += buffer.size;
+                            buffers.add(buffer);
+                        }
+                        for (final MemoryView view : buffers)
+                            view.free();
+                    }
+                    checksum.addAndGet(sum);
+                    bytes.addAndGet(written);
+                }
+            }, "AffinityBenchmark-Unit-" + unit);
+            unitThread.start();
+            unitThreads.add(unitThread);
+        }
+
+        readySignal.await();
+        final long start = System.nanoTime();
+        startSignal.countDown();
+        for (final Thread unitThread : unitThreads) {
+            unitThread.join();
+        }
+        final long duration = System.nanoTime() - start;
+
+        LOG.info(String.format("%-26s units: %d  %8.2f GB/s  (checksum %d)", name, units, bytes.get() * 2.0 / duration, checksum.get()));
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    private static enum Setup {
+
+        UNPINNED,
+
+        PINNED,
+
+        PINNED_LOCAL_GROUPS
+    }
+}
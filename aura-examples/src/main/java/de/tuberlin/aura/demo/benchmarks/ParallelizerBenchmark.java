@@ -0,0 +1,74 @@
+package de.tuberlin.aura.demo.benchmarks;
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tuberlin.aura.core.common.eventsystem.EventDispatcher;
+import de.tuberlin.aura.core.task.usercode.UserCodeExtractor;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopologyBuilder;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Edge;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Node;
+import de.tuberlin.aura.workloadmanager.TopologyParallelizer;
+
+/**
+ * Time the {@link TopologyParallelizer} needs to create and bind the tasks of a topology with two
+ * nodes of the given degree. Building the topology, which extracts the user code, is not measured.
+ *
+ * Usage: ParallelizerBenchmark [degree] [runs]
+ */
+public final class ParallelizerBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelizerBenchmark.class);
+
+    // Disallow Instantiation.
+    private ParallelizerBenchmark() {}
+
+    // ---------------------------------------------------
+    // Main.
+    // ---------------------------------------------------
+
+    public static void main(final String[] args) {
+        final int degree = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        final TopologyParallelizer parallelizer = new TopologyParallelizer();
+        parallelizer.setDispatcher(new EventDispatcher());
+
+        for (int run = 0; run < runs; ++run) {
+            LOG.info("Run " + (run + 1) + "/" + runs + " (first runs are warm-up)");
+
+            benchmark(parallelizer, degree, Edge.TransferType.ALL_TO_ALL);
+            benchmark(parallelizer, degree, Edge.TransferType.POINT_TO_POINT);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static void benchmark(final TopologyParallelizer parallelizer, final int degree, final Edge.TransferType transferType) {
+        // the nodes keep their execution nodes, every run needs a new topology.
+        final AuraTopologyBuilder builder = new AuraTopologyBuilder(UUID.randomUUID(), new UserCodeExtractor(false));
+        builder.addNode(new Node(UUID.randomUUID(), "Producer", degree, 1), Task.class).connectTo("Consumer", transferType);
+        builder.addNode(new Node(UUID.randomUUID(), "Consumer", degree, 1), Task.class);
+        final AuraTopology topology = builder.build("ParallelizerBenchmark");
+
+        final long start = System.nanoTime();
+        parallelizer.apply(topology);
+        final long duration = System.nanoTime() - start;
+
+        LOG.info(String.format("%-14s %d x %d  %8.2f ms", transferType, degree, degree, duration / 1e6));
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /**
+     * The parallelizer only ships the code, it is never loaded.
+     */
+    public static final class Task {}
+}
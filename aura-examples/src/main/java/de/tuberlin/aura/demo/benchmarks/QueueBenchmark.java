@@ -0,0 +1,119 @@
+package de.tuberlin.aura.demo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tuberlin.aura.core.iosystem.queues.BlockingBufferQueue;
+import de.tuberlin.aura.core.iosystem.queues.BufferQueue;
+import de.tuberlin.aura.core.iosystem.queues.SignalMpscArrayQueue;
+import de.tuberlin.aura.core.iosystem.queues.SignalSpscArrayQueue;
+import de.tuberlin.aura.core.iosystem.queues.SignalSpscLinkedQueue;
+
+/**
+ * Throughput benchmark of the {@link BufferQueue} implementations. Producers offer a fixed number of
+ * elements, a single consumer drains them in batches.
+ *
+ * Usage: QueueBenchmark [elements per producer] [runs]
+ */
+public final class QueueBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueueBenchmark.class);
+
+    private static final Integer ELEMENT = 42;
+
+    private static final int BATCH_SIZE = 64;
+
+    // Disallow Instantiation.
+    private QueueBenchmark() {}
+
+    // ---------------------------------------------------
+    // Main.
+    // ---------------------------------------------------
+
+    public static void main(final String[] args) throws Exception {
+        final int elements = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (int run = 0; run < runs; ++run) {
+            LOG.info("Run " + (run + 1) + "/" + runs + " (first runs are warm-up)");
+
+            benchmark("BlockingBufferQueue", new BlockingBufferQueue.Factory<Integer>(), 1, elements);
+            benchmark("SignalSpscLinkedQueue", new SignalSpscLinkedQueue.Factory<Integer>(), 1, elements);
+            benchmark("SignalSpscArrayQueue", new SignalSpscArrayQueue.Factory<Integer>(), 1, elements);
+            benchmark("SignalMpscArrayQueue", new SignalMpscArrayQueue.Factory<Integer>(), 1, elements);
+
+            benchmark("BlockingBufferQueue", new BlockingBufferQueue.Factory<Integer>(), 2, elements);
+            benchmark("SignalMpscArrayQueue", new SignalMpscArrayQueue.Factory<Integer>(), 2, elements);
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private static void benchmark(final String name, final BufferQueue.FACTORY<Integer> factory, final int producers, final int elements)
+            throws InterruptedException {
+
+        final BufferQueue<Integer> queue = factory.newInstance();
+        queue.registerObserver(new BufferQueue.QueueObserver() {
+
+            @Override
+            public void signalNotFull() {}
+
+            @Override
+            public void signalNotEmpty() {}
+
+            @Override
+            public void signalNewElement() {}
+        });
+
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final List<Thread> producerThreads = new ArrayList<>(producers);
+        for (int i = 0; i < producers; ++i) {
+            final Thread producer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < elements; ++j) {
+                        while (!queue.offer(ELEMENT)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producerThreads.add(producer);
+        }
+
+        final long total = (long) elements * producers;
+        final List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+
+        final long start = System.nanoTime();
+        startSignal.countDown();
+        long consumed = 0;
+        while (consumed < total) {
+            final int n = queue.drainTo(batch, BATCH_SIZE);
+            if (n == 0) {
+                Thread.yield();
+            }
+            consumed += n;
+            batch.clear();
+        }
+        final long duration = System.nanoTime() - start;
+
+        for (final Thread producer : producerThreads) {
+            producer.join();
+        }
+
+        LOG.info(String.format("%-22s producers: %d  %8.2f M ops/s", name, producers, total * 1000.0 / duration));
+    }
+}
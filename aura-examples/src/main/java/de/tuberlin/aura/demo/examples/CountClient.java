@@ -166,43 +166,20 @@ public final class CountClient {
             final List<Descriptors.TaskDescriptor> outputs = driverContext.taskBindingDescriptor.outputGateBindings.get(0);
 
             while (!consumer.isExhausted() && isInvokeableRunning()) {
-                final IOEvents.TransferBufferEvent leftEvent = consumer.absorb(0);
-                final IOEvents.TransferBufferEvent rightEvent = consumer.absorb(1);
+                // progress at the rate of the faster input.
+                final IOEvents.TransferBufferEvent event = consumer.absorbAny();
 
-                if (leftEvent != null) {
-                    countLeft++;
-                    ByteBuffer byteBuf = ByteBuffer.wrap(leftEvent.buffer.memory, leftEvent.buffer.baseOffset, leftEvent.buffer.size);
-                    final long value = byteBuf.getLong();
-                    if (value != countLeft) {
-                        LOG.error("left expected: " + countLeft + ", but was: " + value);
-                    }
-
-                    leftEvent.buffer.free();
-
-                    for (int index = 0; index < outputs.size(); ++index) {
-                        final UUID outputTaskID = getTaskID(0, index);
-
-                        final MemoryView sendBuffer = producer.allocBlocking();
-                        ByteBuffer outBuf = ByteBuffer.wrap(sendBuffer.memory, sendBuffer.baseOffset, sendBuffer.size);
-                        outBuf.putLong(++out);
-                        outBuf.flip();
-                        final IOEvents.TransferBufferEvent outputBuffer = new IOEvents.TransferBufferEvent(taskID, outputTaskID, sendBuffer);
-
-                        producer.emit(0, index, outputBuffer);
-                    }
-
-
-                }
+                if (event != null) {
+                    final boolean isLeft = consumer.getInputGateIndexFromTaskID(event.srcTaskID) == 0;
+                    final long expected = isLeft ? ++countLeft : ++countRight;
 
-                if (rightEvent != null) {
-                    countRight++;
-                    ByteBuffer byteBuf = ByteBuffer.wrap(rightEvent.buffer.memory);
+                    ByteBuffer byteBuf = ByteBuffer.wrap(event.buffer.memory, event.buffer.baseOffset, event.buffer.size);
                     final long value = byteBuf.getLong();
-                    if (value != countRight) {
-                        LOG.error("right expected: " + countRight + ", but was: " + value);
+                    if (value != expected) {
+                        LOG.error((isLeft ? "left" : "right") + " expected: " + expected + ", but was: " + value);
                     }
 
-                    rightEvent.buffer.free();
+                    event.buffer.free();
 
                     for (int index = 0; index < outputs.size(); ++index) {
                         final UUID outputTaskID = getTaskID(0, index);
@@ -215,8 +192,6 @@ public final class CountClient {
 
                         producer.emit(0, index, outputBuffer);
                     }
-
-
                 }
             }
         }
@@ -231,7 +206,7 @@ public final class CountClient {
     /**
      *
      */
-    public static class Sink extends TaskInvokeable {
+    public static class Sink extends ChainableInvokeable {
 
         long count = 0;
 
@@ -244,32 +219,24 @@ public final class CountClient {
         }
 
         @Override
-        public void open() throws Throwable {
-            consumer.openGate(0);
-        }
+        public void process(final IOEvents.TransferBufferEvent event) throws Throwable {
+            count++;
 
-        @Override
-        public void run() throws Throwable {
-
-            while (!consumer.isExhausted() && isInvokeableRunning()) {
-                final IOEvents.TransferBufferEvent event = consumer.absorb(0);
-
-                if (event != null) {
-                    count++;
-
-                    recordReader.selectBuffer(event.buffer);
-                    long value = recordReader.readRecord(Long.class);
-                    if (value != count) {
-                        LOG.error("expected: " + count + ", but was: " + value);
-                    }
+            recordReader.selectBuffer(event.buffer);
+            long value = recordReader.readRecord(Long.class);
+            if (value != count) {
+                LOG.error("expected: " + count + ", but was: " + value);
+            }
 
+            if (count % 10000 == 0)
+                LOG.info("Sink receive {}.", count);
+            // LOG.info("free in sink");
+            event.buffer.free();
+        }
 
-                    if (count % 10000 == 0)
-                        LOG.info("Sink receive {}.", count);
-                    // LOG.info("free in sink");
-                    event.buffer.free();
-                }
-            }
+        @Override
+        public void close() throws Throwable {
+            super.close();
 
             LOG.info("Sink finished {}.", count);
         }
@@ -306,35 +273,23 @@ public final class CountClient {
         public void run() throws Throwable {
 
             while (!consumer.isExhausted() && isInvokeableRunning()) {
-                final IOEvents.TransferBufferEvent left = consumer.absorb(0);
-                final IOEvents.TransferBufferEvent right = consumer.absorb(1);
-                if (left != null) {
-                    countLeft++;
-                    recordReaderLeft.selectBuffer(left.buffer);
-                    long value = recordReaderLeft.readRecord(Long.class);
-
-                    if (value != countLeft) {
-                        LOG.error("left expected: " + countLeft + ", but was: " + value);
-                    }
+                final IOEvents.TransferBufferEvent event = consumer.absorbAny();
+                if (event != null) {
+                    final boolean isLeft = consumer.getInputGateIndexFromTaskID(event.srcTaskID) == 0;
+                    final long expected = isLeft ? ++countLeft : ++countRight;
+                    final TaskRecordReader recordReader = isLeft ? recordReaderLeft : recordReaderRight;
 
-                    if (countLeft % 10000 == 0)
-                        LOG.info("Sink left receive {}.", countLeft);
-                    // LOG.info("free in sink");
-                    left.buffer.free();
-                }
-                if (right != null) {
-                    countRight++;
-                    recordReaderRight.selectBuffer(right.buffer);
-                    long value = recordReaderRight.readRecord(Long.class);
+                    recordReader.selectBuffer(event.buffer);
+                    long value = recordReader.readRecord(Long.class);
 
-                    if (value != countRight) {
-                        LOG.error("right expected: " + countRight + ", but was: " + value);
+                    if (value != expected) {
+                        LOG.error((isLeft ? "left" : "right") + " expected: " + expected + ", but was: " + value);
                     }
 
-                    if (countRight % 10000 == 0)
-                        LOG.info("Sink right receive {}.", countRight);
+                    if (expected % 10000 == 0)
+                        LOG.info("Sink " + (isLeft ? "left" : "right") + " receive {}.", expected);
                     // LOG.info("free in sink");
-                    right.buffer.free();
+                    event.buffer.free();
                 }
             }
 
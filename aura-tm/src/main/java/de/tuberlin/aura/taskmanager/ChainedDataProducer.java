@@ -0,0 +1,103 @@
+package de.tuberlin.aura.taskmanager;
+
+import java.util.UUID;
+
+import de.tuberlin.aura.core.iosystem.IOEvents;
+import de.tuberlin.aura.core.memory.BufferCallback;
+import de.tuberlin.aura.core.memory.MemoryView;
+import de.tuberlin.aura.core.task.common.ChainableInvokeable;
+import de.tuberlin.aura.core.task.common.DataProducer;
+
+/**
+ * Hands the buffers an operator of a fused task emits directly to the next operator of the chain.
+ * Buffers are allocated from the output allocator of the task.
+ */
+public final class ChainedDataProducer implements DataProducer {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final UUID taskID;
+
+    private final ChainableInvokeable next;
+
+    private final DataProducer taskProducer;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    /**
+     * @param taskID The fused task, the operators see it as their single output channel.
+     * @param next
+     * @param taskProducer
+     */
+    public ChainedDataProducer(final UUID taskID, final ChainableInvokeable next, final DataProducer taskProducer) {
+        // sanity check.
+        if (taskID == null)
+            throw new IllegalArgumentException("taskID == null");
+        if (next == null)
+            throw new IllegalArgumentException("next == null");
+        if (taskProducer == null)
+            throw new IllegalArgumentException("taskProducer == null");
+
+        this.taskID = taskID;
+
+        this.next = next;
+
+        this.taskProducer = taskProducer;
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public void emit(final int gateIndex, final int channelIndex, final IOEvents.DataIOEvent event) {
+        // sanity check.
+        if (event == null)
+            throw new IllegalArgumentException("event == null");
+
+        if (event instanceof IOEvents.TransferBufferEvent) {
+            try {
+                next.process((IOEvents.TransferBufferEvent) event);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        } else if (!IOEvents.DataEventType.DATA_EVENT_SOURCE_EXHAUSTED.equals(event.type)) {
+            throw new IllegalStateException("event " + event.type + " can not be passed to a chained operator");
+        }
+        // the exhaustion of the input is signaled by closing the next operator.
+    }
+
+    @Override
+    public void done() {
+        // the task driver closes the next operator.
+    }
+
+    @Override
+    public void shutdownProducer(final boolean awaitExhaustion) {}
+
+    @Override
+    public UUID getOutputTaskIDFromChannelIndex(final int channelIndex) {
+        return taskID;
+    }
+
+    @Override
+    public int getOutputGateIndexFromTaskID(final UUID taskID) {
+        return 0;
+    }
+
+    @Override
+    public MemoryView alloc(final BufferCallback callback) {
+        return taskProducer.alloc(callback);
+    }
+
+    @Override
+    public MemoryView allocBlocking() throws InterruptedException {
+        return taskProducer.allocBlocking();
+    }
+}
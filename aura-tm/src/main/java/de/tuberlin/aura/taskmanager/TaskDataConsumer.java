@@ -3,6 +3,9 @@ package de.tuberlin.aura.taskmanager;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +55,26 @@ public final class TaskDataConsumer implements DataConsumer {
 
     private final IAllocator allocator;
 
+    // absorbAny
+
+    private static final long ABSORB_TIMEOUT = 30;
+
+    private final GateSelector gateSelector;
+
+    private final List<BufferQueue<IOEvents.DataIOEvent>> gateQueues;
+
+    private final int[] gatePriorities;
+
+    private final int[] gateScanOrder;
+
+    private boolean hasGatePriorities = false;
+
+    private int lastSelectedGate = -1;
+
+    // absorbBatch
+
+    private final List<IOEvents.DataIOEvent> batchEvents = new ArrayList<>();
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -92,6 +115,19 @@ public final class TaskDataConsumer implements DataConsumer {
         this.areInputsGatesExhausted = false;
 
         setupInputGates();
+
+        final int numGates = driverContext.taskBindingDescriptor.inputGateBindings.size();
+
+        this.gateSelector = new GateSelector();
+
+        this.gateQueues = new ArrayList<>(Collections.<BufferQueue<IOEvents.DataIOEvent>>nCopies(numGates, null));
+
+        this.gatePriorities = new int[numGates];
+
+        this.gateScanOrder = new int[numGates];
+        for (int i = 0; i < numGates; ++i) {
+            gateScanOrder[i] = i;
+        }
     }
 
     // ---------------------------------------------------
@@ -100,10 +136,6 @@ public final class TaskDataConsumer implements DataConsumer {
 
     private final Map<Integer, Long> exhaustedEvents = new HashMap<Integer, Long>();
 
-    long countGate0 = 0;
-
-    long countGate1 = 0;
-
     public IOEvents.TransferBufferEvent absorb(int gateIndex) throws InterruptedException {
 
         if (activeGates.get(gateIndex).size() == 0)
@@ -114,13 +146,11 @@ public final class TaskDataConsumer implements DataConsumer {
         IOEvents.DataIOEvent event = null;
 
         while (retrieve) {
-            event = inputGates.get(gateIndex).getInputQueue().poll(30, TimeUnit.SECONDS);
+            event = inputGates.get(gateIndex).getInputQueue().poll(ABSORB_TIMEOUT, TimeUnit.SECONDS);
             if (event == null) {
                 for (Map.Entry<Integer, Long> exhaustedEvent : exhaustedEvents.entrySet()) {
                     LOG.warn("Gate " + exhaustedEvent.getKey() + " exhausted events: " + exhaustedEvent.getValue());
                 }
-                LOG.warn("Gate 0 count: " + countGate0 + " --> " + ((countGate0 != 0) ? inputGates.get(0).getInputQueue().size() : 0));
-                LOG.warn("Gate 1 count: " + countGate1 + " --> " + ((countGate1 != 0) ? inputGates.get(1).getInputQueue().size() : 0));
                 return null;
             }
 
@@ -135,46 +165,14 @@ public final class TaskDataConsumer implements DataConsumer {
             switch (event.type) {
 
                 case IOEvents.DataEventType.DATA_EVENT_SOURCE_EXHAUSTED:
-                    final Set<UUID> activeChannelSet = activeGates.get(gateIndex);
-
-                    if (!exhaustedEvents.containsKey(gateIndex)) {
-                        exhaustedEvents.put(gateIndex, 1L);
-                    } else {
-                        exhaustedEvents.put(gateIndex, exhaustedEvents.get(gateIndex) + 1);
-                    }
-
-                    if (!activeChannelSet.remove(event.srcTaskID))
-                        throw new IllegalStateException();
-
-                    if (activeChannelSet.isEmpty()) {
+                    if (handleSourceExhausted(gateIndex, event)) {
                         retrieve = false;
                         event = null;
                     }
-
-                    // check if all gates are exhausted
-                    boolean isExhausted = true;
-                    for (final Set<UUID> acs : activeGates) {
-                        isExhausted &= acs.isEmpty();
-                    }
-                    areInputsGatesExhausted = isExhausted;
-
                     break;
 
                 case IOEvents.DataEventType.DATA_EVENT_OUTPUT_GATE_CLOSE_ACK:
-                    final Map<UUID, Boolean> closedChannels = closedGates.get(gateIndex);
-
-                    if (!closedChannels.containsKey(event.srcTaskID))
-                        throw new IllegalStateException();
-
-                    closedChannels.put(event.srcTaskID, true);
-
-                    boolean allClosed = true;
-                    for (boolean closed : closedChannels.values()) {
-                        allClosed &= closed;
-                    }
-
-                    if (allClosed) {
-                        gateCloseFinished.get(gateIndex).set(true);
+                    if (handleGateCloseAck(gateIndex, event)) {
                         retrieve = false;
                         event = null;
                     }
@@ -182,11 +180,6 @@ public final class TaskDataConsumer implements DataConsumer {
 
                 // data event -> absorb
                 default:
-                    if (gateIndex == 0) {
-                        countGate0++;
-                    } else {
-                        countGate1++;
-                    }
                     retrieve = false;
                     break;
             }
@@ -195,6 +188,160 @@ public final class TaskDataConsumer implements DataConsumer {
         return (IOEvents.TransferBufferEvent) event;
     }
 
+    /**
+     * @param gateIndex
+     * @param buffers
+     * @param maxBuffers
+     * @return
+     * @throws InterruptedException
+     */
+    public int absorbBatch(final int gateIndex, final List<IOEvents.TransferBufferEvent> buffers, final int maxBuffers)
+            throws InterruptedException {
+        // sanity check.
+        if (buffers == null)
+            throw new IllegalArgumentException("buffers == null");
+        if (maxBuffers <= 0)
+            throw new IllegalArgumentException("maxBuffers <= 0");
+
+        final Set<UUID> activeChannelSet = activeGates.get(gateIndex);
+        final BufferQueue<IOEvents.DataIOEvent> queue = inputGates.get(gateIndex).getInputQueue();
+
+        int absorbed = 0;
+        while (absorbed == 0 && !activeChannelSet.isEmpty()) {
+            final IOEvents.DataIOEvent first = queue.poll(ABSORB_TIMEOUT, TimeUnit.SECONDS);
+            if (first == null) {
+                LOG.warn("No buffer received on gate " + gateIndex + " within " + ABSORB_TIMEOUT + " seconds");
+                return 0;
+            }
+
+            batchEvents.add(first);
+            queue.drainTo(batchEvents, maxBuffers - 1);
+
+            final int size = buffers.size();
+            final boolean isGateClosed = processBatchEvents(gateIndex, buffers);
+            absorbed += buffers.size() - size;
+            if (isGateClosed) {
+                break;
+            }
+        }
+
+        return absorbed;
+    }
+
+    /**
+     * @param gateIndex
+     * @param buffers
+     * @param maxEvents
+     * @return
+     */
+    public int pollBatch(final int gateIndex, final List<IOEvents.TransferBufferEvent> buffers, final int maxEvents) {
+        // sanity check.
+        if (buffers == null)
+            throw new IllegalArgumentException("buffers == null");
+        if (maxEvents <= 0)
+            throw new IllegalArgumentException("maxEvents <= 0");
+
+        if (activeGates.get(gateIndex).isEmpty())
+            return 0;
+
+        final int events = inputGates.get(gateIndex).getInputQueue().drainTo(batchEvents, maxEvents);
+
+        processBatchEvents(gateIndex, buffers);
+        return events;
+    }
+
+    /**
+     * @return
+     * @throws InterruptedException
+     */
+    public IOEvents.TransferBufferEvent absorbAny() throws InterruptedException {
+        if (inputGates == null) {
+            throw new IllegalStateException("Task has no input gates.");
+        }
+
+        final int numGates = inputGates.size();
+        long remainingNanos = TimeUnit.SECONDS.toNanos(ABSORB_TIMEOUT);
+        final long deadline = System.nanoTime() + remainingNanos;
+
+        while (!areInputsGatesExhausted) {
+            // reset before the scan, elements arriving during the scan cut the wait short.
+            gateSelector.reset();
+
+            final int offset = hasGatePriorities ? 0 : lastSelectedGate + 1;
+            for (int n = 0; n < numGates; ++n) {
+                final int gateIndex = gateScanOrder[(offset + n) % numGates];
+                if (activeGates.get(gateIndex).isEmpty()) {
+                    continue;
+                }
+
+                IOEvents.DataIOEvent event;
+                while ((event = getGateQueue(gateIndex).poll()) != null) {
+                    switch (event.type) {
+
+                        case IOEvents.DataEventType.DATA_EVENT_SOURCE_EXHAUSTED:
+                            handleSourceExhausted(gateIndex, event);
+                            break;
+
+                        case IOEvents.DataEventType.DATA_EVENT_OUTPUT_GATE_CLOSE_ACK:
+                            handleGateCloseAck(gateIndex, event);
+                            break;
+
+                        // data event -> absorb
+                        default:
+                            lastSelectedGate = hasGatePriorities ? lastSelectedGate : (offset + n) % numGates;
+                            return (IOEvents.TransferBufferEvent) event;
+                    }
+
+                    if (activeGates.get(gateIndex).isEmpty()) {
+                        break;
+                    }
+                }
+            }
+
+            if (areInputsGatesExhausted) {
+                break;
+            }
+
+            remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                LOG.warn("No buffer received on any gate within " + ABSORB_TIMEOUT + " seconds");
+                return null;
+            }
+            gateSelector.await(remainingNanos);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param gateIndex
+     * @param priority
+     */
+    public void setGatePriority(int gateIndex, int priority) {
+        if (inputGates == null) {
+            throw new IllegalStateException("Task has no input gates.");
+        }
+
+        gatePriorities[gateIndex] = priority;
+        hasGatePriorities = true;
+
+        // stable sort of the gate indexes by descending priority.
+        final Integer[] order = new Integer[gatePriorities.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer a, final Integer b) {
+                return Integer.compare(gatePriorities[b], gatePriorities[a]);
+            }
+        });
+        for (int i = 0; i < order.length; ++i) {
+            gateScanOrder[i] = order[i];
+        }
+    }
+
     /**
      *
      */
@@ -262,6 +409,136 @@ public final class TaskDataConsumer implements DataConsumer {
     // Private Methods.
     // ---------------------------------------------------
 
+    /**
+     * Moves the buffers of the pending batch into the list. Control events only update the channel
+     * states, the gate states are derived once per batch.
+     * 
+     * @param gateIndex
+     * @param buffers
+     * @return true, if the batch contained the last close acknowledgement of the gate
+     */
+    private boolean processBatchEvents(final int gateIndex, final List<IOEvents.TransferBufferEvent> buffers) {
+        boolean hasExhaustedEvents = false, hasCloseAckEvents = false;
+        for (final IOEvents.DataIOEvent event : batchEvents) {
+            switch (event.type) {
+
+                case IOEvents.DataEventType.DATA_EVENT_SOURCE_EXHAUSTED:
+                    removeExhaustedChannel(gateIndex, event);
+                    hasExhaustedEvents = true;
+                    break;
+
+                case IOEvents.DataEventType.DATA_EVENT_OUTPUT_GATE_CLOSE_ACK:
+                    markClosedChannel(gateIndex, event);
+                    hasCloseAckEvents = true;
+                    break;
+
+                // data event -> absorb
+                default:
+                    buffers.add((IOEvents.TransferBufferEvent) event);
+                    break;
+            }
+        }
+        batchEvents.clear();
+
+        if (hasExhaustedEvents) {
+            updateInputGatesExhausted();
+        }
+        return hasCloseAckEvents && updateGateClosed(gateIndex);
+    }
+
+    /**
+     * @param gateIndex
+     * @param event
+     * @return true, if all channels of the gate are exhausted
+     */
+    private boolean handleSourceExhausted(final int gateIndex, final IOEvents.DataIOEvent event) {
+        removeExhaustedChannel(gateIndex, event);
+        updateInputGatesExhausted();
+        return activeGates.get(gateIndex).isEmpty();
+    }
+
+    /**
+     * @param gateIndex
+     * @param event
+     * @return true, if all channels of the gate acknowledged the close
+     */
+    private boolean handleGateCloseAck(final int gateIndex, final IOEvents.DataIOEvent event) {
+        markClosedChannel(gateIndex, event);
+        return updateGateClosed(gateIndex);
+    }
+
+    /**
+     * @param gateIndex
+     * @param event
+     */
+    private void removeExhaustedChannel(final int gateIndex, final IOEvents.DataIOEvent event) {
+        if (!exhaustedEvents.containsKey(gateIndex)) {
+            exhaustedEvents.put(gateIndex, 1L);
+        } else {
+            exhaustedEvents.put(gateIndex, exhaustedEvents.get(gateIndex) + 1);
+        }
+
+        if (!activeGates.get(gateIndex).remove(event.srcTaskID))
+            throw new IllegalStateException();
+    }
+
+    /**
+     * Check if all gates are exhausted.
+     */
+    private void updateInputGatesExhausted() {
+        boolean isExhausted = true;
+        for (final Set<UUID> acs : activeGates) {
+            isExhausted &= acs.isEmpty();
+        }
+        areInputsGatesExhausted = isExhausted;
+    }
+
+    /**
+     * @param gateIndex
+     * @param event
+     */
+    private void markClosedChannel(final int gateIndex, final IOEvents.DataIOEvent event) {
+        final Map<UUID, Boolean> closedChannels = closedGates.get(gateIndex);
+
+        if (!closedChannels.containsKey(event.srcTaskID))
+            throw new IllegalStateException();
+
+        closedChannels.put(event.srcTaskID, true);
+    }
+
+    /**
+     * @param gateIndex
+     * @return true, if all channels of the gate acknowledged the close
+     */
+    private boolean updateGateClosed(final int gateIndex) {
+        boolean allClosed = true;
+        for (boolean closed : closedGates.get(gateIndex).values()) {
+            allClosed &= closed;
+        }
+
+        if (allClosed) {
+            gateCloseFinished.get(gateIndex).set(true);
+        }
+        return allClosed;
+    }
+
+    /**
+     * Returns the cached inbound queue of the gate. On first access the gate selector is registered
+     * as observer of the queue.
+     * 
+     * @param gateIndex
+     * @return
+     */
+    private BufferQueue<IOEvents.DataIOEvent> getGateQueue(final int gateIndex) {
+        BufferQueue<IOEvents.DataIOEvent> queue = gateQueues.get(gateIndex);
+        if (queue == null) {
+            queue = driverContext.queueManager.getInboundQueue(gateIndex);
+            queue.registerObserver(gateSelector);
+            gateQueues.set(gateIndex, queue);
+        }
+        return queue;
+    }
+
     /**
      * Create the output gates from the binding descriptor.
      * 
@@ -324,6 +601,63 @@ public final class TaskDataConsumer implements DataConsumer {
     // Inner Classes.
     // ---------------------------------------------------
 
+    /**
+     * Wakes up a consumer waiting in {@link #absorbAny()} when any of the gate queues receives an
+     * element. The lock is only taken if the consumer is actually waiting.
+     */
+    private static final class GateSelector implements BufferQueue.QueueObserver {
+
+        private final Lock lock = new ReentrantLock();
+
+        private final Condition elementAvailable = lock.newCondition();
+
+        private volatile boolean signaled = false;
+
+        private volatile boolean waiting = false;
+
+        public void reset() {
+            signaled = false;
+        }
+
+        public void await(final long nanos) throws InterruptedException {
+            lock.lock();
+            try {
+                waiting = true;
+                if (!signaled) {
+                    elementAvailable.awaitNanos(nanos);
+                }
+            } finally {
+                waiting = false;
+                lock.unlock();
+            }
+        }
+
+        private void signal() {
+            signaled = true;
+            if (waiting) {
+                lock.lock();
+                try {
+                    elementAvailable.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public void signalNotFull() {}
+
+        @Override
+        public void signalNotEmpty() {
+            signal();
+        }
+
+        @Override
+        public void signalNewElement() {
+            signal();
+        }
+    }
+
     private final class ConsumerEventHandler extends EventHandler {
 
         @Handle(event = IOEvents.DataIOEvent.class, type = IOEvents.DataEventType.DATA_EVENT_INPUT_CHANNEL_CONNECTED)
@@ -1,6 +1,7 @@
 package de.tuberlin.aura.taskmanager;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,26 +48,76 @@ public final class TaskDataProducer implements DataProducer {
 
     private final IAllocator outputAllocator;
 
+    /**
+     * Per output gate, null if the consumers were deployed with this task, otherwise open until
+     * all channels of the gate are connected.
+     */
+    private final CountDownLatch[] lazyOutputGateLatches;
+
+    /**
+     * The lazy output gates whose consumers were requested, guarded by this.
+     */
+    private final boolean[] requestedOutputGates;
+
+    /**
+     * The lazy output gates whose channels are connecting, only accessed by the dispatcher.
+     */
+    private final boolean[] connectingOutputGates;
+
+    /**
+     * The output gates with a channel that could not be connected.
+     */
+    private final boolean[] failedOutputGates;
+
+    private boolean isOutputsConnected = false;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
 
     public TaskDataProducer(final TaskDriverContext driverContext, final IAllocator outputAllocator) {
+        this(driverContext, outputAllocator, Collections.<Integer>emptyList());
+    }
+
+    /**
+     * @param driverContext
+     * @param outputAllocator
+     * @param lazyOutputGates The output gates that are connected when the consumers are deployed on
+     *        demand.
+     */
+    public TaskDataProducer(final TaskDriverContext driverContext, final IAllocator outputAllocator, final List<Integer> lazyOutputGates) {
         // sanity check.
         if (driverContext == null)
             throw new IllegalArgumentException("driverContext == null");
         if (outputAllocator == null)
             throw new IllegalArgumentException("outputAllocator == null");
+        if (lazyOutputGates == null)
+            throw new IllegalArgumentException("lazyOutputGates == null");
 
         this.driverContext = driverContext;
 
         this.outputAllocator = outputAllocator;
 
+        final int numOfOutputGates = driverContext.taskBindingDescriptor.outputGateBindings.size();
+
+        this.lazyOutputGateLatches = new CountDownLatch[numOfOutputGates];
+
+        for (final int gateIndex : lazyOutputGates)
+            lazyOutputGateLatches[gateIndex] = new CountDownLatch(1);
+
+        this.requestedOutputGates = new boolean[numOfOutputGates];
+
+        this.connectingOutputGates = new boolean[numOfOutputGates];
+
+        this.failedOutputGates = new boolean[numOfOutputGates];
+
         // event handling.
         this.producerEventHandler = new ProducerEventHandler();
 
         driverContext.driverDispatcher.addEventListener(IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_CONNECTED, producerEventHandler);
 
+        driverContext.driverDispatcher.addEventListener(IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_FAILED, producerEventHandler);
+
         this.taskIDToGateIndex = new HashMap<>();
 
         this.channelIndexToTaskID = new HashMap<>();
@@ -76,6 +127,8 @@ public final class TaskDataProducer implements DataProducer {
         this.outputGates = createOutputGates();
 
         connectOutputDataChannels();
+
+        driverContext.driverDispatcher.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED, producerEventHandler);
     }
 
     // ---------------------------------------------------
@@ -88,6 +141,10 @@ public final class TaskDataProducer implements DataProducer {
      * @param event
      */
     public void emit(int gateIndex, int channelIndex, IOEvents.DataIOEvent event) {
+        final CountDownLatch lazyOutputGateLatch = lazyOutputGateLatches[gateIndex];
+        if (lazyOutputGateLatch != null && (lazyOutputGateLatch.getCount() > 0 || failedOutputGates[gateIndex]))
+            awaitOutputGate(gateIndex, lazyOutputGateLatch);
+
         outputGates.get(gateIndex).writeDataToChannel(channelIndex, event);
     }
 
@@ -115,7 +172,9 @@ public final class TaskDataProducer implements DataProducer {
             for (final OutputGate og : outputGates) {
                 // TODO: maybe replace with event?!
                 for (final DataWriter.ChannelWriter channelWriter : og.getAllChannelWriter()) {
-                    channelWriter.shutdown(awaitExhaustion);
+                    // lazy gates that were never written are not connected.
+                    if (channelWriter != null)
+                        channelWriter.shutdown(awaitExhaustion);
                 }
             }
         }
@@ -161,20 +220,84 @@ public final class TaskDataProducer implements DataProducer {
     // ---------------------------------------------------
 
     /**
-     *
+     * Starts the connection attempts to all output tasks whose consumers are deployed. The attempts
+     * run in parallel on the event loops, each established channel is reported by a
+     * DATA_EVENT_OUTPUT_CHANNEL_CONNECTED event to the {@link ProducerEventHandler}.
      */
     private void connectOutputDataChannels() {
-        // Connect outputs, if we have some...
-        if (driverContext.taskBindingDescriptor.outputGateBindings.size() > 0) {
-            for (final List<Descriptors.TaskDescriptor> outputGate : driverContext.taskBindingDescriptor.outputGateBindings) {
-                for (final Descriptors.TaskDescriptor outputTask : outputGate) {
-
-                    driverContext.managerContext.ioManager.connectDataChannel(driverContext.taskDescriptor.taskID,
-                                                                              outputTask.taskID,
-                                                                              outputTask.getMachineDescriptor());
-                }
+        boolean hasConnectingOutputGate = false;
+        for (int gateIndex = 0; gateIndex < lazyOutputGateLatches.length; ++gateIndex) {
+            if (lazyOutputGateLatches[gateIndex] == null) {
+                connectOutputGate(gateIndex);
+                hasConnectingOutputGate = true;
             }
         }
+
+        // only lazy output gates.
+        if (!hasConnectingOutputGate && lazyOutputGateLatches.length > 0)
+            dispatchOutputsConnected();
+    }
+
+    /**
+     * @param gateIndex
+     */
+    private void connectOutputGate(final int gateIndex) {
+        for (final Descriptors.TaskDescriptor outputTask : driverContext.taskBindingDescriptor.outputGateBindings.get(gateIndex)) {
+            driverContext.managerContext.ioManager.connectDataChannel(driverContext.taskDescriptor.taskID,
+                                                                      outputTask.taskID,
+                                                                      outputTask.getMachineDescriptor());
+        }
+    }
+
+    /**
+     * Requests the deployment of the consumers once and waits until the gate is connected or one
+     * of its channels failed.
+     * 
+     * @param gateIndex
+     * @param lazyOutputGateLatch
+     */
+    private void awaitOutputGate(final int gateIndex, final CountDownLatch lazyOutputGateLatch) {
+        requestOutputGate(gateIndex);
+        try {
+            lazyOutputGateLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the consumers of output gate " + gateIndex);
+        }
+
+        if (failedOutputGates[gateIndex])
+            throw new IllegalStateException("output gate " + gateIndex + " could not be connected");
+    }
+
+    /**
+     * @param gateIndex
+     */
+    private synchronized void requestOutputGate(final int gateIndex) {
+        if (requestedOutputGates[gateIndex])
+            return;
+
+        requestedOutputGates[gateIndex] = true;
+
+        LOG.debug("Request consumers of output gate " + gateIndex + " of task " + driverContext.taskDescriptor.name + " ["
+                + driverContext.taskDescriptor.taskID + "]");
+
+        final IOEvents.TaskControlIOEvent request = new IOEvents.TaskControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_REQUEST);
+        request.setPayload(gateIndex);
+        request.setTopologyID(driverContext.taskDescriptor.topologyID);
+        request.setTaskID(driverContext.taskDescriptor.taskID);
+
+        driverContext.managerContext.ioManager.sendEvent(driverContext.managerContext.workloadManagerMachine, request);
+    }
+
+    /**
+     * Dispatches the transition once, lazy output gates connect after it.
+     */
+    private synchronized void dispatchOutputsConnected() {
+        if (isOutputsConnected)
+            return;
+
+        isOutputsConnected = true;
+        driverContext.taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_OUTPUTS_CONNECTED));
     }
 
     /**
@@ -186,7 +309,7 @@ public final class TaskDataProducer implements DataProducer {
 
         if (driverContext.taskBindingDescriptor.outputGateBindings.size() <= 0) {
 
-            driverContext.taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_OUTPUTS_CONNECTED));
+            dispatchOutputsConnected();
 
             return null;
         }
@@ -251,14 +374,51 @@ public final class TaskDataProducer implements DataProducer {
                     allOutputChannelsPerGateConnected &= (outputGates.get(gateIndex).getChannelWriter(channelIndex++) != null);
                 }
 
-                allOutputGatesConnected &= allOutputChannelsPerGateConnected;
+                if (lazyOutputGateLatches[gateIndex] != null) {
+                    if (allOutputChannelsPerGateConnected)
+                        lazyOutputGateLatches[gateIndex].countDown();
+                } else {
+                    allOutputGatesConnected &= allOutputChannelsPerGateConnected;
+                }
                 ++gateIndex;
             }
 
             if (allOutputGatesConnected) {
                 LOG.debug("All output gates connected");
-                driverContext.taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_OUTPUTS_CONNECTED));
+                dispatchOutputsConnected();
             }
         }
+
+        @Handle(event = IOEvents.DataIOEvent.class, type = IOEvents.DataEventType.DATA_EVENT_OUTPUT_CHANNEL_FAILED)
+        private void handleTaskOutputDataChannelFailed(final IOEvents.DataIOEvent event) {
+            final int gateIndex = taskIDToGateIndex.get(event.dstTaskID);
+            if (failedOutputGates[gateIndex])
+                return;
+
+            LOG.error("Output channel of task " + driverContext.taskDescriptor.name + " [" + driverContext.taskDescriptor.taskID
+                    + "] to task [" + event.dstTaskID + "] could not be connected", (Throwable) event.getPayload());
+
+            failedOutputGates[gateIndex] = true;
+
+            // the running task that waits for a lazy gate fails itself, all other gates are
+            // connected before the task runs.
+            if (lazyOutputGateLatches[gateIndex] != null)
+                lazyOutputGateLatches[gateIndex].countDown();
+            else
+                driverContext.taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_FAIL));
+        }
+
+        @Handle(event = IOEvents.TaskControlIOEvent.class, type = IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED)
+        private void handleOutputGateDeployed(final IOEvents.TaskControlIOEvent event) {
+            final int gateIndex = (Integer) event.getPayload();
+            if (lazyOutputGateLatches[gateIndex] == null || connectingOutputGates[gateIndex])
+                return;
+
+            LOG.debug("Connect output gate " + gateIndex + " of task " + driverContext.taskDescriptor.name + " ["
+                    + driverContext.taskDescriptor.taskID + "]");
+
+            connectingOutputGates[gateIndex] = true;
+            connectOutputGate(gateIndex);
+        }
     }
 }
@@ -2,6 +2,10 @@ package de.tuberlin.aura.taskmanager;
 
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,16 +13,19 @@ import org.slf4j.LoggerFactory;
 import de.tuberlin.aura.core.common.eventsystem.EventDispatcher;
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
 import de.tuberlin.aura.core.descriptors.Descriptors;
+import de.tuberlin.aura.core.iosystem.IOConfig;
 import de.tuberlin.aura.core.iosystem.IOEvents;
 import de.tuberlin.aura.core.iosystem.QueueManager;
 import de.tuberlin.aura.core.iosystem.queues.BlockingBufferQueue;
-import de.tuberlin.aura.core.iosystem.queues.SignalSpscLinkedQueue;
+import de.tuberlin.aura.core.iosystem.queues.BufferQueue;
+import de.tuberlin.aura.core.iosystem.queues.SignalMpscArrayQueue;
+import de.tuberlin.aura.core.iosystem.queues.WaitStrategy;
 import de.tuberlin.aura.core.memory.IAllocator;
 import de.tuberlin.aura.core.task.common.*;
 import de.tuberlin.aura.core.task.common.TaskStates.TaskState;
 import de.tuberlin.aura.core.task.common.TaskStates.TaskTransition;
 import de.tuberlin.aura.core.task.usercode.UserCode;
-import de.tuberlin.aura.core.task.usercode.UserCodeImplanter;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Node;
 
 /**
  *
@@ -34,12 +41,29 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
      */
     private static final Logger LOG = LoggerFactory.getLogger(TaskDriver.class);
 
+    /**
+     * The invokeable constructors, looked up once per implanted class.
+     */
+    private static final ClassValue<Constructor<?>> INVOKEABLE_CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+
+        @Override
+        protected Constructor<?> computeValue(final Class<?> type) {
+            try {
+                return type.getConstructor(TaskDriverContext.class, DataProducer.class, DataConsumer.class, Logger.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     private final TaskManagerContext managerContext;
 
     private final Descriptors.TaskDescriptor taskDescriptor;
 
     private final Descriptors.TaskBindingDescriptor taskBindingDescriptor;
 
+    private final List<Integer> lazyOutputGates;
+
     private final QueueManager<IOEvents.DataIOEvent> queueManager;
 
     private DataProducer dataProducer;
@@ -50,8 +74,20 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
 
     private TaskInvokeable invokeable;
 
+    /**
+     * The operators fused into this task, in data flow order behind the invokeable.
+     */
+    private List<ChainableInvokeable> chainedInvokeables = Collections.emptyList();
+
     private final TaskDriverContext driverContext;
 
+    /**
+     * The buffers of the current step of a cooperative task.
+     */
+    private final List<IOEvents.TransferBufferEvent> stepBuffers = new ArrayList<>();
+
+    private volatile boolean isCooperativeRunning = false;
+
     private final StateMachine.FiniteStateMachine<TaskState, TaskTransition> taskFSM;
 
     // ---------------------------------------------------
@@ -59,8 +95,7 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
     // ---------------------------------------------------
 
     public TaskDriver(final TaskManagerContext managerContext, final Descriptors.TaskDeploymentDescriptor deploymentDescriptor) {
-        super(true, "TaskDriver-" + deploymentDescriptor.taskDescriptor.name + "-" + deploymentDescriptor.taskDescriptor.taskIndex
-                + "-EventDispatcher");
+        super(EventDispatcher.getSharedDispatchExecutor());
 
         // sanity check.
         if (managerContext == null)
@@ -74,13 +109,14 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
 
         this.taskBindingDescriptor = deploymentDescriptor.taskBindingDescriptor;
 
+        this.lazyOutputGates = deploymentDescriptor.lazyOutputGates;
+
         this.taskFSM = createTaskFSM();
-        this.taskFSM.setName("FSM-" + taskDescriptor.name + "-" + taskDescriptor.taskIndex + "-EventDispatcher");
 
         this.queueManager =
                 QueueManager.newInstance(taskDescriptor.taskID,
-                                         new BlockingBufferQueue.Factory<IOEvents.DataIOEvent>(),
-                                         new SignalSpscLinkedQueue.Factory<IOEvents.DataIOEvent>());
+                                         createInboundQueueFactory(deploymentDescriptor),
+                                         new SignalMpscArrayQueue.Factory<IOEvents.DataIOEvent>());
 
         this.driverContext = new TaskDriverContext(this, managerContext, taskDescriptor, taskBindingDescriptor, this, queueManager, taskFSM);
     }
@@ -110,13 +146,22 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
 
         driverContext.setDataConsumer(dataConsumer);
 
-        dataProducer = new TaskDataProducer(driverContext, outputAllocator);
+        dataProducer = new TaskDataProducer(driverContext, outputAllocator, lazyOutputGates);
 
         driverContext.setDataProducer(dataProducer);
 
         invokeableClazz = implantInvokeableCode(taskDescriptor.userCode);
 
-        invokeable = createInvokeable(invokeableClazz, driverContext, dataProducer, dataConsumer, LOG);
+        if (taskDescriptor.isChained()) {
+            chainedInvokeables = createChainedInvokeables();
+
+            final TaskDriverContext headContext = createOperatorContext(taskDescriptor, taskBindingDescriptor.inputGateBindings, selfBinding());
+            final DataProducer headProducer = new ChainedDataProducer(taskDescriptor.taskID, chainedInvokeables.get(0), dataProducer);
+
+            invokeable = createInvokeable(invokeableClazz, headContext, headProducer, dataConsumer, LOG);
+        } else {
+            invokeable = createInvokeable(invokeableClazz, driverContext, dataProducer, dataConsumer, LOG);
+        }
 
         if (invokeable == null)
             throw new IllegalStateException("invokeable == null");
@@ -130,15 +175,11 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
 
         try {
 
-            invokeable.create();
-
-            invokeable.open();
+            openInvokeables();
 
             invokeable.run();
 
-            invokeable.close();
-
-            invokeable.release();
+            closeInvokeables();
 
         } catch (final Throwable t) {
 
@@ -160,7 +201,11 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
     @Override
     public void teardownDriver(boolean awaitExhaustion) {
 
+        isCooperativeRunning = false;
+
         invokeable.stopInvokeable();
+        for (final ChainableInvokeable chainedInvokeable : chainedInvokeables)
+            chainedInvokeable.stopInvokeable();
 
         dataProducer.shutdownProducer(awaitExhaustion);
 
@@ -171,19 +216,164 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
         queueManager.clearInboundQueues();
     }
 
+    // ------------- Cooperative Execution ---------------
+
+    /**
+     * A task is cooperative if its invokeable processes one buffer of a single input per call and
+     * does not override the run loop.
+     */
+    @Override
+    public boolean isCooperative() {
+        try {
+            return invokeable instanceof ChainableInvokeable && taskBindingDescriptor.inputGateBindings.size() == 1
+                    && invokeableClazz.getMethod("run").getDeclaringClass() == ChainableInvokeable.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param inputObserver
+     * @return
+     */
+    @Override
+    public boolean openDriver(final BufferQueue.QueueObserver inputObserver) {
+        // sanity check.
+        if (inputObserver == null)
+            throw new IllegalArgumentException("inputObserver == null");
+
+        try {
+            openInvokeables();
+        } catch (final Throwable t) {
+            LOG.error(t.getLocalizedMessage(), t);
+            taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskTransition.TASK_TRANSITION_FAIL));
+            return false;
+        }
+
+        isCooperativeRunning = true;
+        queueManager.getInboundQueue(0).registerObserver(inputObserver);
+        return true;
+    }
+
+    /**
+     * @param maxEvents
+     * @return
+     */
+    @Override
+    public int executeDriverStep(final int maxEvents) {
+        if (!isCooperativeRunning)
+            return -1;
+
+        final ChainableInvokeable head = (ChainableInvokeable) invokeable;
+        try {
+            final int events = dataConsumer.pollBatch(0, stepBuffers, maxEvents);
+            for (final IOEvents.TransferBufferEvent event : stepBuffers)
+                head.process(event);
+            stepBuffers.clear();
+
+            if (!dataConsumer.isExhausted())
+                return events;
+
+            isCooperativeRunning = false;
+            closeInvokeables();
+
+        } catch (final Throwable t) {
+
+            isCooperativeRunning = false;
+
+            LOG.error(t.getLocalizedMessage(), t);
+
+            taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskTransition.TASK_TRANSITION_FAIL));
+
+            return -1;
+        }
+
+        taskFSM.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskTransition.TASK_TRANSITION_FINISH));
+        return -1;
+    }
+
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
     /**
+     * @throws Throwable
+     */
+    private void openInvokeables() throws Throwable {
+        invokeable.create();
+        for (final ChainableInvokeable chainedInvokeable : chainedInvokeables)
+            chainedInvokeable.create();
+
+        invokeable.open();
+        for (final ChainableInvokeable chainedInvokeable : chainedInvokeables)
+            chainedInvokeable.open();
+    }
+
+    /**
+     * An operator is closed after all operators in front of it, so it sees the end of its input.
+     * 
+     * @throws Throwable
+     */
+    private void closeInvokeables() throws Throwable {
+        invokeable.close();
+        for (final ChainableInvokeable chainedInvokeable : chainedInvokeables)
+            chainedInvokeable.close();
+
+        invokeable.release();
+        for (final ChainableInvokeable chainedInvokeable : chainedInvokeables)
+            chainedInvokeable.release();
+    }
+
+    /**
+     * Selects the inbound queue by the wait strategy of the task. Without an explicit strategy the
+     * TaskManager default for the execution type of the task is used (see
+     * {@link IOConfig#WAIT_STRATEGY_PROPERTY_PREFIX}), which is BLOCKING if not configured.
+     * 
+     * @param deploymentDescriptor
+     * @return
+     */
+    private static BufferQueue.FACTORY<IOEvents.DataIOEvent> createInboundQueueFactory(final Descriptors.TaskDeploymentDescriptor deploymentDescriptor) {
+        WaitStrategy.Type waitStrategy = deploymentDescriptor.inputWaitStrategy;
+        if (waitStrategy == null) {
+            waitStrategy = getDefaultWaitStrategy(deploymentDescriptor.executionType);
+        }
+
+        // blocking consumers keep the unbounded queue, the spinning strategies use the ring buffer.
+        if (waitStrategy == WaitStrategy.Type.BLOCKING) {
+            return new BlockingBufferQueue.Factory<>();
+        } else {
+            return new SignalMpscArrayQueue.Factory<>(IOConfig.INBOUND_QUEUE_CAPACITY, waitStrategy);
+        }
+    }
+
+    /**
+     * @param executionType
+     * @return
+     */
+    private static WaitStrategy.Type getDefaultWaitStrategy(final Node.ExecutionType executionType) {
+        final String value = System.getProperty(IOConfig.WAIT_STRATEGY_PROPERTY_PREFIX + executionType.name().toLowerCase());
+        if (value == null) {
+            return WaitStrategy.Type.BLOCKING;
+        }
+        try {
+            return WaitStrategy.Type.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown wait strategy '" + value + "' for execution type " + executionType + ", using BLOCKING");
+            return WaitStrategy.Type.BLOCKING;
+        }
+    }
+
+    /**
+     * The class is defined once per topology, all tasks of the topology share the class loader.
+     * 
      * @param userCode
      * @return
      */
     private Class<? extends TaskInvokeable> implantInvokeableCode(final UserCode userCode) {
         // Try to register the bytecode as a class in the JVM.
-        final UserCodeImplanter codeImplanter = new UserCodeImplanter(this.getClass().getClassLoader());
         @SuppressWarnings("unchecked")
-        final Class<? extends TaskInvokeable> userCodeClazz = (Class<? extends TaskInvokeable>) codeImplanter.implantUserCodeClass(userCode);
+        final Class<? extends TaskInvokeable> userCodeClazz =
+                (Class<? extends TaskInvokeable>) managerContext.userCodeCache.implantUserCodeClass(taskDescriptor.topologyID, userCode);
         // sanity check.
         if (userCodeClazz == null)
             throw new IllegalArgumentException("userCodeClazz == null");
@@ -191,6 +381,67 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
         return userCodeClazz;
     }
 
+    /**
+     * Creates the fused operators back to front, each one emits directly into the next one and the
+     * last one into the outputs of the task.
+     * 
+     * @return
+     */
+    private List<ChainableInvokeable> createChainedInvokeables() {
+        final int chainLength = taskDescriptor.chainedNames.size();
+        final ChainableInvokeable[] chain = new ChainableInvokeable[chainLength];
+
+        for (int i = chainLength - 1; i >= 0; --i) {
+            final UserCode userCode = taskDescriptor.chainedUserCodes.get(i);
+            final Class<? extends TaskInvokeable> clazz = implantInvokeableCode(userCode);
+            if (!ChainableInvokeable.class.isAssignableFrom(clazz))
+                throw new IllegalStateException(userCode.className + " is not chainable");
+
+            final Descriptors.TaskDescriptor operatorDescriptor =
+                    new Descriptors.TaskDescriptor(taskDescriptor.topologyID,
+                                                   taskDescriptor.taskID,
+                                                   taskDescriptor.taskIndex,
+                                                   taskDescriptor.chainedNames.get(i),
+                                                   userCode);
+
+            final boolean isLast = i == chainLength - 1;
+            final TaskDriverContext operatorContext =
+                    createOperatorContext(operatorDescriptor, selfBinding(), isLast ? taskBindingDescriptor.outputGateBindings : selfBinding());
+            final DataProducer operatorProducer = isLast ? dataProducer : new ChainedDataProducer(taskDescriptor.taskID, chain[i + 1], dataProducer);
+
+            chain[i] = (ChainableInvokeable) createInvokeable(clazz, operatorContext, operatorProducer, dataConsumer, LOG);
+            chain[i].markChained();
+        }
+        return Arrays.asList(chain);
+    }
+
+    /**
+     * @return A single gate with a single channel to this task, it connects the fused operators.
+     */
+    private List<List<Descriptors.TaskDescriptor>> selfBinding() {
+        return Collections.singletonList(Collections.singletonList(taskDescriptor));
+    }
+
+    /**
+     * @return The context of a fused operator, it shares the driver, queues and state machine of
+     *         this task.
+     */
+    private TaskDriverContext createOperatorContext(final Descriptors.TaskDescriptor operatorDescriptor,
+                                                    final List<List<Descriptors.TaskDescriptor>> inputGateBindings,
+                                                    final List<List<Descriptors.TaskDescriptor>> outputGateBindings) {
+
+        final Descriptors.TaskBindingDescriptor operatorBinding =
+                new Descriptors.TaskBindingDescriptor(operatorDescriptor, inputGateBindings, outputGateBindings);
+
+        final TaskDriverContext operatorContext =
+                new TaskDriverContext(this, managerContext, operatorDescriptor, operatorBinding, this, queueManager, taskFSM);
+
+        operatorContext.setAssignedExecutionUnitIndex(driverContext.getAssignedExecutionUnitIndex());
+        operatorContext.setDataConsumer(dataConsumer);
+        operatorContext.setDataProducer(dataProducer);
+        return operatorContext;
+    }
+
     /**
      * @param invokableClazz
      * @return
@@ -202,10 +453,9 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
                                             final Logger LOG) {
         try {
 
-            final Constructor<? extends TaskInvokeable> invokeableCtor =
-                    invokableClazz.getConstructor(TaskDriverContext.class, DataProducer.class, DataConsumer.class, Logger.class);
+            final Constructor<?> invokeableCtor = INVOKEABLE_CONSTRUCTORS.get(invokableClazz);
 
-            final TaskInvokeable invokeable = invokeableCtor.newInstance(driverContext, dataProducer, dataConsumer, LOG);
+            final TaskInvokeable invokeable = (TaskInvokeable) invokeableCtor.newInstance(driverContext, dataProducer, dataConsumer, LOG);
 
             return invokeable;
 
@@ -227,8 +477,12 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
                               .addTransition(TaskTransition.TASK_TRANSITION_INPUTS_CONNECTED, TaskState.TASK_STATE_INPUTS_CONNECTED)
                               .and()
                               .addTransition(TaskTransition.TASK_TRANSITION_OUTPUTS_CONNECTED, TaskState.TASK_STATE_OUTPUTS_CONNECTED)
+                              .and()
+                              .addTransition(TaskTransition.TASK_TRANSITION_FAIL, TaskState.TASK_STATE_FAILURE)
                               .defineState(TaskState.TASK_STATE_INPUTS_CONNECTED)
                               .addTransition(TaskTransition.TASK_TRANSITION_OUTPUTS_CONNECTED, TaskState.TASK_STATE_READY)
+                              .and()
+                              .addTransition(TaskTransition.TASK_TRANSITION_FAIL, TaskState.TASK_STATE_FAILURE)
                               .defineState(TaskState.TASK_STATE_OUTPUTS_CONNECTED)
                               .addTransition(TaskTransition.TASK_TRANSITION_INPUTS_CONNECTED, TaskState.TASK_STATE_READY)
                               .defineState(TaskState.TASK_STATE_READY)
@@ -264,14 +518,7 @@ public final class TaskDriver extends EventDispatcher implements TaskDriverLifec
                     LOG.info("CHANGE STATE OF TASK " + taskDescriptor.name + " [" + taskDescriptor.taskID + "] FROM " + previousState + " TO "
                             + state + "  [" + transition.toString() + "]");
 
-                    final IOEvents.TaskControlIOEvent stateUpdate =
-                            new IOEvents.TaskControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE);
-
-                    stateUpdate.setPayload(state);
-                    stateUpdate.setTaskID(taskDescriptor.taskID);
-                    stateUpdate.setTopologyID(taskDescriptor.topologyID);
-
-                    managerContext.ioManager.sendEvent(managerContext.workloadManagerMachine, stateUpdate);
+                    managerContext.stateAggregator.reportState(taskDescriptor.topologyID, taskDescriptor.taskID, state);
                 } catch (Throwable t) {
                     LOG.error(t.getLocalizedMessage(), t);
                     throw t;
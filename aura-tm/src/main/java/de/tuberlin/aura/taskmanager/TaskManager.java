@@ -1,23 +1,34 @@
 package de.tuberlin.aura.taskmanager;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import de.tuberlin.aura.core.common.eventsystem.Event;
 import de.tuberlin.aura.core.common.eventsystem.EventHandler;
 import de.tuberlin.aura.core.common.eventsystem.IEventHandler;
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
 import de.tuberlin.aura.core.descriptors.DescriptorFactory;
 import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.descriptors.Descriptors.ResourceDescriptor;
 import de.tuberlin.aura.core.descriptors.Descriptors.TaskDeploymentDescriptor;
 import de.tuberlin.aura.core.iosystem.IOEvents;
 import de.tuberlin.aura.core.iosystem.IOEvents.DataEventType;
@@ -26,10 +37,14 @@ import de.tuberlin.aura.core.iosystem.IOManager;
 import de.tuberlin.aura.core.iosystem.RPCManager;
 import de.tuberlin.aura.core.memory.BufferMemoryManager;
 import de.tuberlin.aura.core.memory.IBufferMemoryManager;
+import de.tuberlin.aura.core.protocols.TM2WMProtocol;
 import de.tuberlin.aura.core.protocols.WM2TMProtocol;
 import de.tuberlin.aura.core.task.common.TaskDriverContext;
 import de.tuberlin.aura.core.task.common.TaskExecutionManager;
 import de.tuberlin.aura.core.task.common.TaskManagerContext;
+import de.tuberlin.aura.core.task.common.TaskStateAggregator;
+import de.tuberlin.aura.core.task.usercode.UserCode;
+import de.tuberlin.aura.core.task.usercode.UserCodeCache;
 import de.tuberlin.aura.core.zookeeper.ZookeeperConnectionWatcher;
 import de.tuberlin.aura.core.zookeeper.ZookeeperHelper;
 
@@ -49,8 +64,18 @@ public final class TaskManager implements WM2TMProtocol {
 
     private final TaskExecutionManager executionManager;
 
+    /**
+     * The interval in ms the advertised resources are refreshed, set with
+     * -Daura.taskmanager.heartbeatinterval.
+     */
+    private static final long HEARTBEAT_INTERVAL = Long.getLong("aura.taskmanager.heartbeatinterval", 500);
+
+    private final ScheduledExecutorService heartbeatExecutor;
+
     private final ZooKeeper zookeeper;
 
+    private final String zkResourceDir;
+
     private final TaskManagerContext managerContext;
 
     private final MachineDescriptor workloadManagerMachine;
@@ -110,15 +135,23 @@ public final class TaskManager implements WM2TMProtocol {
 
         this.ioManager.addEventListener(DataEventType.DATA_EVENT_OUTPUT_CHANNEL_CONNECTED, ioHandler);
 
+        this.ioManager.addEventListener(DataEventType.DATA_EVENT_OUTPUT_CHANNEL_FAILED, ioHandler);
+
         this.ioManager.addEventListener(DataEventType.DATA_EVENT_OUTPUT_GATE_OPEN, ioHandler);
 
         this.ioManager.addEventListener(DataEventType.DATA_EVENT_OUTPUT_GATE_CLOSE, ioHandler);
 
         this.ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_TRANSITION, ioHandler);
 
+        this.ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED, ioHandler);
+
         // setup zookeeper.
+        this.zkResourceDir = ZookeeperHelper.ZOOKEEPER_RESOURCES + "/" + ownMachine.uid.toString();
+
         this.zookeeper = setupZookeeper(zookeeperServer);
 
+        this.heartbeatExecutor = startHeartbeat();
+
         this.workloadManagerMachine =
                 (MachineDescriptor) ZookeeperHelper.readFromZookeeper(this.zookeeper, ZookeeperHelper.ZOOKEEPER_WORKLOADMANAGER);
 
@@ -132,7 +165,13 @@ public final class TaskManager implements WM2TMProtocol {
         ioManager.connectMessageChannelBlocking(workloadManagerMachine);
 
         // setup task manager context.
-        this.managerContext = new TaskManagerContext(ioManager, rpcManager, executionManager, workloadManagerMachine, ownMachine);
+        this.managerContext = new TaskManagerContext(ioManager,
+                                                     rpcManager,
+                                                     executionManager,
+                                                     new TaskStateAggregator(ioManager, workloadManagerMachine),
+                                                     new UserCodeCache(TaskManager.class.getClassLoader()),
+                                                     workloadManagerMachine,
+                                                     ownMachine);
     }
 
     // ---------------------------------------------------
@@ -143,28 +182,87 @@ public final class TaskManager implements WM2TMProtocol {
      * @param taskDeploymentDescriptor
      */
     @Override
-    public void installTask(final TaskDeploymentDescriptor taskDeploymentDescriptor) {
+    public ListenableFuture<Void> installTask(final TaskDeploymentDescriptor taskDeploymentDescriptor) {
         // sanity check.
         if (taskDeploymentDescriptor == null)
             throw new IllegalArgumentException("taskDescriptor == null");
 
-        final TaskDriverContext taskDriverCtx = registerTask(taskDeploymentDescriptor);
-        executionManager.scheduleTask(taskDriverCtx);
+        return installTasks(Collections.singletonList(taskDeploymentDescriptor), Collections.<UserCode>emptyList());
     }
 
     /**
+     * Installs the tasks once all their user code is available, missing code is fetched from the
+     * workload manager first. Tasks waiting for fetched code are installed on the RPC callee pool,
+     * not on the thread that received the response.
+     * 
      * @param deploymentDescriptors
+     * @param userCodes
      */
     @Override
-    public void installTasks(final List<TaskDeploymentDescriptor> deploymentDescriptors) {
+    public ListenableFuture<Void> installTasks(final List<TaskDeploymentDescriptor> deploymentDescriptors, final List<UserCode> userCodes) {
         // sanity check.
         if (deploymentDescriptors == null)
             throw new IllegalArgumentException("deploymentDescriptors == null");
+        if (userCodes == null)
+            throw new IllegalArgumentException("userCodes == null");
 
-        for (final TaskDeploymentDescriptor tdd : deploymentDescriptors) {
-            final TaskDriverContext taskDriverCtx = registerTask(tdd);
-            executionManager.scheduleTask(taskDriverCtx);
+        managerContext.userCodeCache.storeUserCodes(userCodes);
+
+        final Map<UUID, List<String>> missingCodeHashes = registerUserCodes(deploymentDescriptors, userCodes);
+        if (missingCodeHashes.isEmpty()) {
+            deployTasks(deploymentDescriptors);
+            return Futures.immediateFuture(null);
+        }
+
+        final TM2WMProtocol wmProtocol = rpcManager.getRPCProtocolProxy(TM2WMProtocol.class, workloadManagerMachine);
+        final List<ListenableFuture<List<UserCode>>> fetches = new ArrayList<>();
+        for (final Map.Entry<UUID, List<String>> entry : missingCodeHashes.entrySet()) {
+            LOG.debug("Fetch user code " + entry.getValue() + " of topology [" + entry.getKey() + "]");
+            fetches.add(wmProtocol.fetchUserCodes(entry.getKey(), entry.getValue()));
         }
+
+        return Futures.transform(Futures.allAsList(fetches), new Function<List<List<UserCode>>, Void>() {
+
+            @Override
+            public Void apply(final List<List<UserCode>> fetchedCodes) {
+                final List<UserCode> availableCodes = new ArrayList<>(userCodes);
+                for (final List<UserCode> codes : fetchedCodes) {
+                    managerContext.userCodeCache.storeUserCodes(codes);
+                    availableCodes.addAll(codes);
+                }
+
+                synchronized (TaskManager.this) {
+                    final Map<UUID, List<String>> unavailableCodeHashes = registerUserCodes(deploymentDescriptors, availableCodes);
+                    if (!unavailableCodeHashes.isEmpty())
+                        throw new IllegalStateException("user code " + unavailableCodeHashes + " is not available");
+
+                    deployTasks(deploymentDescriptors);
+                }
+                return null;
+            }
+        }, rpcManager.getCalleeExecutor());
+    }
+
+    /**
+     * @param topologyID
+     */
+    @Override
+    public ListenableFuture<Void> releaseTopology(final UUID topologyID) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+
+        managerContext.userCodeCache.releaseTopology(topologyID);
+        return Futures.immediateFuture(null);
+    }
+
+    /**
+     * Stops the heartbeat and sends the task state updates that are still pending.
+     */
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+
+        managerContext.stateAggregator.shutdown();
     }
 
     // ---------------------------------------------------
@@ -186,6 +284,8 @@ public final class TaskManager implements WM2TMProtocol {
                     }));
 
             ZookeeperHelper.initDirectories(zookeeper);
+            // advertise the resources before the task manager becomes visible.
+            ZookeeperHelper.storeInZookeeper(zookeeper, zkResourceDir, createResourceDescriptor());
             final String zkTaskManagerDir = ZookeeperHelper.ZOOKEEPER_TASKMANAGERS + "/" + ownMachine.uid.toString();
             ZookeeperHelper.storeInZookeeper(zookeeper, zkTaskManagerDir, ownMachine);
 
@@ -196,6 +296,48 @@ public final class TaskManager implements WM2TMProtocol {
         }
     }
 
+    /**
+     * @return The currently available execution slots and buffer memory.
+     */
+    private ResourceDescriptor createResourceDescriptor() {
+        return new ResourceDescriptor(ownMachine.uid,
+                                      executionManager.getNumberOfSlots(),
+                                      executionManager.getNumberOfBusySlots(),
+                                      bufferMemoryManager.getBufferMemory());
+    }
+
+    /**
+     * Periodically publishes the resources in ZooKeeper, if the number of busy slots changed.
+     * 
+     * @return The executor running the heartbeat.
+     */
+    private ScheduledExecutorService startHeartbeat() {
+        final ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("TaskManagerHeartbeat")
+                                                                                     .setDaemon(true)
+                                                                                     .build());
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            private int publishedBusySlots = 0;
+
+            @Override
+            public void run() {
+                try {
+                    final ResourceDescriptor resources = createResourceDescriptor();
+                    if (resources.numOfBusySlots != publishedBusySlots) {
+                        ZookeeperHelper.updateInZookeeper(zookeeper, zkResourceDir, resources);
+                        publishedBusySlots = resources.numOfBusySlots;
+                    }
+                } catch (Throwable t) {
+                    LOG.error(t.getLocalizedMessage(), t);
+                }
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+
+        return executor;
+    }
+
     /**
      * @param machineDescriptor
      * @return
@@ -205,6 +347,56 @@ public final class TaskManager implements WM2TMProtocol {
         return ioManager;
     }
 
+    /**
+     * Resolves the user code the tasks refer to, from the available code or the cache.
+     * 
+     * @param deploymentDescriptors
+     * @param availableCodes
+     * @return The hashes of the missing code per topology.
+     */
+    private Map<UUID, List<String>> registerUserCodes(final List<TaskDeploymentDescriptor> deploymentDescriptors,
+                                                      final List<UserCode> availableCodes) {
+
+        final Map<String, UserCode> availableCodeMap = new HashMap<>();
+        for (final UserCode userCode : availableCodes) {
+            availableCodeMap.put(userCode.codeHash, userCode);
+        }
+
+        final Map<UUID, List<UserCode>> referencedCodes = new HashMap<>();
+        for (final TaskDeploymentDescriptor tdd : deploymentDescriptors) {
+            List<UserCode> codes = referencedCodes.get(tdd.taskDescriptor.topologyID);
+            if (codes == null) {
+                codes = new ArrayList<>();
+                referencedCodes.put(tdd.taskDescriptor.topologyID, codes);
+            }
+
+            final List<UserCode> taskCodes = new ArrayList<>(tdd.taskDescriptor.chainedUserCodes);
+            taskCodes.add(tdd.taskDescriptor.userCode);
+            for (final UserCode userCode : taskCodes) {
+                final UserCode availableCode = availableCodeMap.get(userCode.codeHash);
+                codes.add(availableCode != null ? availableCode : userCode);
+            }
+        }
+
+        final Map<UUID, List<String>> missingCodeHashes = new HashMap<>();
+        for (final Map.Entry<UUID, List<UserCode>> entry : referencedCodes.entrySet()) {
+            final List<String> codeHashes = managerContext.userCodeCache.registerUserCodes(entry.getKey(), entry.getValue());
+            if (!codeHashes.isEmpty())
+                missingCodeHashes.put(entry.getKey(), codeHashes);
+        }
+        return missingCodeHashes;
+    }
+
+    /**
+     * @param deploymentDescriptors
+     */
+    private void deployTasks(final List<TaskDeploymentDescriptor> deploymentDescriptors) {
+        for (final TaskDeploymentDescriptor tdd : deploymentDescriptors) {
+            final TaskDriverContext taskDriverCtx = registerTask(tdd);
+            executionManager.scheduleTask(taskDriverCtx);
+        }
+    }
+
     /**
      * @param taskDeploymentDescriptor
      * @return
@@ -252,8 +444,10 @@ public final class TaskManager implements WM2TMProtocol {
         if (!taskList.remove(taskDriverCtx))
             throw new IllegalStateException();
 
-        if (taskList.size() == 0)
+        // the class loader is kept for tasks of the topology deployed later on.
+        if (taskList.size() == 0) {
             deployedTopologyTasks.remove(taskDriverCtx.taskDescriptor.topologyID);
+        }
 
         LOG.trace("Shutdown event dispatchers");
         taskDriverCtx.driverDispatcher.shutdown();
@@ -297,6 +491,13 @@ public final class TaskManager implements WM2TMProtocol {
             deployedTasks.get(event.srcTaskID).driverDispatcher.dispatchEvent(event);
         }
 
+        @Handle(event = DataIOEvent.class, type = DataEventType.DATA_EVENT_OUTPUT_CHANNEL_FAILED)
+        private void handleDataOutputChannelFailedEvent(final DataIOEvent event) {
+            final TaskDriverContext taskDriverCtx = deployedTasks.get(event.srcTaskID);
+            if (taskDriverCtx != null)
+                taskDriverCtx.driverDispatcher.dispatchEvent(event);
+        }
+
         @Handle(event = DataIOEvent.class, type = DataEventType.DATA_EVENT_INPUT_CHANNEL_CONNECTED)
         private void handleDataInputChannelEvent(final DataIOEvent event) {
             deployedTasks.get(event.dstTaskID).driverDispatcher.dispatchEvent(event);
@@ -316,6 +517,13 @@ public final class TaskManager implements WM2TMProtocol {
         private void handleTaskStateTransitionEvent(final IOEvents.TaskControlIOEvent event) {
             dispatchRemoteTaskTransition(event);
         }
+
+        @Handle(event = IOEvents.TaskControlIOEvent.class, type = IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED)
+        private void handleOutputGateDeployedEvent(final IOEvents.TaskControlIOEvent event) {
+            final TaskDriverContext taskDriverCtx = deployedTasks.get(event.getTaskID());
+            if (taskDriverCtx != null)
+                taskDriverCtx.driverDispatcher.dispatchEvent(event);
+        }
     }
 
     // ---------------------------------------------------
@@ -350,7 +558,14 @@ public final class TaskManager implements WM2TMProtocol {
             System.exit(1);
         }
 
-        long start = System.nanoTime();
-        new TaskManager(zkServer, dataPort, controlPort);
+        final TaskManager taskManager = new TaskManager(zkServer, dataPort, controlPort);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                taskManager.shutdown();
+            }
+        }, "TaskManagerShutdown"));
     }
 }
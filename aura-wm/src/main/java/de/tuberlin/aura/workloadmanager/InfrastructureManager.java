@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import net.jcip.annotations.NotThreadSafe;
@@ -19,6 +20,7 @@ import de.tuberlin.aura.core.common.eventsystem.Event;
 import de.tuberlin.aura.core.common.eventsystem.EventDispatcher;
 import de.tuberlin.aura.core.common.eventsystem.IEventHandler;
 import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.descriptors.Descriptors.ResourceDescriptor;
 import de.tuberlin.aura.core.zookeeper.ZookeeperConnectionWatcher;
 import de.tuberlin.aura.core.zookeeper.ZookeeperHelper;
 import de.tuberlin.aura.workloadmanager.spi.IInfrastructureManager;
@@ -55,7 +57,22 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
 
     private final MachineDescriptor wmMachine;
 
-    private int machineIdx;
+    /**
+     * The resources advertised by the task managers per machine id.
+     */
+    private final Map<UUID, ResourceDescriptor> resourceMap;
+
+    private final ZkResourceWatcher resourceWatcher;
+
+    /**
+     * Number of slots reserved by running topologies per machine id.
+     */
+    private final Map<UUID, Integer> reservedSlotMap;
+
+    /**
+     * Number of reserved slots per machine id of each running topology.
+     */
+    private final Map<UUID, Map<UUID, Integer>> topologyReservationMap;
 
     // ---------------------------------------------------
     // Constructors.
@@ -77,6 +94,14 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
 
         this.nodeMap = new HashMap<>();
 
+        this.resourceMap = new HashMap<>();
+
+        this.resourceWatcher = new ZkResourceWatcher();
+
+        this.reservedSlotMap = new HashMap<>();
+
+        this.topologyReservationMap = new HashMap<>();
+
         try {
 
             final IEventHandler eh = new IEventHandler() {
@@ -110,6 +135,7 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
                     final MachineDescriptor descriptor =
                             (MachineDescriptor) ZookeeperHelper.readFromZookeeper(zookeeper, ZookeeperHelper.ZOOKEEPER_TASKMANAGERS + "/" + node);
                     this.nodeMap.put(descriptor.uid, descriptor);
+                    readResources(descriptor.uid);
                 }
             }
         } catch (IOException | KeeperException e) {
@@ -135,17 +161,157 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
         return INSTANCE;
     }
 
-    public synchronized MachineDescriptor getNextMachine() {
-        final List<MachineDescriptor> workerMachines = new ArrayList<>(nodeMap.values());
-        final MachineDescriptor md = workerMachines.get(machineIdx);
-        machineIdx = (++machineIdx % workerMachines.size());
-        return md;
-    }
-
     public synchronized int getNumberOfMachine() {
         return nodeMap.values().size();
     }
 
+    @Override
+    public synchronized List<MachineDescriptor> getMachines() {
+        return new ArrayList<>(nodeMap.values());
+    }
+
+    @Override
+    public synchronized int getNumberOfReservedSlots(final UUID machineID) {
+        // sanity check.
+        if (machineID == null)
+            throw new IllegalArgumentException("machineID == null");
+
+        final Integer reservedSlots = reservedSlotMap.get(machineID);
+        return reservedSlots == null ? 0 : reservedSlots;
+    }
+
+    @Override
+    public synchronized int getNumberOfFreeSlots(final MachineDescriptor machine) {
+        // sanity check.
+        if (machine == null)
+            throw new IllegalArgumentException("machine == null");
+
+        final ResourceDescriptor resources = resourceMap.get(machine.uid);
+        if (resources == null)
+            return machine.hardware.cpuCores - getNumberOfReservedSlots(machine.uid);
+
+        // slots may still be busy with tasks whose final state has not arrived yet.
+        return resources.numOfSlots - Math.max(getNumberOfReservedSlots(machine.uid), resources.numOfBusySlots);
+    }
+
+    @Override
+    public synchronized ResourceDescriptor getResources(final UUID machineID) {
+        // sanity check.
+        if (machineID == null)
+            throw new IllegalArgumentException("machineID == null");
+
+        return resourceMap.get(machineID);
+    }
+
+    /**
+     * Adds to the slots the topology already reserved, a topology deployed on demand reserves the
+     * slots of each stage when it is deployed.
+     * 
+     * @param topologyID
+     * @param reservedSlots The number of slots of the topology per machine id.
+     */
+    public synchronized void reserveSlots(final UUID topologyID, final Map<UUID, Integer> reservedSlots) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+        if (reservedSlots == null)
+            throw new IllegalArgumentException("reservedSlots == null");
+
+        Map<UUID, Integer> topologySlots = topologyReservationMap.get(topologyID);
+        if (topologySlots == null) {
+            topologySlots = new HashMap<>();
+            topologyReservationMap.put(topologyID, topologySlots);
+        }
+
+        for (final Map.Entry<UUID, Integer> entry : reservedSlots.entrySet()) {
+            final Integer slots = topologySlots.get(entry.getKey());
+            topologySlots.put(entry.getKey(), slots == null ? entry.getValue() : slots + entry.getValue());
+            reservedSlotMap.put(entry.getKey(), getNumberOfReservedSlots(entry.getKey()) + entry.getValue());
+        }
+    }
+
+    /**
+     * Releases the slots of a finished stage of the topology.
+     * 
+     * @param topologyID
+     * @param releasedSlots The number of slots per machine id.
+     */
+    public synchronized void releaseSlots(final UUID topologyID, final Map<UUID, Integer> releasedSlots) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+        if (releasedSlots == null)
+            throw new IllegalArgumentException("releasedSlots == null");
+
+        final Map<UUID, Integer> topologySlots = topologyReservationMap.get(topologyID);
+        if (topologySlots == null)
+            return;
+
+        for (final Map.Entry<UUID, Integer> entry : releasedSlots.entrySet()) {
+            final Integer slots = topologySlots.get(entry.getKey());
+            if (slots == null)
+                continue;
+
+            // never release more than the topology reserved.
+            final int released = Math.min(slots, entry.getValue());
+            if (slots > released)
+                topologySlots.put(entry.getKey(), slots - released);
+            else
+                topologySlots.remove(entry.getKey());
+
+            final int remainingSlots = getNumberOfReservedSlots(entry.getKey()) - released;
+            if (remainingSlots > 0)
+                reservedSlotMap.put(entry.getKey(), remainingSlots);
+            else
+                reservedSlotMap.remove(entry.getKey());
+        }
+    }
+
+    /**
+     * @param topologyID
+     */
+    public synchronized void releaseSlots(final UUID topologyID) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+
+        final Map<UUID, Integer> reservedSlots = topologyReservationMap.remove(topologyID);
+        if (reservedSlots == null)
+            return;
+
+        for (final Map.Entry<UUID, Integer> entry : reservedSlots.entrySet()) {
+            final int remainingSlots = getNumberOfReservedSlots(entry.getKey()) - entry.getValue();
+            if (remainingSlots > 0)
+                reservedSlotMap.put(entry.getKey(), remainingSlots);
+            else
+                reservedSlotMap.remove(entry.getKey());
+        }
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Reads the advertised resources of a task manager and watches them for changes.
+     * 
+     * @param machineID
+     */
+    private void readResources(final UUID machineID) {
+        try {
+            final ResourceDescriptor resources =
+                    (ResourceDescriptor) ZookeeperHelper.readFromZookeeper(zookeeper,
+                                                                           ZookeeperHelper.ZOOKEEPER_RESOURCES + "/" + machineID,
+                                                                           resourceWatcher);
+            synchronized (this) {
+                if (resources != null)
+                    resourceMap.put(machineID, resources);
+            }
+        } catch (IllegalStateException e) {
+            LOG.warn("no resources advertised for machine " + machineID, e);
+        }
+    }
+
     // ---------------------------------------------------
     // Inner Classes.
     // ---------------------------------------------------
@@ -171,6 +337,7 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
                         if (!nodeMap.containsKey(machineID)) {
                             newMachine = (MachineDescriptor) ZookeeperHelper.readFromZookeeper(zookeeper, event.getPath() + "/" + node);
                             nodeMap.put(machineID, newMachine);
+                            readResources(machineID);
                         }
                     }
 
@@ -188,6 +355,10 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
 
                     final MachineDescriptor removedMachine = nodeMap.remove(machineID);
 
+                    synchronized (InfrastructureManager.this) {
+                        resourceMap.remove(machineID);
+                    }
+
                     if (removedMachine == null)
                         LOG.error("machine with uid = " + machineID + " can not be removed");
                     else
@@ -202,4 +373,22 @@ public class InfrastructureManager extends EventDispatcher implements IInfrastru
             }
         }
     }
+
+    /**
+     * Keeps the advertised resources up to date.
+     */
+    private class ZkResourceWatcher implements Watcher {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void process(WatchedEvent event) {
+            if (event.getType() != Watcher.Event.EventType.NodeDataChanged)
+                return;
+
+            final String path = event.getPath();
+            readResources(UUID.fromString(path.substring(path.lastIndexOf('/') + 1)));
+        }
+    }
 }
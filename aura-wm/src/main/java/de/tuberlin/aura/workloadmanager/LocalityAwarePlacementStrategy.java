@@ -0,0 +1,108 @@
+package de.tuberlin.aura.workloadmanager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.tuberlin.aura.core.common.utils.Pair;
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.descriptors.Descriptors.TaskBindingDescriptor;
+import de.tuberlin.aura.core.descriptors.Descriptors.TaskDescriptor;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Edge;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.ExecutionNode;
+import de.tuberlin.aura.workloadmanager.spi.IPlacementStrategy;
+
+/**
+ * Places an execution node on the machine that already hosts most of its POINT_TO_POINT
+ * producers and consumers, so their channels stay local. Ties are broken by the smallest share of
+ * reserved slots and then by the size of the RAM.
+ */
+public final class LocalityAwarePlacementStrategy implements IPlacementStrategy {
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public MachineDescriptor selectMachine(final AuraTopology topology,
+                                           final ExecutionNode executionNode,
+                                           final List<MachineDescriptor> machines,
+                                           final Map<UUID, Integer> freeSlots) {
+
+        final Map<UUID, Integer> localChannels = countLocalChannels(topology, executionNode);
+
+        MachineDescriptor selectedMachine = null;
+        for (final MachineDescriptor md : machines) {
+            if (freeSlots.get(md.uid) > 0 && (selectedMachine == null || compare(md, selectedMachine, localChannels, freeSlots) < 0))
+                selectedMachine = md;
+        }
+        return selectedMachine;
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @return The number of already placed POINT_TO_POINT neighbours of the execution node per
+     *         machine id.
+     */
+    private static Map<UUID, Integer> countLocalChannels(final AuraTopology topology, final ExecutionNode executionNode) {
+        final Map<UUID, Integer> localChannels = new HashMap<>();
+        final TaskBindingDescriptor bindingDescriptor = executionNode.getTaskBindingDescriptor();
+        if (bindingDescriptor == null)
+            return localChannels;
+
+        final String name = executionNode.logicalNode.name;
+        for (final List<TaskDescriptor> inputGate : bindingDescriptor.inputGateBindings) {
+            for (final TaskDescriptor td : inputGate) {
+                countLocalChannel(localChannels, topology.edges.get(new Pair<>(td.name, name)), td);
+            }
+        }
+        for (final List<TaskDescriptor> outputGate : bindingDescriptor.outputGateBindings) {
+            for (final TaskDescriptor td : outputGate) {
+                countLocalChannel(localChannels, topology.edges.get(new Pair<>(name, td.name)), td);
+            }
+        }
+        return localChannels;
+    }
+
+    private static void countLocalChannel(final Map<UUID, Integer> localChannels, final Edge edge, final TaskDescriptor td) {
+        if (edge == null || edge.transferType != Edge.TransferType.POINT_TO_POINT || td.getMachineDescriptor() == null)
+            return;
+
+        final UUID machineID = td.getMachineDescriptor().uid;
+        final Integer count = localChannels.get(machineID);
+        localChannels.put(machineID, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * @return A negative value if the first machine is the better choice.
+     */
+    private static int compare(final MachineDescriptor md0,
+                               final MachineDescriptor md1,
+                               final Map<UUID, Integer> localChannels,
+                               final Map<UUID, Integer> freeSlots) {
+
+        final int channelCmp = Integer.compare(get(localChannels, md1.uid), get(localChannels, md0.uid));
+        if (channelCmp != 0)
+            return channelCmp;
+
+        // compare the shares of reserved slots, (cores - free0) / cores0 < (cores - free1) / cores1.
+        final int cores0 = md0.hardware.cpuCores;
+        final int cores1 = md1.hardware.cpuCores;
+        final int loadCmp = Long.compare((long) (cores0 - freeSlots.get(md0.uid)) * cores1,
+                                         (long) (cores1 - freeSlots.get(md1.uid)) * cores0);
+        if (loadCmp != 0)
+            return loadCmp;
+
+        return Long.compare(md1.hardware.sizeOfRAM, md0.hardware.sizeOfRAM);
+    }
+
+    private static int get(final Map<UUID, Integer> values, final UUID key) {
+        final Integer value = values.get(key);
+        return value == null ? 0 : value;
+    }
+}
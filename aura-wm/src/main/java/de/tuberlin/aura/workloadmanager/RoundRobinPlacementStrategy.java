@@ -0,0 +1,41 @@
+package de.tuberlin.aura.workloadmanager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.ExecutionNode;
+import de.tuberlin.aura.workloadmanager.spi.IPlacementStrategy;
+
+/**
+ * Assigns the execution nodes to the machines in turn, skipping machines without free slots.
+ */
+public final class RoundRobinPlacementStrategy implements IPlacementStrategy {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private int machineIdx;
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    @Override
+    public MachineDescriptor selectMachine(final AuraTopology topology,
+                                           final ExecutionNode executionNode,
+                                           final List<MachineDescriptor> machines,
+                                           final Map<UUID, Integer> freeSlots) {
+
+        for (int i = 0; i < machines.size(); ++i) {
+            final MachineDescriptor md = machines.get(machineIdx % machines.size());
+            machineIdx = (machineIdx + 1) % machines.size();
+            if (freeSlots.get(md.uid) > 0)
+                return md;
+        }
+        return null;
+    }
+}
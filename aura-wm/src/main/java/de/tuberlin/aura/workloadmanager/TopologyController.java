@@ -1,5 +1,12 @@
 package de.tuberlin.aura.workloadmanager;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,9 +15,13 @@ import de.tuberlin.aura.core.common.eventsystem.EventDispatcher;
 import de.tuberlin.aura.core.common.eventsystem.IEventDispatcher;
 import de.tuberlin.aura.core.common.eventsystem.IEventHandler;
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
+import de.tuberlin.aura.core.common.utils.PipelineAssembler.AssemblyPhase;
 import de.tuberlin.aura.core.common.utils.PipelineAssembler.AssemblyPipeline;
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
 import de.tuberlin.aura.core.iosystem.IOEvents;
 import de.tuberlin.aura.core.iosystem.IOManager;
+import de.tuberlin.aura.core.protocols.WM2TMProtocol;
+import de.tuberlin.aura.core.task.common.TaskStateUpdates;
 import de.tuberlin.aura.core.task.common.TaskStates;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
@@ -27,14 +38,35 @@ public class TopologyController extends EventDispatcher {
 
     private final WorkloadManagerContext context;
 
-    private final AuraTopology topology;
+    /**
+     * The submitted topology, replaced by the optimized one as soon as the optimizer phase is done.
+     */
+    private volatile AuraTopology topology;
 
     private final IOManager ioManager;
 
     private final AssemblyPipeline assemblyPipeline;
 
+    private final TopologyDeployer topologyDeployer;
+
     private final StateMachine.FiniteStateMachine<TopologyState, TopologyTransition> topologyFSM;
 
+    private int finalStateCnt = 0;
+
+    /**
+     * The nodes whose tasks all reached a final state, only accessed by the dispatcher thread.
+     */
+    private final Set<AuraDirectedGraph.Node> finishedNodes = new HashSet<>();
+
+    /**
+     * The task transitions that arrived before the topology was deployed, guarded by itself.
+     */
+    private final List<IOEvents.TaskControlIOEvent> pendingTaskTransitions = new ArrayList<>();
+
+    private boolean isDeployed = false;
+
+    private final AtomicBoolean isReleased = new AtomicBoolean(false);
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
@@ -58,42 +90,58 @@ public class TopologyController extends EventDispatcher {
 
         this.ioManager = context.ioManager;
 
+        this.topologyDeployer = new TopologyDeployer(context.ioManager, context.rpcManager, context.userCodeRegistry, context.infrastructureManager);
+
         this.topologyFSM = createTopologyFSM();
 
         this.assemblyPipeline = new AssemblyPipeline(this.topologyFSM);
 
+        assemblyPipeline.addPhase(new TopologyOptimizer());
+
+        // the event handlers refer to the optimized topology before the assembly is done.
+        assemblyPipeline.addPhase(new AssemblyPhase<AuraTopology, AuraTopology>() {
+
+            @Override
+            public AuraTopology apply(final AuraTopology optimizedTopology) {
+                TopologyController.this.topology = optimizedTopology;
+                return optimizedTopology;
+            }
+        });
+
         assemblyPipeline.addPhase(new TopologyParallelizer());
 
         assemblyPipeline.addPhase(new TopologyScheduler(context.infrastructureManager));
 
-        assemblyPipeline.addPhase(new TopologyDeployer(context.rpcManager));
+        assemblyPipeline.addPhase(topologyDeployer);
 
         // TODO: No TASK_STATE_FINISHED events arrive here!
         this.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE, new IEventHandler() {
 
-            private int finalStateCnt = 0;
-
             @Override
             public void handleEvent(Event e) {
                 final IOEvents.TaskControlIOEvent event = (IOEvents.TaskControlIOEvent) e;
-                final AuraDirectedGraph.ExecutionNode en = topology.executionNodeMap.get(event.getTaskID());
+                updateTaskState(event.getTaskID(), (TaskStates.TaskState) event.getPayload());
+            }
+        });
 
-                // sanity check.
-                if (en == null)
-                    throw new IllegalStateException();
+        this.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATES, new IEventHandler() {
 
-                en.setState((TaskStates.TaskState) event.getPayload());
+            @Override
+            public void handleEvent(Event e) {
+                final IOEvents.TaskControlIOEvent event = (IOEvents.TaskControlIOEvent) e;
+                final TaskStateUpdates stateUpdates = (TaskStateUpdates) event.getPayload();
+                for (int i = 0; i < stateUpdates.size(); ++i) {
+                    updateTaskState(stateUpdates.getTaskID(i), stateUpdates.getState(i));
+                }
+            }
+        });
 
-                // It is at the moment a bit clumsy to detect the processing end.
-                // We should introduce a dedicated "processing end" event...
-                if (en.getState() == TaskStates.TaskState.TASK_STATE_FINISHED || en.getState() == TaskStates.TaskState.TASK_STATE_CANCELED
-                        || en.getState() == TaskStates.TaskState.TASK_STATE_FAILURE)
-                    ++finalStateCnt;
+        this.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_REQUEST, new IEventHandler() {
 
-                if (finalStateCnt == topology.executionNodeMap.size()) {
-                    context.workloadManager.unregisterTopology(topology.topologyID);
-                    TopologyController.this.removeAllEventListener();
-                }
+            @Override
+            public void handleEvent(Event e) {
+                final IOEvents.TaskControlIOEvent event = (IOEvents.TaskControlIOEvent) e;
+                topologyDeployer.requestOutputGate(event.getTaskID(), (Integer) event.getPayload());
             }
         });
     }
@@ -107,7 +155,14 @@ public class TopologyController extends EventDispatcher {
      */
     public AuraTopology assembleTopology() {
         LOG.info("ASSEMBLE TOPOLOGY '" + topology.name + "'");
-        assemblyPipeline.assemble(topology);
+        topology = (AuraTopology) assemblyPipeline.assemble(topology);
+        return topology;
+    }
+
+    /**
+     * @return
+     */
+    public AuraTopology getTopology() {
         return topology;
     }
 
@@ -118,10 +173,135 @@ public class TopologyController extends EventDispatcher {
         return topologyFSM;
     }
 
+    /**
+     * Stops the event dispatchers of the controller and of the topology state machine.
+     */
+    public void shutdownDispatchers() {
+        shutdown();
+        topologyFSM.shutdown();
+    }
+
+    /**
+     * Forwards a task transition to the topology state machine. Transitions that arrive before the
+     * topology is deployed are held back. Tasks deployed on demand are started right away.
+     * 
+     * @param event
+     */
+    public void dispatchTaskTransition(final IOEvents.TaskControlIOEvent event) {
+        // sanity check.
+        if (event == null)
+            throw new IllegalArgumentException("event == null");
+
+        synchronized (pendingTaskTransitions) {
+            if (!isDeployed) {
+                pendingTaskTransitions.add(event);
+                return;
+            }
+        }
+
+        final StateMachine.FSMTransitionEvent<?> transition = (StateMachine.FSMTransitionEvent<?>) event.getPayload();
+        final AuraDirectedGraph.ExecutionNode en = topology.executionNodeMap.get(event.getTaskID());
+        if (transition.getPayload() == TaskStates.TaskTransition.TASK_TRANSITION_RUN && en != null
+                && !topologyDeployer.isInitialNode(en.logicalNode)) {
+            sendTaskTransition(en, TaskStates.TaskTransition.TASK_TRANSITION_RUN);
+        } else {
+            topologyFSM.dispatchEvent(transition);
+        }
+    }
+
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
+    /**
+     * Called only from the event dispatcher thread.
+     * 
+     * @param taskID
+     * @param state
+     */
+    private void updateTaskState(final UUID taskID, final TaskStates.TaskState state) {
+        final AuraDirectedGraph.ExecutionNode en = topology.executionNodeMap.get(taskID);
+
+        // sanity check.
+        if (en == null)
+            throw new IllegalStateException();
+
+        en.setState(state);
+
+        // It is at the moment a bit clumsy to detect the processing end.
+        // We should introduce a dedicated "processing end" event...
+        if (isFinalState(en.getState())) {
+            ++finalStateCnt;
+            releaseFinishedNode(en.logicalNode);
+        }
+
+        if (finalStateCnt == topology.executionNodeMap.size()) {
+            releaseTopology();
+            context.workloadManager.unregisterTopology(topology.topologyID);
+            removeAllEventListener();
+        }
+    }
+
+    /**
+     * @param en
+     * @param transition
+     */
+    private void sendTaskTransition(final AuraDirectedGraph.ExecutionNode en, final TaskStates.TaskTransition transition) {
+        final IOEvents.TaskControlIOEvent transitionUpdate =
+                new IOEvents.TaskControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_TRANSITION);
+
+        transitionUpdate.setPayload(new StateMachine.FSMTransitionEvent<>(transition));
+        transitionUpdate.setTaskID(en.getTaskDescriptor().taskID);
+        transitionUpdate.setTopologyID(en.getTaskDescriptor().topologyID);
+
+        ioManager.sendEvent(en.getTaskDescriptor().getMachineDescriptor(), transitionUpdate);
+    }
+
+    /**
+     * Releases the slots of the node once all its tasks reached a final state, the next stage of a
+     * topology deployed on demand may use them.
+     * 
+     * @param node
+     */
+    private void releaseFinishedNode(final AuraDirectedGraph.Node node) {
+        for (final AuraDirectedGraph.ExecutionNode en : node.getExecutionNodes()) {
+            if (!isFinalState(en.getState()))
+                return;
+        }
+
+        if (finishedNodes.add(node))
+            context.infrastructureManager.releaseSlots(topology.topologyID, TopologyScheduler.getSlotsPerMachine(node));
+    }
+
+    /**
+     * @param state
+     * @return True if the task does not run anymore.
+     */
+    private static boolean isFinalState(final TaskStates.TaskState state) {
+        return state == TaskStates.TaskState.TASK_STATE_FINISHED || state == TaskStates.TaskState.TASK_STATE_CANCELED
+                || state == TaskStates.TaskState.TASK_STATE_FAILURE;
+    }
+
+    /**
+     * Lets the task managers of the topology drop its class loader, only the first call has an
+     * effect.
+     */
+    private void releaseTopology() {
+        if (!isReleased.compareAndSet(false, true))
+            return;
+
+        final Set<MachineDescriptor> machines = new HashSet<>();
+        for (final AuraDirectedGraph.ExecutionNode en : topology.executionNodeMap.values()) {
+            final MachineDescriptor machine = en.getTaskDescriptor().getMachineDescriptor();
+            if (machine != null)
+                machines.add(machine);
+        }
+
+        for (final MachineDescriptor machine : machines) {
+            context.rpcManager.getRPCProtocolProxy(WM2TMProtocol.class, machine).releaseTopology(topology.topologyID);
+        }
+    }
+
     /**
      * @return
      */
@@ -134,7 +314,7 @@ public class TopologyController extends EventDispatcher {
 
                     @Override
                     public boolean eval(StateMachine.FSMTransitionEvent<? extends Enum<?>> event) {
-                        return (++numOfTasksToBeReady) == topology.executionNodeMap.size();
+                        return (++numOfTasksToBeReady) == topologyDeployer.getNumberOfInitialTasks();
                     }
                 };
 
@@ -184,6 +364,10 @@ public class TopologyController extends EventDispatcher {
                                   .addTransition(TopologyTransition.TOPOLOGY_TRANSITION_RUN,
                                                  TopologyState.TOPOLOGY_STATE_RUNNING,
                                                  runTransitionConstraint)
+                                  .and()
+                                  .addTransition(TopologyTransition.TOPOLOGY_TRANSITION_FAIL,
+                                                 TopologyState.TOPOLOGY_STATE_FAILURE,
+                                                 failureTransitionConstraint)
                                   .defineState(TopologyState.TOPOLOGY_STATE_RUNNING)
                                   .addTransition(TopologyTransition.TOPOLOGY_TRANSITION_FINISH,
                                                  TopologyState.TOPOLOGY_STATE_FINISHED,
@@ -216,6 +400,22 @@ public class TopologyController extends EventDispatcher {
             }
         });
 
+        topologyFSM.addStateListener(TopologyState.TOPOLOGY_STATE_DEPLOYED, new StateMachine.FSMStateAction<TopologyState, TopologyTransition>() {
+
+            @Override
+            public void stateAction(TopologyState previousState, TopologyTransition transition, TopologyState state) {
+                final List<IOEvents.TaskControlIOEvent> heldTaskTransitions;
+                synchronized (pendingTaskTransitions) {
+                    isDeployed = true;
+                    heldTaskTransitions = new ArrayList<>(pendingTaskTransitions);
+                    pendingTaskTransitions.clear();
+                }
+                for (final IOEvents.TaskControlIOEvent event : heldTaskTransitions) {
+                    dispatchTaskTransition(event);
+                }
+            }
+        });
+
         topologyFSM.addStateListener(TopologyState.TOPOLOGY_STATE_RUNNING, new StateMachine.FSMStateAction<TopologyState, TopologyTransition>() {
 
             @Override
@@ -225,17 +425,12 @@ public class TopologyController extends EventDispatcher {
 
                     @Override
                     public void visit(final AuraDirectedGraph.Node element) {
+                        // nodes deployed on demand are started when they are ready.
+                        if (!topologyDeployer.isInitialNode(element))
+                            return;
 
                         for (final AuraDirectedGraph.ExecutionNode en : element.getExecutionNodes()) {
-
-                            final IOEvents.TaskControlIOEvent transitionUpdate =
-                                    new IOEvents.TaskControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_TRANSITION);
-
-                            transitionUpdate.setPayload(new StateMachine.FSMTransitionEvent<>(TaskStates.TaskTransition.TASK_TRANSITION_RUN));
-                            transitionUpdate.setTaskID(en.getTaskDescriptor().taskID);
-                            transitionUpdate.setTopologyID(en.getTaskDescriptor().topologyID);
-
-                            ioManager.sendEvent(en.getTaskDescriptor().getMachineDescriptor(), transitionUpdate);
+                            sendTaskTransition(en, TaskStates.TaskTransition.TASK_TRANSITION_RUN);
                         }
                     }
                 });
@@ -249,6 +444,8 @@ public class TopologyController extends EventDispatcher {
 
                 ioManager.sendEvent(topology.machineID, new IOEvents.ControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_TOPOLOGY_FAILURE));
 
+                releaseTopology();
+
                 AuraDirectedGraph.TopologyBreadthFirstTraverser.traverse(topology, new AuraDirectedGraph.Visitor<AuraDirectedGraph.Node>() {
 
                     @Override
@@ -281,9 +478,10 @@ public class TopologyController extends EventDispatcher {
 
                 ioManager.sendEvent(topology.machineID, event);
 
+                releaseTopology();
+
                 // Shutdown the event dispatcher threads used by this topology controller
-                shutdown();
-                topologyFSM.shutdown();
+                shutdownDispatchers();
             }
         });
 
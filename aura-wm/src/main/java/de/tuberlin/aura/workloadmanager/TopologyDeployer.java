@@ -1,14 +1,42 @@
 package de.tuberlin.aura.workloadmanager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
+import de.tuberlin.aura.core.common.utils.Pair;
 import de.tuberlin.aura.core.common.utils.PipelineAssembler.AssemblyPhase;
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
 import de.tuberlin.aura.core.descriptors.Descriptors.TaskDeploymentDescriptor;
+import de.tuberlin.aura.core.iosystem.IOEvents;
+import de.tuberlin.aura.core.iosystem.IOManager;
 import de.tuberlin.aura.core.iosystem.RPCManager;
 import de.tuberlin.aura.core.protocols.WM2TMProtocol;
+import de.tuberlin.aura.core.task.common.TaskStates.TaskTransition;
+import de.tuberlin.aura.core.task.usercode.UserCode;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.*;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology.DeploymentType;
 import de.tuberlin.aura.core.topology.TopologyStates.TopologyTransition;
 
 public class TopologyDeployer extends AssemblyPhase<AuraTopology, AuraTopology> {
@@ -19,41 +47,235 @@ public class TopologyDeployer extends AssemblyPhase<AuraTopology, AuraTopology>
 
     private static final Logger LOG = LoggerFactory.getLogger(TopologyDeployer.class);
 
+    /**
+     * The max. time in ms the task managers have to install the tasks of a wave, set with
+     * -Daura.workloadmanager.deploymenttimeout.
+     */
+    private static final long DEPLOYMENT_TIMEOUT = Long.getLong("aura.workloadmanager.deploymenttimeout", 60000);
+
+    private final IOManager ioManager;
+
     private final RPCManager rpcManager;
 
+    private final UserCodeRegistry userCodeRegistry;
+
+    private final InfrastructureManager infrastructureManager;
+
+    // the deployment state, guarded by this.
+
+    private AuraTopology topology;
+
+    /**
+     * The code of the topology by hash.
+     */
+    private Map<String, UserCode> userCodes;
+
+    private final Set<Node> initialNodes;
+
+    private final Set<Node> deployedNodes;
+
+    /**
+     * The nodes deployed on demand whose installation is in flight.
+     */
+    private final Set<Node> deployingNodes;
+
+    private int numOfInitialTasks;
+
     // ---------------------------------------------------
     // Constructors.
     // ---------------------------------------------------
 
     /**
+     * @param ioManager
      * @param rpcManager
+     * @param userCodeRegistry
+     * @param infrastructureManager
      */
-    public TopologyDeployer(final RPCManager rpcManager) {
+    public TopologyDeployer(final IOManager ioManager,
+                            final RPCManager rpcManager,
+                            final UserCodeRegistry userCodeRegistry,
+                            final InfrastructureManager infrastructureManager) {
         // sanity check.
+        if (ioManager == null)
+            throw new IllegalArgumentException("ioManager == null");
         if (rpcManager == null)
             throw new IllegalArgumentException("rpcManager == null");
+        if (userCodeRegistry == null)
+            throw new IllegalArgumentException("userCodeRegistry == null");
+        if (infrastructureManager == null)
+            throw new IllegalArgumentException("infrastructureManager == null");
+
+        this.ioManager = ioManager;
 
         this.rpcManager = rpcManager;
+
+        this.userCodeRegistry = userCodeRegistry;
+
+        this.infrastructureManager = infrastructureManager;
+
+        this.initialNodes = new HashSet<>();
+
+        this.deployedNodes = new HashSet<>();
+
+        this.deployingNodes = new HashSet<>();
     }
 
     // ---------------------------------------------------
     // Public Methods.
     // ---------------------------------------------------
 
+    /**
+     * An {@link DeploymentType#EAGER} topology is deployed completely. Of a
+     * {@link DeploymentType#LAZY} topology only the sources are deployed, the other nodes are
+     * deployed on demand, see {@link #requestOutputGate(UUID, int)}.
+     */
     @Override
     public AuraTopology apply(AuraTopology topology) {
 
-        deployTopology(topology);
+        synchronized (this) {
+            this.topology = topology;
+
+            this.userCodes = new HashMap<>();
+            for (final UserCode userCode : topology.userCodeMap.values()) {
+                userCodes.put(userCode.codeHash, userCode);
+            }
+
+            for (final Node node : topology.nodeMap.values()) {
+                if (TopologyScheduler.isInitialNode(topology, node)) {
+                    initialNodes.add(node);
+                    numOfInitialTasks += node.getExecutionNodes().size();
+                }
+            }
+
+            if (topology.deploymentType == DeploymentType.LAZY) {
+                deployWave(new ArrayList<>(initialNodes));
+            } else {
+                deployTopology(topology);
+            }
+        }
 
         dispatcher.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TopologyTransition.TOPOLOGY_TRANSITION_DEPLOY));
 
         return topology;
     }
 
+    /**
+     * @return The number of tasks deployed before the topology runs.
+     */
+    public synchronized int getNumberOfInitialTasks() {
+        return numOfInitialTasks;
+    }
+
+    /**
+     * @param node
+     * @return True if the node is deployed before the topology runs.
+     */
+    public synchronized boolean isInitialNode(final Node node) {
+        // sanity check.
+        if (node == null)
+            throw new IllegalArgumentException("node == null");
+
+        return initialNodes.contains(node);
+    }
+
+    /**
+     * Called when a task writes to a lazy output gate for the first time. The consumer of the gate
+     * is deployed on the first request, also a blocking one. Its producers wait in their execution
+     * units, a consumer that waited for all of them could starve behind producers queued on the
+     * same task manager. The installation does not block the caller, once it is done the deployed
+     * producers are told to connect their gates to the consumer, producers that request it later
+     * connect right away. The consumer reserves its slots before it is installed. If the
+     * installation fails or times out, the topology fails.
+     * 
+     * @param taskID
+     * @param gateIndex
+     */
+    public synchronized void requestOutputGate(final UUID taskID, final int gateIndex) {
+        // sanity check.
+        if (taskID == null)
+            throw new IllegalArgumentException("taskID == null");
+
+        final ExecutionNode producer = topology.executionNodeMap.get(taskID);
+        if (producer == null)
+            throw new IllegalStateException("task " + taskID + " not found");
+
+        final Node consumer = getConsumer(producer, gateIndex);
+        if (deployedNodes.contains(consumer)) {
+            // the notification may have arrived before the task was started.
+            sendOutputGateDeployed(producer, gateIndex);
+            return;
+        }
+
+        // the producer is told to connect when the installation is done.
+        if (deployingNodes.contains(consumer))
+            return;
+
+        LOG.info("DEPLOY '" + consumer.name + "' OF TOPOLOGY '" + topology.name + "' ON DEMAND");
+
+        deployingNodes.add(consumer);
+        infrastructureManager.reserveSlots(topology.topologyID, TopologyScheduler.getSlotsPerMachine(consumer));
+        deployOnDemand(consumer);
+    }
+
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
 
+    /**
+     * @param consumer
+     */
+    private void deployOnDemand(final Node consumer) {
+        final List<ListenableFuture<Void>> calls = installWave(Collections.singletonList(consumer));
+        final ListenableFuture<List<Void>> installation = Futures.allAsList(calls);
+
+        final ScheduledFuture<?> timeout = DeploymentTimeoutHolder.EXECUTOR.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                cancelInstallation(calls);
+            }
+        }, DEPLOYMENT_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        Futures.addCallback(installation, new FutureCallback<List<Void>>() {
+
+            @Override
+            public void onSuccess(final List<Void> result) {
+                timeout.cancel(false);
+                connectDeployedConsumer(consumer);
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                timeout.cancel(false);
+                LOG.error("Deployment of '" + consumer.name + "' of topology '" + topology.name + "' failed", t);
+                dispatcher.dispatchEvent(new StateMachine.FSMTransitionEvent<>(TaskTransition.TASK_TRANSITION_FAIL));
+            }
+        });
+    }
+
+    /**
+     * Tells the deployed producers of the consumer to connect their gates to it.
+     * 
+     * @param consumer
+     */
+    private synchronized void connectDeployedConsumer(final Node consumer) {
+        deployingNodes.remove(consumer);
+        deployedNodes.add(consumer);
+
+        for (final Node input : consumer.getInputs()) {
+            if (!deployedNodes.contains(input))
+                continue;
+
+            for (final ExecutionNode en : input.getExecutionNodes()) {
+                final int numOfOutputGates = en.getTaskBindingDescriptor().outputGateBindings.size();
+                for (int index = 0; index < numOfOutputGates; ++index) {
+                    if (getConsumer(en, index) == consumer)
+                        sendOutputGateDeployed(en, index);
+                }
+            }
+        }
+    }
+
     // /**
     // * @param topology
     // */
@@ -119,28 +341,187 @@ public class TopologyDeployer extends AssemblyPhase<AuraTopology, AuraTopology>
     // }
 
     /**
+     * The tasks are deployed in waves, one wave per topology level starting at the sinks. The tasks
+     * of a wave are grouped by task manager and installed with one call per task manager, all calls
+     * of a wave are in flight at once. The next wave starts when all tasks of the wave are
+     * installed, so consumers are always installed before their producers. The user code is
+     * shipped with the first tasks that need it on a task manager.
+     * 
      * @param topology
      */
-    private synchronized void deployTopology(final AuraTopology topology) {
+    private void deployTopology(final AuraTopology topology) {
 
-        // Deploying.
-        TopologyBreadthFirstTraverser.traverseBackwards(topology, new Visitor<Node>() {
+        final Map<Node, Integer> levels = new HashMap<>();
+        int maxLevel = 0;
+        for (final Node node : topology.nodeMap.values()) {
+            maxLevel = Math.max(maxLevel, computeLevel(topology, node, levels));
+        }
 
-            @Override
-            public void visit(final Node element) {
-                for (final ExecutionNode en : element.getExecutionNodes()) {
-                    final TaskDeploymentDescriptor tdd =
-                            new TaskDeploymentDescriptor(en.getTaskDescriptor(),
-                                                         en.getTaskBindingDescriptor(),
-                                                         en.logicalNode.dataPersistenceType,
-                                                         en.logicalNode.executionType);
-                    final WM2TMProtocol tmProtocol =
-                            rpcManager.getRPCProtocolProxy(WM2TMProtocol.class, en.getTaskDescriptor().getMachineDescriptor());
-                    tmProtocol.installTask(tdd);
-                    // LOG.info("TASK DEPLOYMENT DESCRIPTOR [" + en.getTaskDescriptor().name + "]: "
-                    // + tdd.toString());
+        final List<List<Node>> waves = new ArrayList<>();
+        for (int level = 0; level <= maxLevel; ++level) {
+            waves.add(new ArrayList<Node>());
+        }
+        for (final Map.Entry<Node, Integer> entry : levels.entrySet()) {
+            waves.get(entry.getValue()).add(entry.getKey());
+        }
+
+        for (final List<Node> wave : waves) {
+            deployWave(wave);
+        }
+    }
+
+    /**
+     * Installs the wave and waits until it is installed.
+     * 
+     * @param wave
+     */
+    private void deployWave(final List<Node> wave) {
+        final List<ListenableFuture<Void>> calls = installWave(wave);
+        final ListenableFuture<List<Void>> installation = Futures.allAsList(calls);
+        try {
+            installation.get(DEPLOYMENT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("deployment interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            cancelInstallation(calls);
+            throw new IllegalStateException("deployment not done after " + DEPLOYMENT_TIMEOUT + " ms");
+        }
+
+        deployedNodes.addAll(wave);
+    }
+
+    /**
+     * The output gates of the tasks whose consumers are not deployed yet are lazy.
+     * 
+     * @param wave
+     * @return The pending install calls, one per task manager.
+     */
+    private List<ListenableFuture<Void>> installWave(final List<Node> wave) {
+
+        // Group the deployment descriptors by task manager.
+        final Map<MachineDescriptor, List<TaskDeploymentDescriptor>> machineDeployment = new LinkedHashMap<>();
+        for (final Node node : wave) {
+            for (final ExecutionNode en : node.getExecutionNodes()) {
+                final List<Integer> lazyOutputGates = new ArrayList<>();
+                for (int index = 0; index < en.getTaskBindingDescriptor().outputGateBindings.size(); ++index) {
+                    if (!deployedNodes.contains(getConsumer(en, index)))
+                        lazyOutputGates.add(index);
+                }
+
+                final TaskDeploymentDescriptor tdd =
+                        new TaskDeploymentDescriptor(en.getTaskDescriptor(),
+                                                     en.getTaskBindingDescriptor(),
+                                                     en.logicalNode.dataPersistenceType,
+                                                     en.logicalNode.executionType,
+                                                     en.logicalNode.getInputWaitStrategy(),
+                                                     lazyOutputGates);
+
+                final MachineDescriptor machine = en.getTaskDescriptor().getMachineDescriptor();
+                List<TaskDeploymentDescriptor> tdds = machineDeployment.get(machine);
+                if (tdds == null) {
+                    tdds = new ArrayList<>();
+                    machineDeployment.put(machine, tdds);
                 }
+                tdds.add(tdd);
             }
-        });
+        }
+
+        final RPCManager.RPCBatch batch = rpcManager.createBatch();
+        final List<ListenableFuture<Void>> installations = new ArrayList<>();
+        for (final Map.Entry<MachineDescriptor, List<TaskDeploymentDescriptor>> entry : machineDeployment.entrySet()) {
+            final Map<String, UserCode> referencedCodes = new HashMap<>();
+            for (final TaskDeploymentDescriptor tdd : entry.getValue()) {
+                referencedCodes.put(tdd.taskDescriptor.userCode.codeHash, userCodes.get(tdd.taskDescriptor.userCode.codeHash));
+                for (final UserCode chainedCode : tdd.taskDescriptor.chainedUserCodes)
+                    referencedCodes.put(chainedCode.codeHash, userCodes.get(chainedCode.codeHash));
+            }
+
+            final List<UserCode> shippedCodes = userCodeRegistry.selectUnshippedCodes(entry.getKey(), referencedCodes.values());
+            final WM2TMProtocol tmProtocol = batch.getRPCProtocolProxy(WM2TMProtocol.class, entry.getKey());
+            installations.add(tmProtocol.installTasks(entry.getValue(), shippedCodes));
+        }
+        batch.flush();
+
+        return installations;
+    }
+
+    /**
+     * Cancels the install calls that are still pending. A cancelled call is removed from the caller
+     * table of the {@link RPCManager}, its late response is dropped.
+     * 
+     * @param calls
+     */
+    private static void cancelInstallation(final List<ListenableFuture<Void>> calls) {
+        for (final ListenableFuture<Void> call : calls) {
+            call.cancel(false);
+        }
+    }
+
+    /**
+     * @param producer
+     * @param gateIndex
+     * @return The node connected to the output gate of the task.
+     */
+    private Node getConsumer(final ExecutionNode producer, final int gateIndex) {
+        final UUID consumerTaskID = producer.getTaskBindingDescriptor().outputGateBindings.get(gateIndex).get(0).taskID;
+        return topology.executionNodeMap.get(consumerTaskID).logicalNode;
+    }
+
+    /**
+     * @param producer
+     * @param gateIndex
+     */
+    private void sendOutputGateDeployed(final ExecutionNode producer, final int gateIndex) {
+        final IOEvents.TaskControlIOEvent gateDeployed =
+                new IOEvents.TaskControlIOEvent(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_DEPLOYED);
+
+        gateDeployed.setPayload(gateIndex);
+        gateDeployed.setTaskID(producer.getTaskDescriptor().taskID);
+        gateDeployed.setTopologyID(producer.getTaskDescriptor().topologyID);
+
+        ioManager.sendEvent(producer.getTaskDescriptor().getMachineDescriptor(), gateDeployed);
+    }
+
+    /**
+     * @param topology
+     * @param node
+     * @param levels
+     * @return The length of the longest path from the node to a sink. Backward edges close loops and
+     *         are not followed.
+     */
+    private static int computeLevel(final AuraTopology topology, final Node node, final Map<Node, Integer> levels) {
+        final Integer knownLevel = levels.get(node);
+        if (knownLevel != null) {
+            return knownLevel;
+        }
+
+        int level = 0;
+        for (final Node output : node.getOutputs()) {
+            final Edge edge = topology.edges.get(new Pair<>(node.name, output.name));
+            if (edge != null && edge.edgeType == Edge.EdgeType.BACKWARD_EDGE)
+                continue;
+
+            level = Math.max(level, computeLevel(topology, output, levels) + 1);
+        }
+        levels.put(node, level);
+        return level;
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /**
+     * Creates the timer for the installations on demand on first use.
+     */
+    private static final class DeploymentTimeoutHolder {
+
+        private static final ScheduledExecutorService EXECUTOR =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("TopologyDeployerTimeout-%d")
+                                                                                     .setDaemon(true)
+                                                                                     .build());
     }
 }
@@ -0,0 +1,158 @@
+package de.tuberlin.aura.workloadmanager;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tuberlin.aura.core.common.utils.Pair;
+import de.tuberlin.aura.core.common.utils.PipelineAssembler.AssemblyPhase;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.*;
+
+/**
+ * Fuses chains of nodes into single nodes, so their operators run in one task and pass buffers by
+ * method call instead of through gates and channels. A node is fused into its producer if they are
+ * connected by a POINT_TO_POINT forward edge, have the same degree of parallelism, are pipelined
+ * and ephemeral, the edge is the only output of the producer and the only input of the node, and
+ * the user code of the node is chainable. The fused node keeps the name and id of the head of the
+ * chain. Runs as the first phase of the assembly pipeline and dispatches no transition.
+ */
+public class TopologyOptimizer extends AssemblyPhase<AuraTopology, AuraTopology> {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyOptimizer.class);
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * @param topology
+     * @return The topology with fused chains or the same topology if there is nothing to fuse.
+     */
+    @Override
+    public AuraTopology apply(AuraTopology topology) {
+        return chainTopology(topology);
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private AuraTopology chainTopology(final AuraTopology topology) {
+        // sanity check.
+        if (topology == null)
+            throw new IllegalArgumentException("topology == null");
+
+        // name of the head of the chain per node name, the producers of a node are visited first.
+        final Map<String, String> chainHeads = new HashMap<>();
+        final Map<String, List<String>> chains = new HashMap<>();
+
+        TopologyBreadthFirstTraverser.traverse(topology, new Visitor<Node>() {
+
+            @Override
+            public void visit(final Node element) {
+                if (element.getInputs().size() == 1) {
+                    final Node producer = element.getInputs().iterator().next();
+                    if (isChainable(topology, producer, element)) {
+                        final String head = chainHeads.get(producer.name);
+                        chainHeads.put(element.name, head);
+                        chains.get(head).add(element.name);
+                        return;
+                    }
+                }
+                chainHeads.put(element.name, element.name);
+                chains.put(element.name, new ArrayList<String>());
+            }
+        });
+
+        if (chainHeads.size() == chains.size())
+            return topology;
+
+        // rebuild the graph with one node per chain.
+        final Map<String, Node> nodeMap = new HashMap<>();
+        final Map<UUID, Node> uidNodeMap = new HashMap<>();
+        for (final Map.Entry<String, List<String>> chain : chains.entrySet()) {
+            final Node head = topology.nodeMap.get(chain.getKey());
+            final List<String> chainedNodes = chain.getValue();
+            final Node tail = chainedNodes.isEmpty() ? head : topology.nodeMap.get(chainedNodes.get(chainedNodes.size() - 1));
+
+            final Node node =
+                    new Node(head.uid, head.name, head.degreeOfParallelism, head.perWorkerParallelism, tail.dataPersistenceType, head.executionType);
+            node.setInputWaitStrategy(head.getInputWaitStrategy());
+            node.setChainable(head.isChainable());
+            for (final String chainedNode : chainedNodes)
+                node.addChainedNode(chainedNode);
+
+            nodeMap.put(node.name, node);
+            uidNodeMap.put(node.uid, node);
+
+            if (!chainedNodes.isEmpty())
+                LOG.info("CHAIN {} -> {}", head.name, chainedNodes);
+        }
+
+        // the gates are bound in connection order, so the inputs and outputs are added in the order
+        // of the original lists. The external inputs of a chain are those of its head, the external
+        // outputs those of its tail.
+        final Map<Pair<String, String>, Edge> edges = new HashMap<>();
+        for (final Node original : topology.nodeMap.values()) {
+            final Node node = nodeMap.get(chainHeads.get(original.name));
+
+            for (final Node input : original.getInputs()) {
+                final Node srcNode = nodeMap.get(chainHeads.get(input.name));
+                if (srcNode != node)
+                    node.addInput(srcNode);
+            }
+
+            for (final Node output : original.getOutputs()) {
+                final Node dstNode = nodeMap.get(chainHeads.get(output.name));
+                if (dstNode == node)
+                    continue;
+
+                node.addOutput(dstNode);
+                final Edge edge = topology.edges.get(new Pair<>(original.name, output.name));
+                edges.put(new Pair<>(node.name, dstNode.name), new Edge(node, dstNode, edge.transferType, edge.edgeType));
+            }
+        }
+
+        final Map<String, Node> sourceMap = new HashMap<>();
+        for (final String name : topology.sourceMap.keySet())
+            sourceMap.put(name, nodeMap.get(name));
+
+        final Map<String, Node> sinkMap = new HashMap<>();
+        for (final String name : topology.sinkMap.keySet()) {
+            final Node node = nodeMap.get(chainHeads.get(name));
+            sinkMap.put(node.name, node);
+        }
+
+        return new AuraTopology(topology.machineID,
+                                topology.name,
+                                topology.topologyID,
+                                nodeMap,
+                                sourceMap,
+                                sinkMap,
+                                edges,
+                                topology.userCodeMap,
+                                uidNodeMap,
+                                topology.deploymentType,
+                                topology.monitoringProperties);
+    }
+
+    /**
+     * @return True if the node can be fused into the tasks of the producer.
+     */
+    private static boolean isChainable(final AuraTopology topology, final Node producer, final Node node) {
+        final Edge edge = topology.edges.get(new Pair<>(producer.name, node.name));
+        return edge != null && edge.transferType == Edge.TransferType.POINT_TO_POINT && edge.edgeType == Edge.EdgeType.FORWARD_EDGE
+                && node.isChainable() && producer.getOutputs().size() == 1 && producer.degreeOfParallelism == node.degreeOfParallelism
+                && producer.executionType == Node.ExecutionType.PIPELINED && node.executionType == Node.ExecutionType.PIPELINED
+                && producer.dataPersistenceType == Node.DataPersistenceType.EPHEMERAL
+                && node.dataPersistenceType == Node.DataPersistenceType.EPHEMERAL;
+    }
+}
@@ -1,6 +1,15 @@
 package de.tuberlin.aura.workloadmanager;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
 import de.tuberlin.aura.core.common.utils.Pair;
@@ -11,6 +20,14 @@ import de.tuberlin.aura.core.task.usercode.UserCode;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.*;
 import de.tuberlin.aura.core.topology.TopologyStates.TopologyTransition;
 
+/**
+ * Creates the tasks of a topology and binds their gates. Both passes run in parallel over the
+ * nodes. The tasks of a node are kept in one immutable list, ordered by task index, which the gate
+ * bindings of all connected tasks share. An all to all edge refers to the list itself, a point to
+ * point edge to a copy of a range of it, so the bindings of a topology grow linear with the number
+ * of tasks. The control serialization keeps object identity, a shared list is shipped once per
+ * message.
+ */
 public class TopologyParallelizer extends AssemblyPhase<AuraTopology, AuraTopology> {
 
     // ---------------------------------------------------
@@ -36,280 +53,189 @@ public class TopologyParallelizer extends AssemblyPhase<AuraTopology, AuraTopolo
         if (topology == null)
             throw new IllegalArgumentException("topology == null");
 
-        final Map<UUID, ExecutionNode> executionNodeMap = new HashMap<>();
+        final ConcurrentMap<UUID, ExecutionNode> executionNodeMap = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<String, List<TaskDescriptor>> nodeTasks = new ConcurrentHashMap<>();
 
         // First pass, create task descriptors.
-        TopologyBreadthFirstTraverser.traverse(topology, new Visitor<Node>() {
-
-            @Override
-            public void visit(final Node element) {
-                final UserCode userCode = topology.userCodeMap.get(element.name);
-                for (int index = 0; index < element.degreeOfParallelism; ++index) {
-                    final UUID taskID = UUID.randomUUID();
-                    final TaskDescriptor taskDescriptor = new TaskDescriptor(topology.topologyID, taskID, index, element.name, userCode);
-                    final UUID executionNodeID = UUID.randomUUID();
-                    final ExecutionNode executionNode = new ExecutionNode(executionNodeID, index, element);
-                    executionNode.setTaskDescriptor(taskDescriptor);
-                    element.addExecutionNode(executionNode);
-                    executionNodeMap.put(taskID, executionNode);
+        final List<Callable<Void>> createTasks = new ArrayList<>();
+        for (final Node node : topology.nodeMap.values()) {
+            createTasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    nodeTasks.put(node.name, createExecutionNodes(topology, node, executionNodeMap));
+                    return null;
                 }
-            }
-        });
+            });
+        }
+        invokeAll(createTasks);
 
-        topology.setExecutionNodes(executionNodeMap);
+        topology.setExecutionNodes(new HashMap<>(executionNodeMap));
 
         // Second pass, create binding descriptors.
-        TopologyBreadthFirstTraverser.traverse(topology, new Visitor<Node>() {
-
-            @Override
-            public void visit(final Node element) {
-
-                // TODO: reduce code!
-
-                // Bind inputs of the execution nodes.
-                final Map<UUID, Map<UUID, List<TaskDescriptor>>> gateExecutionNodeInputs = new HashMap<>();
-                for (final Node n : element.getInputs()) {
-
-                    final Edge ie = topology.edges.get(new Pair<>(n.name, element.name));
-                    switch (ie.transferType) {
-
-                        case ALL_TO_ALL: {
-
-                            for (final ExecutionNode dstEN : element.getExecutionNodes()) {
-
-                                Map<UUID, List<TaskDescriptor>> executionNodeInputs = gateExecutionNodeInputs.get(dstEN.uid);
-                                if (executionNodeInputs == null) {
-                                    executionNodeInputs = new HashMap<>();
-                                    gateExecutionNodeInputs.put(dstEN.uid, executionNodeInputs);
-                                }
-
-                                List<TaskDescriptor> inputDescriptors = executionNodeInputs.get(n.uid);
-                                if (inputDescriptors == null) {
-                                    inputDescriptors = new ArrayList<>();
-                                    executionNodeInputs.put(n.uid, inputDescriptors);
-                                }
-
-                                // Assignment of channels
-                                for (final ExecutionNode srcEN : n.getExecutionNodes())
-                                    inputDescriptors.add(srcEN.getTaskDescriptor());
-                            }
-
-                        }
-                            break;
-
-                        case POINT_TO_POINT: {
-
-                            final int dstDegree = element.degreeOfParallelism;
-                            final int srcDegree = n.degreeOfParallelism;
-
-                            if (dstDegree >= srcDegree) {
-
-                                final int numOfSrcLinks = dstDegree / srcDegree;
-                                final int numOfNodesWithOneAdditionalLink = dstDegree % srcDegree;
-                                final Iterator<ExecutionNode> dstIter = element.getExecutionNodes().iterator();
-
-                                int index = 0;
-                                for (final ExecutionNode srcEN : n.getExecutionNodes()) {
-
-                                    final int numOfLinks = numOfSrcLinks + (index++ < numOfNodesWithOneAdditionalLink ? 1 : 0);
-
-                                    int i = 0;
-                                    while (i++ < numOfLinks) {
-                                        final ExecutionNode dstEN = dstIter.next();
-
-                                        Map<UUID, List<TaskDescriptor>> executionNodeInputs = gateExecutionNodeInputs.get(dstEN.uid);
-                                        if (executionNodeInputs == null) {
-                                            executionNodeInputs = new HashMap<>();
-                                            gateExecutionNodeInputs.put(dstEN.uid, executionNodeInputs);
-                                        }
-
-                                        List<TaskDescriptor> inputDescriptors = executionNodeInputs.get(n.uid);
-                                        if (inputDescriptors == null) {
-                                            inputDescriptors = new ArrayList<>();
-                                            executionNodeInputs.put(n.uid, inputDescriptors);
-                                        }
-
-                                        inputDescriptors.add(srcEN.getTaskDescriptor());
-                                    }
-                                }
-
-                            } else { // dstDegree < srcDegree
-
-                                final int numOfDstLinks = srcDegree / dstDegree; // number of links
-                                // per dst
-                                // execution node.
-                                final int numOfNodesWithOneAdditionalLink = srcDegree % dstDegree;
-                                final Iterator<ExecutionNode> srcIter = n.getExecutionNodes().iterator();
-
-                                int index = 0;
-                                for (final ExecutionNode dstEN : element.getExecutionNodes()) {
-
-                                    Map<UUID, List<TaskDescriptor>> executionNodeInputs = gateExecutionNodeInputs.get(dstEN.uid);
-                                    if (executionNodeInputs == null) {
-                                        executionNodeInputs = new HashMap<>();
-                                        gateExecutionNodeInputs.put(dstEN.uid, executionNodeInputs);
-                                    }
-
-                                    List<TaskDescriptor> inputDescriptors = executionNodeInputs.get(n.uid);
-                                    if (inputDescriptors == null) {
-                                        inputDescriptors = new ArrayList<>();
-                                        executionNodeInputs.put(n.uid, inputDescriptors);
-                                    }
-
-                                    final int numOfLinks = numOfDstLinks + (index++ < numOfNodesWithOneAdditionalLink ? 1 : 0);
-
-                                    int i = 0;
-                                    while (i++ < numOfLinks) {
-                                        final ExecutionNode srcEN = srcIter.next();
-                                        inputDescriptors.add(srcEN.getTaskDescriptor());
-                                    }
-                                }
-                            }
-
-                        }
-                            break;
-                    }
+        final List<Callable<Void>> bindTasks = new ArrayList<>();
+        for (final Node node : topology.nodeMap.values()) {
+            bindTasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    bindExecutionNodes(topology, node, nodeTasks);
+                    return null;
                 }
+            });
+        }
+        invokeAll(bindTasks);
+    }
 
-                // Bind outputs of the execution nodes.
-                final Map<UUID, Map<UUID, List<TaskDescriptor>>> gateExecutionNodeOutputs = new HashMap<>();
-                for (final Node n : element.getOutputs()) {
-
-                    final Edge ie = topology.edges.get(new Pair<>(element.name, n.name));
-                    switch (ie.transferType) {
-
-                        case ALL_TO_ALL: {
-
-                            for (final ExecutionNode srcEN : element.getExecutionNodes()) {
-
-                                Map<UUID, List<TaskDescriptor>> executionNodeOutputs = gateExecutionNodeOutputs.get(srcEN.uid);
-                                if (executionNodeOutputs == null) {
-                                    executionNodeOutputs = new HashMap<>();
-                                    gateExecutionNodeOutputs.put(srcEN.uid, executionNodeOutputs);
-                                }
-
-                                List<TaskDescriptor> outputDescriptors = executionNodeOutputs.get(n.uid);
-                                if (outputDescriptors == null) {
-                                    outputDescriptors = new ArrayList<>();
-                                    executionNodeOutputs.put(n.uid, outputDescriptors);
-                                }
-
-                                for (final ExecutionNode dstEN : n.getExecutionNodes())
-                                    outputDescriptors.add(dstEN.getTaskDescriptor());
-                            }
-
-                        }
-                            break;
-
-                        case POINT_TO_POINT: {
-
-                            final int dstDegree = n.degreeOfParallelism;
-                            final int srcDegree = element.degreeOfParallelism;
-
-                            if (dstDegree >= srcDegree) {
-
-                                final int numOfSrcLinks = dstDegree / srcDegree;
-                                final int numOfNodesWithOneAdditionalLink = dstDegree % srcDegree;
-                                final Iterator<ExecutionNode> dstIter = n.getExecutionNodes().iterator();
-
-                                int index = 0;
-                                for (final ExecutionNode srcEN : element.getExecutionNodes()) {
-
-                                    Map<UUID, List<TaskDescriptor>> executionNodeOutputs = gateExecutionNodeOutputs.get(srcEN.uid);
-                                    if (executionNodeOutputs == null) {
-                                        executionNodeOutputs = new HashMap<>();
-                                        gateExecutionNodeOutputs.put(srcEN.uid, executionNodeOutputs);
-                                    }
-
-                                    List<TaskDescriptor> outputDescriptors = executionNodeOutputs.get(n.uid);
-                                    if (outputDescriptors == null) {
-                                        outputDescriptors = new ArrayList<>();
-                                        executionNodeOutputs.put(n.uid, outputDescriptors);
-                                    }
-
-                                    final int numOfLinks = numOfSrcLinks + (index++ < numOfNodesWithOneAdditionalLink ? 1 : 0);
+    /**
+     * @param topology
+     * @param node
+     * @param executionNodeMap
+     * @return The task descriptors of the node, ordered by task index.
+     */
+    private static List<TaskDescriptor> createExecutionNodes(final AuraTopology topology,
+                                                             final Node node,
+                                                             final Map<UUID, ExecutionNode> executionNodeMap) {
+        // the tasks refer to the code by hash, the deployer ships the byte code.
+        final UserCode userCode = topology.userCodeMap.get(node.name).toReference();
+        final List<UserCode> chainedUserCodes = new ArrayList<>();
+        for (final String chainedNode : node.getChainedNodes())
+            chainedUserCodes.add(topology.userCodeMap.get(chainedNode).toReference());
+
+        final List<TaskDescriptor> taskDescriptors = new ArrayList<>(node.degreeOfParallelism);
+        for (int index = 0; index < node.degreeOfParallelism; ++index) {
+            final UUID taskID = UUID.randomUUID();
+            final TaskDescriptor taskDescriptor = new TaskDescriptor(topology.topologyID,
+                                                                     taskID,
+                                                                     index,
+                                                                     node.name,
+                                                                     userCode,
+                                                                     node.getChainedNodes(),
+                                                                     chainedUserCodes);
+            final ExecutionNode executionNode = new ExecutionNode(UUID.randomUUID(), index, node);
+            executionNode.setTaskDescriptor(taskDescriptor);
+            node.addExecutionNode(executionNode);
+            executionNodeMap.put(taskID, executionNode);
+            taskDescriptors.add(taskDescriptor);
+        }
+        return Collections.unmodifiableList(taskDescriptors);
+    }
 
-                                    int i = 0;
-                                    while (i++ < numOfLinks) {
-                                        final ExecutionNode dstEN = dstIter.next();
-                                        outputDescriptors.add(dstEN.getTaskDescriptor());
-                                    }
-                                }
+    /**
+     * Binds one gate per input and output node, in the order the nodes were connected.
+     *
+     * @param topology
+     * @param node
+     * @param nodeTasks
+     */
+    private static void bindExecutionNodes(final AuraTopology topology, final Node node, final Map<String, List<TaskDescriptor>> nodeTasks) {
+        for (final ExecutionNode en : node.getExecutionNodes()) {
+
+            final List<List<TaskDescriptor>> inputGateBindings = new ArrayList<>(node.getInputs().size());
+            for (final Node n : node.getInputs()) {
+                final Edge ie = topology.edges.get(new Pair<>(n.name, node.name));
+                inputGateBindings.add(bindGate(ie.transferType, nodeTasks.get(n.name), en.taskIndex, node.degreeOfParallelism));
+            }
 
-                            } else { // dstDegree < srcDegree
+            final List<List<TaskDescriptor>> outputGateBindings = new ArrayList<>(node.getOutputs().size());
+            for (final Node n : node.getOutputs()) {
+                final Edge oe = topology.edges.get(new Pair<>(node.name, n.name));
+                outputGateBindings.add(bindGate(oe.transferType, nodeTasks.get(n.name), en.taskIndex, node.degreeOfParallelism));
+            }
 
-                                final int numOfDstLinks = srcDegree / dstDegree; // number of links
-                                // per dst
-                                // execution node.
-                                final int numOfNodesWithOneAdditionalLink = srcDegree % dstDegree;
-                                final Iterator<ExecutionNode> srcIter = element.getExecutionNodes().iterator();
+            en.setTaskBindingDescriptor(new TaskBindingDescriptor(en.getTaskDescriptor(), inputGateBindings, outputGateBindings));
+        }
+    }
 
-                                int index = 0;
-                                for (final ExecutionNode dstEN : n.getExecutionNodes()) {
+    /**
+     * Point to point edges link the tasks of the node with the smaller degree to consecutive
+     * ranges of tasks of the other node, the first ranges get one additional task if the degrees
+     * are not divisible. The same assignment holds for both directions of the edge.
+     *
+     * @param transferType
+     * @param peerTasks The tasks of the node at the other end of the edge.
+     * @param taskIndex
+     * @param degreeOfParallelism
+     * @return
+     */
+    private static List<TaskDescriptor> bindGate(final Edge.TransferType transferType,
+                                                 final List<TaskDescriptor> peerTasks,
+                                                 final int taskIndex,
+                                                 final int degreeOfParallelism) {
+        switch (transferType) {
+
+            case ALL_TO_ALL:
+                return peerTasks;
+
+            case POINT_TO_POINT: {
+                final int peerDegree = peerTasks.size();
+                // the ranges are copied, sublist views are not serializable.
+                if (peerDegree >= degreeOfParallelism) {
+                    return Collections.unmodifiableList(new ArrayList<>(peerTasks.subList(rangeStart(taskIndex, degreeOfParallelism, peerDegree),
+                                                                                          rangeStart(taskIndex + 1, degreeOfParallelism, peerDegree))));
+                } else {
+                    return Collections.singletonList(peerTasks.get(rangeIndex(taskIndex, peerDegree, degreeOfParallelism)));
+                }
+            }
 
-                                    final int numOfLinks = numOfDstLinks + (index++ < numOfNodesWithOneAdditionalLink ? 1 : 0);
+            default:
+                throw new IllegalStateException("transfer type " + transferType + " not supported");
+        }
+    }
 
-                                    int i = 0;
-                                    while (i++ < numOfLinks) {
-                                        final ExecutionNode srcEN = srcIter.next();
+    /**
+     * @param index The index on the side with the smaller degree.
+     * @param smallDegree
+     * @param largeDegree
+     * @return The first index of the range on the side with the larger degree.
+     */
+    private static int rangeStart(final int index, final int smallDegree, final int largeDegree) {
+        return index * (largeDegree / smallDegree) + Math.min(index, largeDegree % smallDegree);
+    }
 
-                                        Map<UUID, List<TaskDescriptor>> executionNodeOutputs = gateExecutionNodeOutputs.get(srcEN.uid);
-                                        if (executionNodeOutputs == null) {
-                                            executionNodeOutputs = new HashMap<>();
-                                            gateExecutionNodeOutputs.put(srcEN.uid, executionNodeOutputs);
-                                        }
+    /**
+     * @param index The index on the side with the larger degree.
+     * @param smallDegree
+     * @param largeDegree
+     * @return The index on the side with the smaller degree whose range contains the index.
+     */
+    private static int rangeIndex(final int index, final int smallDegree, final int largeDegree) {
+        final int rangeSize = largeDegree / smallDegree;
+        final int numOfLargerRanges = largeDegree % smallDegree;
+        final int largerRangesEnd = numOfLargerRanges * (rangeSize + 1);
+        return index < largerRangesEnd ? index / (rangeSize + 1) : numOfLargerRanges + (index - largerRangesEnd) / rangeSize;
+    }
 
-                                        List<TaskDescriptor> outputDescriptors = executionNodeOutputs.get(n.uid);
-                                        if (outputDescriptors == null) {
-                                            outputDescriptors = new ArrayList<>();
-                                            executionNodeOutputs.put(n.uid, outputDescriptors);
-                                        }
+    /**
+     * Runs the tasks on the shared pool and waits for all of them.
+     *
+     * @param tasks
+     */
+    private static void invokeAll(final List<Callable<Void>> tasks) {
+        try {
+            for (final Future<Void> future : ParallelizerExecutorHolder.EXECUTOR.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 
-                                        outputDescriptors.add(dstEN.getTaskDescriptor());
-                                    }
-                                }
-                            }
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
 
-                        }
-                            break;
-                    }
-                }
+    /**
+     * Creates the executor shared by all topologies on first use.
+     */
+    private static final class ParallelizerExecutorHolder {
 
-                // Assign the binding descriptors to the execution nodes.
-                for (final ExecutionNode en : element.getExecutionNodes()) {
-
-                    final Map<UUID, List<TaskDescriptor>> inputsPerGate = gateExecutionNodeInputs.get(en.uid);
-
-                    List<List<TaskDescriptor>> inputsPerGateList = null;
-                    if (inputsPerGate != null) {
-                        final Collection<List<TaskDescriptor>> inputsPerGateCollection = inputsPerGate.values();
-                        if (inputsPerGateCollection instanceof List)
-                            inputsPerGateList = (List<List<TaskDescriptor>>) inputsPerGateCollection;
-                        else
-                            inputsPerGateList = new ArrayList<>(inputsPerGateCollection);
-                    }
-
-                    final Map<UUID, List<TaskDescriptor>> outputsPerGate = gateExecutionNodeOutputs.get(en.uid);
-
-                    List<List<TaskDescriptor>> outputsPerGateList = null;
-                    if (outputsPerGate != null) {
-                        final Collection<List<TaskDescriptor>> outputsPerGateCollection = outputsPerGate.values();
-                        if (outputsPerGateCollection instanceof List)
-                            outputsPerGateList = (List<List<TaskDescriptor>>) outputsPerGate.values();
-                        else
-                            outputsPerGateList = new ArrayList<>(outputsPerGate.values());
-                    }
-
-                    final TaskBindingDescriptor bindingDescriptor =
-                            new TaskBindingDescriptor(en.getTaskDescriptor(), inputsPerGateList != null
-                                    ? inputsPerGateList
-                                    : new ArrayList<List<TaskDescriptor>>(), outputsPerGateList != null
-                                    ? outputsPerGateList
-                                    : new ArrayList<List<TaskDescriptor>>());
-
-                    en.setTaskBindingDescriptor(bindingDescriptor);
-                }
-            }
-        });
+        private static final ExecutorService EXECUTOR =
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                             new ThreadFactoryBuilder().setNameFormat("TopologyParallelizer-%d").setDaemon(true).build());
     }
 }
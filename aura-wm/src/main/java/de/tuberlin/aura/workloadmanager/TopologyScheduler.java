@@ -1,13 +1,26 @@
 package de.tuberlin.aura.workloadmanager;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.tuberlin.aura.core.common.statemachine.StateMachine;
 import de.tuberlin.aura.core.common.utils.PipelineAssembler.AssemblyPhase;
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.*;
 import de.tuberlin.aura.core.topology.TopologyStates.TopologyTransition;
-
+import de.tuberlin.aura.workloadmanager.spi.IPlacementStrategy;
+
+/**
+ * Assigns the execution nodes of a topology to task managers with a {@link IPlacementStrategy} and
+ * reserves an execution slot for each of them in the {@link InfrastructureManager}. Of a
+ * {@link AuraTopology.DeploymentType#LAZY} topology only the initial nodes reserve their slots, the
+ * other nodes reserve them when they are deployed on demand.
+ */
 public class TopologyScheduler extends AssemblyPhase<AuraTopology, AuraTopology> {
 
     // ---------------------------------------------------
@@ -19,7 +32,14 @@ public class TopologyScheduler extends AssemblyPhase<AuraTopology, AuraTopology>
      */
     private static final Logger LOG = LoggerFactory.getLogger(TopologyScheduler.class);
 
-    private InfrastructureManager infrastructureManager;
+    /**
+     * Class name of the placement strategy, set with -Daura.workloadmanager.placementstrategy.
+     */
+    private static final String PLACEMENT_STRATEGY_PROPERTY = "aura.workloadmanager.placementstrategy";
+
+    private final InfrastructureManager infrastructureManager;
+
+    private final IPlacementStrategy placementStrategy;
 
     // ---------------------------------------------------
     // Constructors.
@@ -29,11 +49,23 @@ public class TopologyScheduler extends AssemblyPhase<AuraTopology, AuraTopology>
      * @param infrastructureManager
      */
     public TopologyScheduler(final InfrastructureManager infrastructureManager) {
+        this(infrastructureManager, createPlacementStrategy());
+    }
+
+    /**
+     * @param infrastructureManager
+     * @param placementStrategy
+     */
+    public TopologyScheduler(final InfrastructureManager infrastructureManager, final IPlacementStrategy placementStrategy) {
         // sanity check.
         if (infrastructureManager == null)
             throw new IllegalArgumentException("infrastructureManager == null");
+        if (placementStrategy == null)
+            throw new IllegalArgumentException("placementStrategy == null");
 
         this.infrastructureManager = infrastructureManager;
+
+        this.placementStrategy = placementStrategy;
     }
 
     // ---------------------------------------------------
@@ -54,6 +86,29 @@ public class TopologyScheduler extends AssemblyPhase<AuraTopology, AuraTopology>
         return topology;
     }
 
+    /**
+     * @param topology
+     * @param node
+     * @return True if the node is deployed before the topology runs.
+     */
+    static boolean isInitialNode(final AuraTopology topology, final Node node) {
+        return topology.deploymentType == AuraTopology.DeploymentType.EAGER || node.getInputs().isEmpty();
+    }
+
+    /**
+     * @param node
+     * @return The number of tasks of the node per machine id.
+     */
+    static Map<UUID, Integer> getSlotsPerMachine(final Node node) {
+        final Map<UUID, Integer> slots = new HashMap<>();
+        for (final ExecutionNode en : node.getExecutionNodes()) {
+            final UUID machineID = en.getTaskDescriptor().getMachineDescriptor().uid;
+            final Integer count = slots.get(machineID);
+            slots.put(machineID, count == null ? 1 : count + 1);
+        }
+        return slots;
+    }
+
     // ---------------------------------------------------
     // Private Methods.
     // ---------------------------------------------------
@@ -61,21 +116,97 @@ public class TopologyScheduler extends AssemblyPhase<AuraTopology, AuraTopology>
     /**
      * @param topology
      */
-    private void scheduleTopology(AuraTopology topology) {
-        LOG.debug("Schedule topology [{}] on {} task managers", topology.name, infrastructureManager.getNumberOfMachine());
+    private void scheduleTopology(final AuraTopology topology) {
+        // the reservations of concurrently scheduled topologies must not overlap.
+        synchronized (infrastructureManager) {
+            final List<MachineDescriptor> machines = infrastructureManager.getMachines();
+
+            LOG.debug("Schedule topology [{}] on {} task managers", topology.name, machines.size());
+
+            final Map<UUID, Integer> freeSlots = new HashMap<>();
+            int numOfFreeSlots = 0;
+            for (final MachineDescriptor md : machines) {
+                final int free = Math.max(infrastructureManager.getNumberOfFreeSlots(md), 0);
+                freeSlots.put(md.uid, free);
+                numOfFreeSlots += free;
+            }
 
-        // Scheduling.
-        TopologyBreadthFirstTraverser.traverse(topology, new Visitor<Node>() {
+            // pipelined tasks wait for each other, they are only admitted if all of them can run
+            // concurrently, also if they are deployed on demand. Blocking tasks may queue behind
+            // each other.
+            final boolean isPipelined = isPipelined(topology);
+            if (isPipelined && topology.executionNodeMap.size() > numOfFreeSlots)
+                throw new IllegalStateException("topology " + topology.name + " needs " + topology.executionNodeMap.size() + " slots, only "
+                        + numOfFreeSlots + " are free");
+
+            final Map<UUID, Integer> reservedSlots = new HashMap<>();
+
+            TopologyBreadthFirstTraverser.traverse(topology, new Visitor<Node>() {
+
+                @Override
+                public void visit(final Node element) {
+                    for (final ExecutionNode en : element.getExecutionNodes()) {
+                        MachineDescriptor md = placementStrategy.selectMachine(topology, en, machines, freeSlots);
+                        if (md == null && !isPipelined)
+                            md = selectLeastLoadedMachine(machines, freeSlots);
+                        if (md == null)
+                            throw new IllegalStateException("no free slot for task " + en.getTaskDescriptor().name + "_"
+                                    + en.getTaskDescriptor().taskIndex);
+
+                        en.getTaskDescriptor().setMachineDescriptor(md);
+
+                        freeSlots.put(md.uid, freeSlots.get(md.uid) - 1);
+                        if (isInitialNode(topology, element)) {
+                            final Integer count = reservedSlots.get(md.uid);
+                            reservedSlots.put(md.uid, count == null ? 1 : count + 1);
+                        }
+
+                        LOG.debug(md.address.toString() + " -> " + en.getTaskDescriptor().name + "_" + en.getTaskDescriptor().taskIndex);
+                    }
+                }
+            });
 
-            @Override
-            public void visit(final Node element) {
-                for (final ExecutionNode en : element.getExecutionNodes()) {
-                    en.getTaskDescriptor().setMachineDescriptor(infrastructureManager.getNextMachine());
+            infrastructureManager.reserveSlots(topology.topologyID, reservedSlots);
+        }
+    }
 
-                    LOG.debug(en.getTaskDescriptor().getMachineDescriptor().address.toString() + " -> " + en.getTaskDescriptor().name + "_"
-                            + en.getTaskDescriptor().taskIndex);
-                }
-            }
-        });
+    /**
+     * @param topology
+     * @return True if the topology contains a pipelined node.
+     */
+    private static boolean isPipelined(final AuraTopology topology) {
+        for (final Node node : topology.nodeMap.values()) {
+            if (node.executionType == Node.ExecutionType.PIPELINED)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The machine with the most free slots, which may be overcommitted.
+     */
+    private static MachineDescriptor selectLeastLoadedMachine(final List<MachineDescriptor> machines, final Map<UUID, Integer> freeSlots) {
+        MachineDescriptor selectedMachine = null;
+        for (final MachineDescriptor md : machines) {
+            if (selectedMachine == null || freeSlots.get(md.uid) > freeSlots.get(selectedMachine.uid))
+                selectedMachine = md;
+        }
+        return selectedMachine;
+    }
+
+    /**
+     * @return The placement strategy named by the system property or a
+     *         {@link LocalityAwarePlacementStrategy}.
+     */
+    private static IPlacementStrategy createPlacementStrategy() {
+        final String className = System.getProperty(PLACEMENT_STRATEGY_PROPERTY);
+        if (className == null)
+            return new LocalityAwarePlacementStrategy();
+
+        try {
+            return Class.forName(className).asSubclass(IPlacementStrategy.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("can not create placement strategy " + className, e);
+        }
     }
 }
@@ -0,0 +1,68 @@
+package de.tuberlin.aura.workloadmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.task.usercode.UserCode;
+
+/**
+ * Remembers the user code shipped to each task manager by hash, so it is shipped only once. A task
+ * manager that lost the code fetches it again.
+ */
+public final class UserCodeRegistry {
+
+    // ---------------------------------------------------
+    // Fields.
+    // ---------------------------------------------------
+
+    private final ConcurrentMap<UUID, Set<String>> shippedCodeHashes;
+
+    // ---------------------------------------------------
+    // Constructors.
+    // ---------------------------------------------------
+
+    public UserCodeRegistry() {
+        this.shippedCodeHashes = new ConcurrentHashMap<>();
+    }
+
+    // ---------------------------------------------------
+    // Public Methods.
+    // ---------------------------------------------------
+
+    /**
+     * Marks the returned code as shipped.
+     * 
+     * @param machine
+     * @param userCodes
+     * @return The code not yet shipped to the task manager.
+     */
+    public List<UserCode> selectUnshippedCodes(final MachineDescriptor machine, final Collection<UserCode> userCodes) {
+        // sanity check.
+        if (machine == null)
+            throw new IllegalArgumentException("machine == null");
+        if (userCodes == null)
+            throw new IllegalArgumentException("userCodes == null");
+
+        Set<String> codeHashes = shippedCodeHashes.get(machine.uid);
+        if (codeHashes == null) {
+            final Set<String> newCodeHashes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            codeHashes = shippedCodeHashes.putIfAbsent(machine.uid, newCodeHashes);
+            if (codeHashes == null)
+                codeHashes = newCodeHashes;
+        }
+
+        final List<UserCode> unshippedCodes = new ArrayList<>();
+        for (final UserCode userCode : userCodes) {
+            if (codeHashes.add(userCode.codeHash))
+                unshippedCodes.add(userCode);
+        }
+        return unshippedCodes;
+    }
+}
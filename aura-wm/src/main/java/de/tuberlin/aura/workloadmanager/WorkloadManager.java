@@ -1,14 +1,20 @@
 package de.tuberlin.aura.workloadmanager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import de.tuberlin.aura.core.common.eventsystem.Event;
 import de.tuberlin.aura.core.common.eventsystem.IEventHandler;
 import de.tuberlin.aura.core.descriptors.DescriptorFactory;
@@ -17,13 +23,15 @@ import de.tuberlin.aura.core.iosystem.IOEvents;
 import de.tuberlin.aura.core.iosystem.IOManager;
 import de.tuberlin.aura.core.iosystem.RPCManager;
 import de.tuberlin.aura.core.protocols.ClientWMProtocol;
+import de.tuberlin.aura.core.protocols.TM2WMProtocol;
+import de.tuberlin.aura.core.task.usercode.UserCode;
 import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
 import de.tuberlin.aura.core.zookeeper.ZookeeperHelper;
 
 
 // TODO: introduce the concept of a session, that allows to submit multiple queries...
 
-public class WorkloadManager implements ClientWMProtocol {
+public class WorkloadManager implements ClientWMProtocol, TM2WMProtocol {
 
     // ---------------------------------------------------
     // Fields.
@@ -39,9 +47,9 @@ public class WorkloadManager implements ClientWMProtocol {
 
     private final InfrastructureManager infrastructureManager;
 
-    private final Map<UUID, TopologyController> registeredTopologies;
+    private final ConcurrentMap<UUID, TopologyController> registeredTopologies;
 
-    private final Map<UUID, Set<UUID>> registeredSessions;
+    private final ConcurrentMap<UUID, Set<UUID>> registeredSessions;
 
     private final WorkloadManagerContext managerContext;
 
@@ -83,25 +91,40 @@ public class WorkloadManager implements ClientWMProtocol {
 
         rpcManager.registerRPCProtocolImpl(this, ClientWMProtocol.class);
 
-        ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE, new IEventHandler() {
+        rpcManager.registerRPCProtocolImpl(this, TM2WMProtocol.class);
+
+        final IEventHandler stateUpdateHandler = new IEventHandler() {
 
             @Override
             public void handleEvent(Event e) {
                 final IOEvents.TaskControlIOEvent event = (IOEvents.TaskControlIOEvent) e;
                 registeredTopologies.get(event.getTopologyID()).dispatchEvent(event);
             }
-        });
+        };
+
+        ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATE, stateUpdateHandler);
+
+        ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_STATE_UPDATES, stateUpdateHandler);
 
         ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_TASK_TRANSITION, new IEventHandler() {
 
             @Override
             public void handleEvent(Event e) {
                 final IOEvents.TaskControlIOEvent event = (IOEvents.TaskControlIOEvent) e;
-                registeredTopologies.get(event.getTopologyID()).getTopologyFSMDispatcher().dispatchEvent((Event) event.getPayload());
+                registeredTopologies.get(event.getTopologyID()).dispatchTaskTransition(event);
+            }
+        });
+
+        ioManager.addEventListener(IOEvents.ControlEventType.CONTROL_EVENT_REMOTE_OUTPUT_GATE_REQUEST, new IEventHandler() {
+
+            @Override
+            public void handleEvent(Event e) {
+                final IOEvents.TaskControlIOEvent event = (IOEvents.TaskControlIOEvent) e;
+                registeredTopologies.get(event.getTopologyID()).dispatchEvent(event);
             }
         });
 
-        this.managerContext = new WorkloadManagerContext(this, ioManager, rpcManager, infrastructureManager);
+        this.managerContext = new WorkloadManagerContext(this, ioManager, rpcManager, infrastructureManager, new UserCodeRegistry());
     }
 
     // ---------------------------------------------------
@@ -118,11 +141,11 @@ public class WorkloadManager implements ClientWMProtocol {
         if (sessionID == null)
             throw new IllegalArgumentException("sessionID == null");
 
-        if (registeredSessions.containsKey(sessionID))
+        // register a new session for a examples.
+        final Set<UUID> assignedTopologies = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+        if (registeredSessions.putIfAbsent(sessionID, assignedTopologies) != null)
             throw new IllegalStateException("session with this ID [" + sessionID.toString() + "] already exists");
 
-        // register a new session for a examples.
-        registeredSessions.put(sessionID, new HashSet<UUID>());
         LOG.info("OPENED SESSION [" + sessionID + "]");
     }
 
@@ -140,7 +163,16 @@ public class WorkloadManager implements ClientWMProtocol {
             throw new IllegalStateException("topology already submitted");
 
         LOG.info("TOPOLOGY '" + topology.name + "' SUBMITTED");
-        registerTopology(sessionID, topology).assembleTopology();
+        final TopologyController topologyController = registerTopology(sessionID, topology);
+        try {
+            topologyController.assembleTopology();
+        } catch (RuntimeException e) {
+            // e.g. a rejected admission, the topology can be submitted again.
+            LOG.error("TOPOLOGY '" + topology.name + "' REJECTED", e);
+            unregisterTopology(topology.topologyID);
+            topologyController.shutdownDispatchers();
+            throw e;
+        }
     }
 
     /**
@@ -168,6 +200,32 @@ public class WorkloadManager implements ClientWMProtocol {
         LOG.info("CLOSED SESSION [" + sessionID + "]");
     }
 
+    /**
+     * @param topologyID
+     * @param codeHashes
+     * @return
+     */
+    @Override
+    public ListenableFuture<List<UserCode>> fetchUserCodes(final UUID topologyID, final List<String> codeHashes) {
+        // sanity check.
+        if (topologyID == null)
+            throw new IllegalArgumentException("topologyID == null");
+        if (codeHashes == null)
+            throw new IllegalArgumentException("codeHashes == null");
+
+        final TopologyController topologyController = registeredTopologies.get(topologyID);
+        if (topologyController == null)
+            throw new IllegalStateException("topologyID not found");
+
+        final Set<String> pendingCodeHashes = new HashSet<>(codeHashes);
+        final List<UserCode> userCodes = new ArrayList<>();
+        for (final UserCode userCode : topologyController.getTopology().userCodeMap.values()) {
+            if (pendingCodeHashes.remove(userCode.codeHash))
+                userCodes.add(userCode);
+        }
+        return Futures.immediateFuture(userCodes);
+    }
+
     /**
      * @param sessionID
      * @param topology
@@ -179,7 +237,8 @@ public class WorkloadManager implements ClientWMProtocol {
             throw new IllegalArgumentException("topology == null");
 
         final TopologyController topologyController = new TopologyController(managerContext, topology);
-        registeredTopologies.put(topology.topologyID, topologyController);
+        if (registeredTopologies.putIfAbsent(topology.topologyID, topologyController) != null)
+            throw new IllegalStateException("topology already submitted");
         return topologyController;
     }
 
@@ -195,6 +254,8 @@ public class WorkloadManager implements ClientWMProtocol {
         if (registeredTopologies.remove(topologyID) == null)
             throw new IllegalStateException("topologyID not found");
 
+        infrastructureManager.releaseSlots(topologyID);
+
         for (final Set<UUID> assignedTopologies : registeredSessions.values()) {
             if (assignedTopologies.contains(topologyID))
                 assignedTopologies.remove(topologyID);
@@ -13,10 +13,13 @@ public final class WorkloadManagerContext {
 
     public final InfrastructureManager infrastructureManager;
 
+    public final UserCodeRegistry userCodeRegistry;
+
     public WorkloadManagerContext(final WorkloadManager workloadManager,
                                   final IOManager ioManager,
                                   final RPCManager rpcManager,
-                                  final InfrastructureManager infrastructureManager) {
+                                  final InfrastructureManager infrastructureManager,
+                                  final UserCodeRegistry userCodeRegistry) {
 
         this.workloadManager = workloadManager;
 
@@ -25,5 +28,7 @@ public final class WorkloadManagerContext {
         this.rpcManager = rpcManager;
 
         this.infrastructureManager = infrastructureManager;
+
+        this.userCodeRegistry = userCodeRegistry;
     }
 }
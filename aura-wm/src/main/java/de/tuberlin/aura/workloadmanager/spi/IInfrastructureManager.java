@@ -1,5 +1,33 @@
 package de.tuberlin.aura.workloadmanager.spi;
 
+import java.util.List;
+import java.util.UUID;
+
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.descriptors.Descriptors.ResourceDescriptor;
+
 public interface IInfrastructureManager {
 
+    /**
+     * @return A snapshot of the registered task manager machines.
+     */
+    public abstract List<MachineDescriptor> getMachines();
+
+    /**
+     * @param machineID
+     * @return The number of execution slots of the machine reserved by running topologies.
+     */
+    public abstract int getNumberOfReservedSlots(final UUID machineID);
+
+    /**
+     * @param machine
+     * @return The number of execution slots of the machine that are neither reserved nor busy.
+     */
+    public abstract int getNumberOfFreeSlots(final MachineDescriptor machine);
+
+    /**
+     * @param machineID
+     * @return The last resources advertised by the machine or null.
+     */
+    public abstract ResourceDescriptor getResources(final UUID machineID);
 }
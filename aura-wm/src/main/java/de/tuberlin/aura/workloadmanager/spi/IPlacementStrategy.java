@@ -0,0 +1,28 @@
+package de.tuberlin.aura.workloadmanager.spi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.tuberlin.aura.core.descriptors.Descriptors.MachineDescriptor;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.ExecutionNode;
+
+/**
+ * Selects the task manager an execution node is deployed to. The execution nodes are placed in
+ * breadth first order from the sources, so the producers of a node are already placed.
+ */
+public interface IPlacementStrategy {
+
+    /**
+     * @param topology The topology of the execution node.
+     * @param executionNode The execution node to place.
+     * @param machines The task manager machines.
+     * @param freeSlots The execution slots per machine id that are not reserved yet.
+     * @return A machine with at least one free slot or null if there is none.
+     */
+    public abstract MachineDescriptor selectMachine(final AuraTopology topology,
+                                                    final ExecutionNode executionNode,
+                                                    final List<MachineDescriptor> machines,
+                                                    final Map<UUID, Integer> freeSlots);
+}
@@ -0,0 +1,174 @@
+package de.tuberlin.aura.workloadmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import de.tuberlin.aura.core.common.eventsystem.EventDispatcher;
+import de.tuberlin.aura.core.descriptors.Descriptors.TaskBindingDescriptor;
+import de.tuberlin.aura.core.descriptors.Descriptors.TaskDescriptor;
+import de.tuberlin.aura.core.task.usercode.UserCodeExtractor;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopology;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.AuraTopologyBuilder;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Edge;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.ExecutionNode;
+import de.tuberlin.aura.core.topology.AuraDirectedGraph.Node;
+
+/**
+ * Checks the gate bindings created by {@link TopologyParallelizer}.
+ */
+public class TopologyParallelizerTest extends TestCase {
+
+    private static final int MAX_DEGREE = 9;
+
+    private TopologyParallelizer parallelizer;
+
+    @Override
+    protected void setUp() {
+        parallelizer = new TopologyParallelizer();
+        parallelizer.setDispatcher(new EventDispatcher());
+    }
+
+    // ---------------------------------------------------
+    // Tests.
+    // ---------------------------------------------------
+
+    public void testPointToPointBindsConsecutiveRanges() {
+        for (int producerDegree = 1; producerDegree <= MAX_DEGREE; ++producerDegree) {
+            for (int consumerDegree = 1; consumerDegree <= MAX_DEGREE; ++consumerDegree) {
+                final AuraTopology topology = parallelize(producerDegree, consumerDegree, Edge.TransferType.POINT_TO_POINT);
+                final List<ExecutionNode> producers = topology.nodeMap.get("Producer").getExecutionNodes();
+                final List<ExecutionNode> consumers = topology.nodeMap.get("Consumer").getExecutionNodes();
+                final String degrees = producerDegree + " -> " + consumerDegree;
+
+                final boolean producersFanOut = producerDegree <= consumerDegree;
+                final List<ExecutionNode> smallSide = producersFanOut ? producers : consumers;
+                final List<ExecutionNode> largeSide = producersFanOut ? consumers : producers;
+
+                // the ranges of the small side cover the large side in index order.
+                int next = 0;
+                for (final ExecutionNode en : smallSide) {
+                    final List<TaskDescriptor> range = getGate(en, producersFanOut);
+                    final int largeDegree = largeSide.size();
+                    final int smallDegree = smallSide.size();
+                    final int expectedSize = largeDegree / smallDegree + (en.taskIndex < largeDegree % smallDegree ? 1 : 0);
+                    assertEquals(degrees, expectedSize, range.size());
+                    for (final TaskDescriptor td : range) {
+                        assertEquals(degrees, next++, td.taskIndex);
+                    }
+                }
+                assertEquals(degrees, largeSide.size(), next);
+
+                // each task of the large side is bound back to the task whose range contains it.
+                for (final ExecutionNode en : largeSide) {
+                    final List<TaskDescriptor> peer = getGate(en, !producersFanOut);
+                    assertEquals(degrees, 1, peer.size());
+                    final ExecutionNode owner = smallSide.get(peer.get(0).taskIndex);
+                    assertTrue(degrees, containsTask(getGate(owner, producersFanOut), en.getTaskDescriptor()));
+                }
+            }
+        }
+    }
+
+    public void testPointToPointWithEqualDegreesBindsSameIndex() {
+        final AuraTopology topology = parallelize(4, 4, Edge.TransferType.POINT_TO_POINT);
+
+        for (final ExecutionNode en : topology.nodeMap.get("Producer").getExecutionNodes()) {
+            final List<TaskDescriptor> gate = en.getTaskBindingDescriptor().outputGateBindings.get(0);
+            assertEquals(1, gate.size());
+            assertEquals(en.taskIndex, gate.get(0).taskIndex);
+        }
+    }
+
+    public void testAllToAllSharesOneListPerNode() {
+        final AuraTopology topology = parallelize(3, 5, Edge.TransferType.ALL_TO_ALL);
+        final List<ExecutionNode> producers = topology.nodeMap.get("Producer").getExecutionNodes();
+        final List<ExecutionNode> consumers = topology.nodeMap.get("Consumer").getExecutionNodes();
+
+        final List<TaskDescriptor> consumerTasks = producers.get(0).getTaskBindingDescriptor().outputGateBindings.get(0);
+        final List<TaskDescriptor> producerTasks = consumers.get(0).getTaskBindingDescriptor().inputGateBindings.get(0);
+
+        assertEquals(5, consumerTasks.size());
+        assertEquals(3, producerTasks.size());
+        for (int i = 0; i < consumers.size(); ++i) {
+            assertSame(consumers.get(i).getTaskDescriptor(), consumerTasks.get(i));
+        }
+        for (int i = 0; i < producers.size(); ++i) {
+            assertSame(producers.get(i).getTaskDescriptor(), producerTasks.get(i));
+        }
+
+        for (final ExecutionNode en : producers) {
+            assertSame(consumerTasks, en.getTaskBindingDescriptor().outputGateBindings.get(0));
+        }
+        for (final ExecutionNode en : consumers) {
+            assertSame(producerTasks, en.getTaskBindingDescriptor().inputGateBindings.get(0));
+        }
+
+        try {
+            consumerTasks.clear();
+            fail("shared gate binding is modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected.
+        }
+    }
+
+    public void testGatesFollowConnectionOrder() {
+        final AuraTopologyBuilder builder = newBuilder();
+        builder.addNode(new Node(UUID.randomUUID(), "Left", 2, 1), Task.class).connectTo("Join", Edge.TransferType.ALL_TO_ALL);
+        builder.addNode(new Node(UUID.randomUUID(), "Right", 3, 1), Task.class).connectTo("Join", Edge.TransferType.POINT_TO_POINT);
+        builder.addNode(new Node(UUID.randomUUID(), "Join", 3, 1), Task.class);
+        final AuraTopology topology = parallelizer.apply(builder.build("join"));
+
+        for (final ExecutionNode en : topology.nodeMap.get("Join").getExecutionNodes()) {
+            final TaskBindingDescriptor binding = en.getTaskBindingDescriptor();
+            assertSame(en.getTaskDescriptor(), binding.task);
+            assertEquals(2, binding.inputGateBindings.size());
+            assertTrue(binding.outputGateBindings.isEmpty());
+
+            assertEquals(2, binding.inputGateBindings.get(0).size());
+            assertEquals("Left", binding.inputGateBindings.get(0).get(0).name);
+            assertEquals(1, binding.inputGateBindings.get(1).size());
+            assertEquals("Right", binding.inputGateBindings.get(1).get(0).name);
+            assertEquals(en.taskIndex, binding.inputGateBindings.get(1).get(0).taskIndex);
+        }
+        assertEquals(2 + 3 + 3, topology.executionNodeMap.size());
+    }
+
+    // ---------------------------------------------------
+    // Private Methods.
+    // ---------------------------------------------------
+
+    private AuraTopology parallelize(final int producerDegree, final int consumerDegree, final Edge.TransferType transferType) {
+        final AuraTopologyBuilder builder = newBuilder();
+        builder.addNode(new Node(UUID.randomUUID(), "Producer", producerDegree, 1), Task.class).connectTo("Consumer", transferType);
+        builder.addNode(new Node(UUID.randomUUID(), "Consumer", consumerDegree, 1), Task.class);
+        return parallelizer.apply(builder.build("topology"));
+    }
+
+    private static AuraTopologyBuilder newBuilder() {
+        return new AuraTopologyBuilder(UUID.randomUUID(), new UserCodeExtractor(false));
+    }
+
+    private static List<TaskDescriptor> getGate(final ExecutionNode en, final boolean output) {
+        final TaskBindingDescriptor binding = en.getTaskBindingDescriptor();
+        return output ? binding.outputGateBindings.get(0) : binding.inputGateBindings.get(0);
+    }
+
+    private static boolean containsTask(final List<TaskDescriptor> gate, final TaskDescriptor task) {
+        final List<UUID> taskIDs = new ArrayList<>();
+        for (final TaskDescriptor td : gate)
+            taskIDs.add(td.taskID);
+        return taskIDs.contains(task.taskID);
+    }
+
+    // ---------------------------------------------------
+    // Inner Classes.
+    // ---------------------------------------------------
+
+    /**
+     * The parallelizer only ships the code, it is never loaded.
+     */
+    public static final class Task {}
+}